@@ -0,0 +1,33 @@
+package io.blesmol.netty.api;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+/**
+ * <p>
+ * Channels of apps with {@link NettyApi.ChannelInitializer#BACKPRESSURE} stop
+ * reading while they are not writable, that is while their outbound buffer is
+ * above the high water mark of the {@code WRITE_BUFFER_WATER_MARK} option, and
+ * read again once it is below the low water mark.
+ * </p>
+ * <p>
+ * A proxy, which writes what one channel reads to another channel, links the
+ * two channels instead. Each channel then stops its peer from reading while it
+ * is not writable, so neither side buffers more than its high water mark.
+ * </p>
+ */
+public interface Backpressure {
+
+	/**
+	 * The channel whose reads fill this channel's outbound buffer
+	 */
+	AttributeKey<Channel> PEER = AttributeKey.valueOf(Backpressure.class, "peer");
+
+	/**
+	 * Links the channels, such as the inbound and outbound channels of a proxy
+	 */
+	static void link(Channel channel, Channel peer) {
+		channel.attr(PEER).set(peer);
+		peer.attr(PEER).set(channel);
+	}
+}
@@ -24,7 +24,37 @@ public interface Configuration {
 
 		String[] handlerNames();
 
+		/**
+		 * @deprecated the server channel class is derived from the transport of the
+		 *             boss event loop group, see
+		 *             {@link NettyApi.EventLoopGroup#TRANSPORT}. Only used when set to
+		 *             a class other than the default.
+		 */
+		@Deprecated
 		Class<? extends ServerChannel> channel() default NioServerSocketChannel.class;
+
+		/**
+		 * The number of sockets bound to the server's address, each accepting on its
+		 * own boss event loop. More than one requires a transport supporting
+		 * SO_REUSEPORT, otherwise a single socket is bound.
+		 */
+		int acceptors() default 1;
+
+		int backlog() default 128;
+
+		/**
+		 * Server channel options, overriding the server bootstrap's
+		 * 
+		 * @see NettyApi.ChannelOptions
+		 */
+		String[] options() default {};
+
+		/**
+		 * Accepted channel options, overriding the server bootstrap's
+		 * 
+		 * @see NettyApi.ChannelOptions
+		 */
+		String[] childOptions() default {};
 	}
 
 	String DYNAMIC_CHANNEL_HANDLER_PID = "io.blesmol.netty.api.DynamicChannelHandler";
@@ -42,6 +72,13 @@ public interface Configuration {
 
 		String[] handlerNames();
 
+		int DEFAULT_MAX_PENDING_EVENTS = 1024;
+
+		/**
+		 * The maximum number of inbound events queued whilst the channel's handlers
+		 * are being added, after which the channel is closed
+		 */
+		int maxPendingEvents() default DEFAULT_MAX_PENDING_EVENTS;
 	}
 
 //	String CHANNEL_INITIALIZER_PID = "io.netty.channel.ChannelInitializer";
@@ -80,5 +117,15 @@ public interface Configuration {
 		String inetHost();
 
 		int inetPort();
+
+		/**
+		 * @see NettyApi.ChannelOptions
+		 */
+		String[] options() default {};
+
+		/**
+		 * @see NettyApi.ChannelOptions
+		 */
+		String[] childOptions() default {};
 	}
 }
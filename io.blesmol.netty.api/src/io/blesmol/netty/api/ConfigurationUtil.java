@@ -10,7 +10,10 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 
 import org.osgi.annotation.versioning.ProviderType;
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.service.cm.Configuration;
+import org.osgi.util.promise.Promise;
 
 // TODO: consider a builder pattern
 @ProviderType
@@ -40,39 +43,135 @@ public interface ConfigurationUtil {
 
 	String createFilterFromMap(String pidKey, String pidValue, Map<String, Object> properties);
 
+	/**
+	 * Returns the filter of {@link #createFilterFromMap(String, String, Map)},
+	 * parsed. Filters are immutable and cached, so equal arguments return the same
+	 * instance without escaping and parsing the filter again.
+	 */
+	Filter createFilter(String pidKey, String pidValue, Map<String, Object> properties) throws InvalidSyntaxException;
+
 	Callable<Set<String>> getOrCreate(List<String> factoryPids, Map<String, Object> properties);
 
 	// CREATE
 
+	default List<String> createNettyServer(String appName, String hostname, Integer port, List<String> factoryPids,
+			List<String> handlerNames, Optional<Map<String, Object>> extraProperties) throws Exception {
+		return createNettyServer(appName, hostname, port, factoryPids, handlerNames, extraProperties,
+				Optional.empty());
+	}
+
+	/**
+	 * Provider properties, such as
+	 * {@link NettyApi.ChannelInitializer#TEMPLATE_PIPELINE}, are added as-is to
+	 * the provider configurations created by this call. Unlike extra properties,
+	 * they are not passed on to channel handlers.
+	 */
 	List<String> createNettyServer(String appName, String hostname, Integer port, List<String> factoryPids,
-			List<String> handlerNames, Optional<Map<String, Object>> extraProperties) throws Exception;
+			List<String> handlerNames, Optional<Map<String, Object>> extraProperties,
+			Optional<Map<String, Object>> providerProperties) throws Exception;
 
+	default String createNettyServerConfig(String appName, String hostname, Integer port, List<String> factoryPids,
+			List<String> handlerNames, Optional<Map<String, Object>> extraProperties) throws Exception {
+		return createNettyServerConfig(appName, hostname, port, factoryPids, handlerNames, extraProperties,
+				Optional.empty());
+	}
+
+	/**
+	 * Provider properties, such as {@link Property.NettyServer#ACCEPTORS}, are
+	 * added as-is to the server configuration
+	 */
 	String createNettyServerConfig(String appName, String hostname, Integer port, List<String> factoryPids,
-			List<String> handlerNames, Optional<Map<String, Object>> extraProperties) throws Exception;
+			List<String> handlerNames, Optional<Map<String, Object>> extraProperties,
+			Optional<Map<String, Object>> providerProperties) throws Exception;
+
+	default List<String> createNettyClient(String appName, String hostname, Integer port, List<String> factoryPids,
+			List<String> handlerNames, Optional<Map<String, Object>> extraProperties, Optional<String> serverAppName,
+			Optional<Boolean> shutdownGroup) throws Exception {
+		return createNettyClient(appName, hostname, port, factoryPids, handlerNames, extraProperties, serverAppName,
+				shutdownGroup, Optional.empty());
+	}
 
+	/**
+	 * Provider properties are added as-is to the bootstrap configuration.
+	 * {@link NettyApi.NettyClient#CHANNEL_ID} is also set on the client
+	 * configuration
+	 */
 	List<String> createNettyClient(String appName, String hostname, Integer port, List<String> factoryPids,
 			List<String> handlerNames, Optional<Map<String, Object>> extraProperties, Optional<String> serverAppName,
-			Optional<Boolean> shutdownGroup) throws Exception;
+			Optional<Boolean> shutdownGroup, Optional<Map<String, Object>> providerProperties) throws Exception;
 
 	String createNettyClientConfig(String appName, String hostname, Integer port, List<String> factoryPids,
 			List<String> handlerNames, Optional<Map<String, Object>> extraProperties, Optional<String> serverAppName,
 			Optional<Boolean> shutdownGroup) throws Exception;
 
-	String createServerBootstrapProvider(String appName, String hostname, int port) throws Exception;
+	default String createServerBootstrapProvider(String appName, String hostname, int port) throws Exception {
+		return createServerBootstrapProvider(appName, hostname, port, Optional.empty());
+	}
+
+	/**
+	 * Provider properties, such as {@link NettyApi.ChannelOptions#OPTIONS}, are
+	 * added as-is to the server bootstrap configuration
+	 */
+	String createServerBootstrapProvider(String appName, String hostname, int port,
+			Optional<Map<String, Object>> providerProperties) throws Exception;
+
+	default List<String> createBootstrap(String appName, String hostname, int port, List<String> factoryPids,
+			List<String> handlerNames, Optional<Map<String, Object>> extraProperties, Optional<String> serverAppName)
+			throws Exception {
+		return createBootstrap(appName, hostname, port, factoryPids, handlerNames, extraProperties, serverAppName,
+				Optional.empty());
+	}
 
 	List<String> createBootstrap(String appName, String hostname, int port, List<String> factoryPids,
+			List<String> handlerNames, Optional<Map<String, Object>> extraProperties, Optional<String> serverAppName,
+			Optional<Map<String, Object>> providerProperties) throws Exception;
+
+	default String createBootstrapConfig(String appName, String inetHost, int inetPort, List<String> factoryPids,
 			List<String> handlerNames, Optional<Map<String, Object>> extraProperties, Optional<String> serverAppName)
-			throws Exception;
+			throws Exception {
+		return createBootstrapConfig(appName, inetHost, inetPort, factoryPids, handlerNames, extraProperties,
+				serverAppName, Optional.empty());
+	}
 
+	/**
+	 * Provider properties, such as {@link NettyApi.ChannelOptions#OPTIONS}, are
+	 * added as-is to the bootstrap configuration
+	 */
 	String createBootstrapConfig(String appName, String inetHost, int inetPort, List<String> factoryPids,
-			List<String> handlerNames, Optional<Map<String, Object>> extraProperties, Optional<String> serverAppName)
-			throws Exception;
+			List<String> handlerNames, Optional<Map<String, Object>> extraProperties, Optional<String> serverAppName,
+			Optional<Map<String, Object>> providerProperties) throws Exception;
+
+	default String createEventLoopGroup(String appName, String inetHost, Integer inetPort, String groupName)
+			throws Exception {
+		return createEventLoopGroup(appName, inetHost, inetPort, groupName, Optional.empty());
+	}
 
-	String createEventLoopGroup(String appName, String inetHost, Integer inetPort, String groupName) throws Exception;
+	/**
+	 * Provider properties, such as {@link NettyApi.EventLoopGroup#TRANSPORT}, are
+	 * added as-is to the event loop group configuration
+	 */
+	String createEventLoopGroup(String appName, String inetHost, Integer inetPort, String groupName,
+			Optional<Map<String, Object>> providerProperties) throws Exception;
 
 	String createEventExecutorGroup(String appName, String inetHost, Integer inetPort, String groupName)
 			throws Exception;
 
+	/**
+	 * Creates a client pool, with its bootstrap, event loop group and channel
+	 * initializer. Provider properties are {@link NettyApi.NettyClientPool}
+	 * settings and bootstrap options, added as-is to both configurations.
+	 */
+	List<String> createNettyClientPool(String appName, List<String> factoryPids, List<String> handlerNames,
+			Optional<Map<String, Object>> extraProperties, Optional<Map<String, Object>> providerProperties)
+			throws Exception;
+
+	/**
+	 * Creates the app's allocator, which must exist before its servers and
+	 * bootstraps are activated. Provider properties are
+	 * {@link NettyApi.ByteBufAllocator} settings.
+	 */
+	String createByteBufAllocator(String appName, Optional<Map<String, Object>> providerProperties) throws Exception;
+
 	/**
 	 * Requires a factory pid since channels are created by netty and registered
 	 * later
@@ -80,11 +179,33 @@ public interface ConfigurationUtil {
 	String createChannelConfig(String factoryPid, String appName, String inetHost, Integer inetPort, String channelId)
 			throws Exception;
 
+	/**
+	 * Creates a channel handler factory configuration, for example one shared by
+	 * all channels of a template pipeline via
+	 * {@link NettyApi.ChannelHandler#TEMPLATE_CHANNEL_ID}
+	 */
+	String createChannelHandlerConfig(String factoryPid, String appName, String inetHost, int inetPort,
+			String handlerName, String channelId, Optional<Map<String, Object>> extraProperties) throws Exception;
+
+	default List<String> createChannelInitializer(String appName, String hostname, int port, List<String> factoryPids,
+			List<String> handlerNames, Optional<Map<String, Object>> extraProperties) throws Exception {
+		return createChannelInitializer(appName, hostname, port, factoryPids, handlerNames, extraProperties,
+				Optional.empty());
+	}
+
 	List<String> createChannelInitializer(String appName, String hostname, int port, List<String> factoryPids,
-			List<String> handlerNames, Optional<Map<String, Object>> extraProperties) throws Exception;
+			List<String> handlerNames, Optional<Map<String, Object>> extraProperties,
+			Optional<Map<String, Object>> providerProperties) throws Exception;
+
+	default String createChannelInitializerConfig(String appName, String hostname, int port, List<String> factoryPids,
+			List<String> handlerNames, Optional<Map<String, Object>> extraProperties) throws Exception {
+		return createChannelInitializerConfig(appName, hostname, port, factoryPids, handlerNames, extraProperties,
+				Optional.empty());
+	}
 
 	String createChannelInitializerConfig(String appName, String hostname, int port, List<String> factoryPids,
-			List<String> handlerNames, Optional<Map<String, Object>> extraProperties) throws Exception;
+			List<String> handlerNames, Optional<Map<String, Object>> extraProperties,
+			Optional<Map<String, Object>> providerProperties) throws Exception;
 
 	String createDynamicChannelHandlerConfig(String channelId, String appName, String hostname, int port,
 			List<String> factoryPids, List<String> handlerNames, Optional<Map<String, Object>> extraProperties)
@@ -97,8 +218,39 @@ public interface ConfigurationUtil {
 
 	// DELETE
 
+	/**
+	 * Deletes the configurations, looked up by a filter per batch of PIDs rather
+	 * than per PID. Unknown PIDs are ignored
+	 */
 	void deleteConfigurationPids(Collection<String> pids) throws Exception;
 
+	// BATCH
+
+	/**
+	 * Creates and updates a factory configuration per factory PID and its
+	 * properties, in parallel with bounded concurrency.
+	 * 
+	 * @return a promise of the created PIDs, in order, which fails if any could
+	 *         not be created
+	 */
+	Promise<List<String>> createConfigurations(List<String> factoryPids, List<Dictionary<String, Object>> properties);
+
+	/**
+	 * Updates existing configurations, keyed by PID, in parallel with bounded
+	 * concurrency. The configurations are looked up by a filter per batch of PIDs.
+	 * 
+	 * @return a promise of the updated PIDs; unknown PIDs are ignored
+	 */
+	Promise<List<String>> updateConfigurations(Map<String, Dictionary<String, Object>> properties);
+
+	/**
+	 * Deletes configurations in parallel with bounded concurrency. The
+	 * configurations are looked up by a filter per batch of PIDs.
+	 * 
+	 * @return a promise of the deleted PIDs; unknown PIDs are ignored
+	 */
+	Promise<List<String>> deleteConfigurations(Collection<String> pids);
+
 	// PROPERTIES
 
 	Hashtable<String, Object> bootstrapProperties(String appName, String inetHost, int inetPort,
@@ -122,6 +274,8 @@ public interface ConfigurationUtil {
 	Hashtable<String, Object> eventLoopGroupProperties(String appName, String inetHost, Integer inetPort,
 			String groupName);
 
+	Hashtable<String, Object> byteBufAllocatorProperties(String appName);
+
 	Hashtable<String, Object> nettyClientProperties(String appName, String hostname, Integer port,
 			List<String> factoryPids, List<String> handlerNames, Optional<Map<String, Object>> extraProperties,
 			Optional<String> serverAppName, Optional<Boolean> shutdownGroup);
@@ -0,0 +1,52 @@
+package io.blesmol.netty.api;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * <p>
+ * Statistics of the dynamic channel handlers pooled by a channel initializer,
+ * registered only by initializers that pool them
+ * </p>
+ * 
+ * @see NettyApi.ChannelInitializer#POOLED_DYNAMIC_HANDLERS
+ */
+@ProviderType
+public interface DynamicChannelHandlerPool {
+
+	/**
+	 * @return the number of idle handlers ready for the next channel
+	 */
+	int size();
+
+	/**
+	 * @return the number of channels given a pooled handler
+	 */
+	long hits();
+
+	/**
+	 * @return the number of channels given a newly created handler
+	 */
+	long misses();
+
+	default double hitRate() {
+		final long hits = hits();
+		final long total = hits + misses();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * @return the number of handlers reset after their channel was closed
+	 */
+	long resets();
+
+	/**
+	 * @return the total time, in nanoseconds, between handlers being removed from
+	 *         their pipeline and being ready for reuse
+	 */
+	long resetNanos();
+
+	/**
+	 * @return the longest time, in nanoseconds, a single reset took
+	 */
+	long maxResetNanos();
+}
@@ -0,0 +1,60 @@
+package io.blesmol.netty.api;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * <p>
+ * Statistics of the executor service running dynamic channel handler and
+ * channel initializer tasks
+ * </p>
+ * 
+ * @see NettyApi.Executor
+ */
+@ProviderType
+public interface ExecutorStatistics {
+
+	/**
+	 * @return the number of tasks waiting for a thread
+	 */
+	int queueDepth();
+
+	/**
+	 * @return the number of tasks being run
+	 */
+	int activeCount();
+
+	/**
+	 * @return the number of threads, or zero when running virtual threads
+	 */
+	int poolSize();
+
+	/**
+	 * @return the number of tasks run to completion, successfully or not
+	 */
+	long completedTasks();
+
+	/**
+	 * @return the number of tasks passed to the rejection policy
+	 */
+	long rejectedTasks();
+
+	/**
+	 * @return the total time, in nanoseconds, tasks waited for a thread
+	 */
+	long queueNanos();
+
+	/**
+	 * @return the total time, in nanoseconds, tasks ran
+	 */
+	long runNanos();
+
+	/**
+	 * @return the longest time, in nanoseconds, a single task waited for a thread
+	 */
+	long maxQueueNanos();
+
+	default double averageQueueNanos() {
+		final long completed = completedTasks();
+		return completed == 0 ? 0 : (double) queueNanos() / completed;
+	}
+}
@@ -15,6 +15,10 @@ public interface NettyApi {
 
 	String DOT_TARGET = ".target";
 
+	// System property: trace one in N channels when the provider's loggers are at
+	// trace level. Defaults to every channel
+	String TRACE_SAMPLE_RATE = "io.blesmol.netty.trace.sampleRate";
+
 	@interface Bootstrap {
 		String PID = "io.netty.bootstrap.Bootstrap";
 
@@ -29,16 +33,167 @@ public interface NettyApi {
 
 		String SERVER_APP_NAME = NettyApi.NettyClient.SERVER_APP_NAME;
 		String serverAppName() default "";
+
+		String OPTIONS = ChannelOptions.OPTIONS;
+		/**
+		 * @see ChannelOptions
+		 */
+		String[] options() default {};
 		
 		@interface Reference {
 			String CHANNEL_INITIALIZER = "channelInitializer";
 			String CHANNEL_INITIALIZER_TARGET = CHANNEL_INITIALIZER + DOT_TARGET;
 			String EVENT_LOOP_GROUP = "nettyClientGroup";
 			String EVENT_LOOP_GROUP_TARGET = EVENT_LOOP_GROUP + DOT_TARGET;
+			String BYTE_BUF_ALLOCATOR = ByteBufAllocator.REFERENCE;
+			String BYTE_BUF_ALLOCATOR_TARGET = BYTE_BUF_ALLOCATOR + DOT_TARGET;
 		}
 	}
 
-	
+	/**
+	 * <p>
+	 * Channel options of bootstraps and servers, each as a
+	 * {@code NAME=value} string, where the name is a
+	 * {@link io.netty.channel.ChannelOption} constant such as
+	 * {@code TCP_NODELAY=true} or {@code SO_RCVBUF=65536}, or a transport's
+	 * option constant such as {@code SO_REUSEPORT=true}. Besides options of
+	 * boolean, integer and long values, the following values are supported:
+	 * </p>
+	 * <ul>
+	 * <li>{@code WRITE_BUFFER_WATER_MARK=low,high}</li>
+	 * <li>{@code RCVBUF_ALLOCATOR=adaptive}, {@code adaptive:min,initial,max} or
+	 * {@code fixed:size}</li>
+	 * <li>{@code ALLOCATOR=pooled} or {@code unpooled}, optionally suffixed with
+	 * {@code :direct} or {@code :heap}</li>
+	 * </ul>
+	 * <p>
+	 * Options are validated when the provider is activated, which fails on an
+	 * unknown option or invalid value. {@code AUTO_READ} cannot be enabled, since
+	 * channels only read once their pipeline is complete.
+	 * </p>
+	 */
+	@interface ChannelOptions {
+		String OPTIONS = "options";
+		String[] options() default {};
+
+		String CHILD_OPTIONS = "childOptions";
+		String[] childOptions() default {};
+	}
+
+	/**
+	 * <p>
+	 * The executor service running dynamic channel handler and channel
+	 * initializer tasks. Without a configuration the defaults below are used.
+	 * Pool sizes and the rejection policy are updated in place; changing the
+	 * queue size, thread name prefix or virtual threads replaces the executor,
+	 * and tasks already queued run on the replaced one.
+	 * </p>
+	 * <p>
+	 * Tasks run by the caller would run on the Netty I/O thread initializing a
+	 * channel, so rejected tasks are aborted by default. Whatever the policy, the
+	 * promises of rejected tasks fail.
+	 * </p>
+	 */
+	@interface Executor {
+		String PID = "io.blesmol.netty.api.Executor";
+
+		String CORE_SIZE = "coreSize";
+		int coreSize() default 16;
+
+		String MAX_SIZE = "maxSize";
+		int maxSize() default 256;
+
+		// Tasks queued before threads beyond the core size are started, and before
+		// the rejection policy applies
+		String QUEUE_SIZE = "queueSize";
+		int queueSize() default 4096;
+
+		String KEEP_ALIVE_SECONDS = "keepAliveSeconds";
+		long keepAliveSeconds() default 60;
+
+		String REJECTION_POLICY = "rejectionPolicy";
+		String REJECTION_POLICY_CALLER_RUNS = "callerRuns";
+		String REJECTION_POLICY_ABORT = "abort";
+		String REJECTION_POLICY_DISCARD = "discard";
+		String REJECTION_POLICY_DISCARD_OLDEST = "discardOldest";
+		String rejectionPolicy() default REJECTION_POLICY_ABORT;
+
+		String THREAD_NAME_PREFIX = "threadNamePrefix";
+		String threadNamePrefix() default "blesmol-netty-executor";
+
+		// Run each task on a new virtual thread when the JVM supports them, ignoring
+		// the sizes and rejection policy
+		String VIRTUAL_THREADS = "virtualThreads";
+		boolean virtualThreads() default false;
+	}
+
+	/**
+	 * <p>
+	 * A pooled allocator for the channels of an app's servers and bootstraps,
+	 * which the configuration utility targets by app name. It is bound without
+	 * restarting them, and used by the channels they create once it is bound, so
+	 * create it first for it to apply to every channel. It takes precedence over
+	 * an {@code ALLOCATOR} channel option. Integer settings below zero use
+	 * Netty's defaults, which are shared by apps without an allocator.
+	 * </p>
+	 * <p>
+	 * Allocator metrics, such as arenas and used memory, are returned by
+	 * {@link NettyMetrics#allocatorMetrics()}.
+	 * </p>
+	 */
+	@interface ByteBufAllocator {
+		String PID = "io.netty.buffer.ByteBufAllocator";
+
+		// Reference name of servers and bootstraps
+		String REFERENCE = "byteBufAllocator";
+
+		// Target of references not set by the configuration utility
+		String NO_TARGET = "(!(objectClass=*))";
+
+		String APP_NAME = NettyApi.APP_NAME;
+
+		String appName();
+
+		String HEAP_ARENAS = "heapArenas";
+
+		int heapArenas() default -1;
+
+		String DIRECT_ARENAS = "directArenas";
+
+		int directArenas() default -1;
+
+		String PAGE_SIZE = "pageSize";
+
+		int pageSize() default -1;
+
+		// Chunks are pageSize << maxOrder bytes
+		String MAX_ORDER = "maxOrder";
+
+		int maxOrder() default -1;
+
+		String TINY_CACHE_SIZE = "tinyCacheSize";
+
+		int tinyCacheSize() default -1;
+
+		String SMALL_CACHE_SIZE = "smallCacheSize";
+
+		int smallCacheSize() default -1;
+
+		String NORMAL_CACHE_SIZE = "normalCacheSize";
+
+		int normalCacheSize() default -1;
+
+		// Cache buffers on all threads, not only event loop threads
+		String USE_CACHE_FOR_ALL_THREADS = "useCacheForAllThreads";
+
+		boolean useCacheForAllThreads() default true;
+
+		// Allocate direct rather than heap buffers, when not specified by the caller
+		String PREFER_DIRECT = "preferDirect";
+
+		boolean preferDirect() default true;
+	}
+
 	@interface EventLoopGroup {
 		String PID = "io.netty.channel.EventLoopGroup";
 		String NAME = "nettyEventLoopGroup";
@@ -58,6 +213,26 @@ public interface NettyApi {
 		String GROUP_NAME = "groupName";
 
 		String groupName();
+
+		// The transport of the group and its channels; native transports fall back
+		// to nio when unavailable
+		String TRANSPORT = "transport";
+		String TRANSPORT_NIO = "nio";
+		String TRANSPORT_EPOLL = "epoll";
+		String TRANSPORT_IO_URING = "io_uring";
+
+		String transport() default TRANSPORT_NIO;
+
+		// Probe every event loop of the group this often, measuring how long each
+		// probe waits to run. Zero disables the watchdog
+		String WATCHDOG_INTERVAL_MILLIS = "watchdogIntervalMillis";
+
+		long watchdogIntervalMillis() default 0;
+
+		// Report event loops whose probe waits longer, with their thread's stack
+		String WATCHDOG_THRESHOLD_MILLIS = "watchdogThresholdMillis";
+
+		long watchdogThresholdMillis() default 100;
 	}
 
 	@interface EventExecutorGroup {
@@ -109,6 +284,11 @@ public interface NettyApi {
 		// TODO: move to channel factory / provider since Meta type services can't support classes
 		String CHANNEL = "channel";
 
+		/**
+		 * @deprecated the channel class is derived from the transport of the event
+		 *             loop group, see {@link EventLoopGroup#TRANSPORT}
+		 */
+		@Deprecated
 		Class<? extends io.netty.channel.Channel> channel() default NioSocketChannel.class;
 
 		// Optional server app name
@@ -119,9 +299,60 @@ public interface NettyApi {
 		String SHUTDOWN_GROUP = "shutdownGroup";
 
 		boolean shutdownGroup() default true;
-		
+
+		// Optional ID of the inbound channel the client relays for. The client then
+		// connects on that channel's event loop, so relayed bytes never change
+		// threads, and falls back to its bootstrap's group if the channel is closed
+		String CHANNEL_ID = NettyApi.CHANNEL_ID;
+
+		String channelId() default "";
+
 	}
 	
+	@interface NettyClientPool {
+
+		String PID = "io.blesmol.netty.api.NettyClientPool";
+
+		// The inet host and port of the pool's bootstrap and channel initializer,
+		// whose channels connect to any endpoint
+		String ANY_INET_HOST = "*";
+		int ANY_INET_PORT = 0;
+
+		String APP_NAME = NettyApi.APP_NAME;
+
+		String appName();
+
+		// Per endpoint
+		String MAX_CONNECTIONS = "maxConnections";
+
+		int maxConnections() default 16;
+
+		// Per endpoint; further acquires fail right away
+		String MAX_PENDING_ACQUIRES = "maxPendingAcquires";
+
+		int maxPendingAcquires() default 1024;
+
+		// Zero or less to wait until a channel is released
+		String ACQUIRE_TIMEOUT_MILLIS = "acquireTimeoutMillis";
+
+		long acquireTimeoutMillis() default 5000;
+
+		// Zero or less to keep idle channels until they are closed remotely
+		String IDLE_TIMEOUT_MILLIS = "idleTimeoutMillis";
+
+		long idleTimeoutMillis() default 60000;
+
+		// Also check channels are active when released, not only when acquired
+		String RELEASE_HEALTH_CHECK = "releaseHealthCheck";
+
+		boolean releaseHealthCheck() default true;
+
+		@interface Reference {
+			String BOOTSTRAP = "bootstrap";
+			String BOOTSTRAP_TARGET = BOOTSTRAP + DOT_TARGET;
+		}
+	}
+
 	@interface ChannelHandler {
 		String APP_NAME = NettyApi.APP_NAME;
 
@@ -142,6 +373,34 @@ public interface NettyApi {
 		String HANDLER_NAME = "handlerName";
 		
 		String handlerName();
+
+		// Channel ID of handler configurations shared by all channels of a template pipeline
+		String TEMPLATE_CHANNEL_ID = "io.blesmol.netty.template";
+	}
+
+	/**
+	 * <p>
+	 * A channel handler provided by the provider bundle, which writes files
+	 * without copying them into the heap. Add its factory PID and a handler name
+	 * to an app's factory PIDs and handler names, and write a {@link java.io.File}
+	 * or {@link java.nio.file.Path} to the channel.
+	 * </p>
+	 * <p>
+	 * Files are written as a {@link io.netty.channel.DefaultFileRegion}, which the
+	 * transport sends with {@code sendfile}, unless zero copy is disabled or the
+	 * pipeline has an {@code SslHandler}, since encryption needs the bytes. They
+	 * are then written as a {@link io.netty.handler.stream.ChunkedNioFile}.
+	 * Regions and chunked inputs written by other handlers pass through.
+	 * </p>
+	 */
+	@interface FileRegionHandler {
+		String PID = "io.blesmol.netty.api.FileRegionHandler";
+
+		String CHUNK_SIZE = "chunkSize";
+		int chunkSize() default 8192;
+
+		String ZERO_COPY = "zeroCopy";
+		boolean zeroCopy() default true;
 	}
 
 	@interface Channel {
@@ -185,6 +444,56 @@ public interface NettyApi {
 
 		String HANDLER_NAMES = NettyClient.HANDLER_NAMES;
 		String[] handlerNames();
+
+		// Resolve the handler chain once and build new channel pipelines from it,
+		// instead of configuring a dynamic channel handler per channel
+		String TEMPLATE_PIPELINE = "templatePipeline";
+		boolean templatePipeline() default false;
+
+		// Reuse dynamic channel handlers from a pool owned by the initializer,
+		// instead of activating a component per channel
+		String POOLED_DYNAMIC_HANDLERS = "pooledDynamicHandlers";
+		boolean pooledDynamicHandlers() default false;
+
+		// Maximum number of idle pooled dynamic channel handlers
+		String DYNAMIC_HANDLER_POOL_SIZE = "dynamicHandlerPoolSize";
+		int dynamicHandlerPoolSize() default 256;
+
+		// Maximum number of inbound events a dynamic channel handler queues whilst
+		// its channel's pipeline is assembled, pooled or not; see
+		// Configuration.DynamicChannelHandler
+		String MAX_PENDING_EVENTS = "maxPendingEvents";
+		int maxPendingEvents() default Configuration.DynamicChannelHandler.DEFAULT_MAX_PENDING_EVENTS;
+
+		// Run dynamic channel handlers on their channel's event loop instead of the
+		// event executor group, so events don't change threads twice per handler
+		String EVENT_LOOP_DYNAMIC_HANDLERS = "eventLoopDynamicHandlers";
+		boolean eventLoopDynamicHandlers() default false;
+
+		// Count the bytes read and written by channels in the app's metrics, by
+		// adding a handler first in their pipelines
+		String BYTE_METRICS = "byteMetrics";
+		boolean byteMetrics() default false;
+
+		// Consolidate flushes between the channel handlers and the socket, so that
+		// handlers flushing every message cost fewer write syscalls. Flushes during a
+		// read loop are deferred to the end of the loop
+		String FLUSH_CONSOLIDATION = "flushConsolidation";
+		boolean flushConsolidation() default false;
+
+		// Flush anyway after this many consolidated flushes
+		String EXPLICIT_FLUSH_AFTER_FLUSHES = "explicitFlushAfterFlushes";
+		int explicitFlushAfterFlushes() default 256;
+
+		// Also consolidate flushes outside of read loops, by flushing on a task
+		// scheduled on the channel's event loop
+		String CONSOLIDATE_WHEN_NO_READ_IN_PROGRESS = "consolidateWhenNoReadInProgress";
+		boolean consolidateWhenNoReadInProgress() default false;
+
+		// Stop reading while channels are not writable, see Backpressure. The water
+		// marks are those of the WRITE_BUFFER_WATER_MARK child option
+		String BACKPRESSURE = "backpressure";
+		boolean backpressure() default false;
 	}
 
 }
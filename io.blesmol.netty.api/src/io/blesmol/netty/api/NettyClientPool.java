@@ -0,0 +1,84 @@
+package io.blesmol.netty.api;
+
+import java.util.Map;
+
+import org.osgi.annotation.versioning.ProviderType;
+import org.osgi.util.promise.Promise;
+
+import io.netty.channel.Channel;
+
+/**
+ * <p>
+ * Pools of connected client channels, one per remote endpoint, so that short
+ * requests to the same endpoint reuse connections instead of each needing a
+ * configuration and a handshake. Each pool holds at most
+ * {@link NettyApi.NettyClientPool#maxConnections()} channels; further acquires
+ * wait in order of arrival until a channel is released, and fail after
+ * {@link NettyApi.NettyClientPool#acquireTimeoutMillis()}.
+ * </p>
+ * <p>
+ * Channels are checked to be active when acquired and released, and pooled
+ * channels idle for longer than
+ * {@link NettyApi.NettyClientPool#idleTimeoutMillis()} are closed.
+ * </p>
+ */
+@ProviderType
+public interface NettyClientPool {
+
+	/**
+	 * @return a promise for a connected channel to the endpoint, which must be
+	 *         released once the request is done
+	 */
+	Promise<Channel> acquire(String inetHost, int inetPort);
+
+	/**
+	 * Returns the channel to its endpoint's pool. A closed channel is dropped from
+	 * the pool.
+	 * 
+	 * @return a promise resolved once the channel is back in its pool
+	 */
+	Promise<Void> release(Channel channel);
+
+	/**
+	 * @return the statistics of each endpoint's pool, keyed by
+	 *         {@code inetHost:inetPort}
+	 */
+	Map<String, Statistics> statistics();
+
+	@ProviderType
+	interface Statistics {
+
+		/**
+		 * @return the number of channels acquired and not yet released
+		 */
+		int acquiredChannels();
+
+		/**
+		 * @return the number of successful acquires
+		 */
+		long acquires();
+
+		/**
+		 * @return the number of acquires failing, such as on timeout or a connect
+		 *         error
+		 */
+		long acquireFailures();
+
+		/**
+		 * @return the number of pooled channels closed after being idle
+		 */
+		long evictions();
+
+		long acquireP50Nanos();
+
+		long acquireP99Nanos();
+
+		long acquireMaxNanos();
+
+		long releaseP50Nanos();
+
+		long releaseP99Nanos();
+
+		long releaseMaxNanos();
+	}
+}
@@ -0,0 +1,146 @@
+package io.blesmol.netty.api;
+
+import java.util.Map;
+import java.util.Optional;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+import io.netty.buffer.PooledByteBufAllocatorMetric;
+
+/**
+ * <p>
+ * Metrics of the provider's apps, keyed by app name. Counters are updated on
+ * the hot path without locking, and each snapshot sums them when taken, so
+ * values within a snapshot may be from slightly different points in time.
+ * Metrics of deleted apps are kept.
+ * </p>
+ */
+@ProviderType
+public interface NettyMetrics {
+
+	/**
+	 * @return a snapshot of the app's metrics, if any of its channels or event
+	 *         loop groups were created
+	 */
+	Optional<Snapshot> snapshot(String appName);
+
+	/**
+	 * @return snapshots of all apps, keyed by app name
+	 */
+	Map<String, Snapshot> snapshots();
+
+	/**
+	 * @return the number of tasks waiting for a thread of the provider's executor
+	 *         service, shared by all apps
+	 * @see ExecutorStatistics#queueDepth()
+	 */
+	int executorQueueDepth();
+
+	/**
+	 * @return the scheduling delays of event loop groups with a watchdog, keyed
+	 *         by {@code appName:groupName}
+	 * @see NettyApi.EventLoopGroup#WATCHDOG_INTERVAL_MILLIS
+	 */
+	Map<String, EventLoopDelay> eventLoopDelays();
+
+	/**
+	 * @return the metrics of the apps' allocators, keyed by app name
+	 * @see NettyApi.ByteBufAllocator
+	 */
+	Map<String, PooledByteBufAllocatorMetric> allocatorMetrics();
+
+	/**
+	 * How long watchdog probes waited to run on a group's event loops
+	 */
+	@ProviderType
+	interface EventLoopDelay {
+
+		String group();
+
+		/**
+		 * @return the number of probes run
+		 */
+		long count();
+
+		long p50Nanos();
+
+		long p99Nanos();
+
+		long p999Nanos();
+
+		long maxNanos();
+
+		/**
+		 * @return the number of times an event loop did not run a probe within the
+		 *         threshold
+		 */
+		long stalls();
+	}
+
+	@ProviderType
+	interface Snapshot {
+
+		String appName();
+
+		/**
+		 * @return the number of channels initialized and not yet closed
+		 */
+		long activeChannels();
+
+		/**
+		 * @return the number of channels initialized
+		 */
+		long totalChannels();
+
+		/**
+		 * @return the number of bound server channels
+		 */
+		long serverChannels();
+
+		/**
+		 * @return bytes read, when enabled by
+		 *         {@link NettyApi.ChannelInitializer#BYTE_METRICS}
+		 */
+		long bytesRead();
+
+		/**
+		 * @return bytes written, when enabled by
+		 *         {@link NettyApi.ChannelInitializer#BYTE_METRICS}
+		 */
+		long bytesWritten();
+
+		/**
+		 * @return the number of pipelines assembled
+		 */
+		long assemblies();
+
+		/**
+		 * @return the total time, in nanoseconds, from channels being initialized to
+		 *         their pipelines being assembled
+		 */
+		long assemblyNanos();
+
+		/**
+		 * @return the longest time, in nanoseconds, a single pipeline took to be
+		 *         assembled
+		 */
+		long maxAssemblyNanos();
+
+		default double averageAssemblyNanos() {
+			final long assemblies = assemblies();
+			return assemblies == 0 ? 0 : (double) assemblyNanos() / assemblies;
+		}
+
+		/**
+		 * @return the number of handlers whose services are resolved and are
+		 *         waiting to be added to their pipelines
+		 */
+		long pendingHandlers();
+
+		/**
+		 * @return the number of tasks pending on the event loops of the app's event
+		 *         loop groups
+		 */
+		long eventLoopPendingTasks();
+	}
+}
@@ -1,5 +1,7 @@
 package io.blesmol.netty.api;
 
+import java.util.List;
+
 import org.osgi.annotation.versioning.ProviderType;
 import org.osgi.util.promise.Promise;
 
@@ -23,4 +25,15 @@ public interface NettyServer {
 	 * @return A promise maybe containing the bind channel future
 	 */
 	Promise<ChannelFuture> promise();
+
+	/**
+	 * <p>
+	 * A promise maybe containing the channel futures returned from each of the
+	 * server's bind operations, one per acceptor
+	 * </p>
+	 * 
+	 * @return A promise maybe containing the bind channel futures
+	 * @see Configuration.NettyServer#acceptors()
+	 */
+	Promise<List<ChannelFuture>> promises();
 }
@@ -31,6 +31,10 @@ public interface Property {
 
 	interface NettyServer extends HandlerConfig {
 		String CHANNEL = "channel";
+		String ACCEPTORS = "acceptors";
+		String BACKLOG = "backlog";
+		String OPTIONS = NettyApi.ChannelOptions.OPTIONS;
+		String CHILD_OPTIONS = NettyApi.ChannelOptions.CHILD_OPTIONS;
 	}
 	
 	interface DynamicChannelHandler extends HandlerConfig {
@@ -57,5 +61,7 @@ public interface Property {
 		String INET_HOST = "inetHost";
 		String INET_PORT = "inetPort";
 		String APP_NAME = Property.APP_NAME;
+		String OPTIONS = NettyApi.ChannelOptions.OPTIONS;
+		String CHILD_OPTIONS = NettyApi.ChannelOptions.CHILD_OPTIONS;
 	}
 }
@@ -19,6 +19,8 @@ public interface ReferenceName {
 		String CHANNEL_HANDLERS_TARGET = CHANNEL_HANDLERS + DOT_TARGET;
 		String EVENT_EXECUTOR_GROUP = "eventExecutorGroup";
 		String EVENT_EXECUTOR_GROUP_TARGET = EVENT_EXECUTOR_GROUP + DOT_TARGET;
+		String TEMPLATE_HANDLERS = "templateHandlers";
+		String TEMPLATE_HANDLERS_TARGET = TEMPLATE_HANDLERS + DOT_TARGET;
 	}
 
 
@@ -41,6 +43,8 @@ public interface ReferenceName {
 		String WORKER_EVENT_LOOP_GROUP_TARGET = WORKER_EVENT_LOOP_GROUP + DOT_TARGET;
 		String BOSS_EVENT_LOOP_GROUP = "bossGroup";
 		String BOSS_EVENT_LOOP_GROUP_TARGET = BOSS_EVENT_LOOP_GROUP + DOT_TARGET;
+		String BYTE_BUF_ALLOCATOR = NettyApi.ByteBufAllocator.REFERENCE;
+		String BYTE_BUF_ALLOCATOR_TARGET = BYTE_BUF_ALLOCATOR + DOT_TARGET;
 	}
 
 }
@@ -0,0 +1,52 @@
+package io.blesmol.netty.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Runs the benchmarks in this framework, then stops it. Benchmarks are not
+ * forked, since they need the framework's services
+ */
+@Component(immediate = true)
+public class BenchmarkRunner {
+
+	private static final Logger logger = LoggerFactory.getLogger(BenchmarkRunner.class);
+
+	static final String INCLUDE = "io.blesmol.netty.benchmark.include";
+	static final String RESULT = "io.blesmol.netty.benchmark.result";
+
+	@Activate
+	void activate(BundleContext context) {
+		final Thread thread = new Thread(() -> run(context), "blesmol-netty-benchmark");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	void run(BundleContext context) {
+		final OptionsBuilder builder = new OptionsBuilder();
+		builder.include(context.getProperty(INCLUDE) != null ? context.getProperty(INCLUDE) : ".*").forks(0);
+		if (context.getProperty(RESULT) != null) {
+			builder.resultFormat(ResultFormatType.JSON).result(context.getProperty(RESULT));
+		}
+		final Options options = builder.build();
+		try {
+			new Runner(options).run();
+		} catch (Exception e) {
+			logger.error("Benchmarks failed", e);
+		} finally {
+			try {
+				context.getBundle(0).stop();
+			} catch (BundleException e) {
+				logger.error("Could not stop the framework", e);
+			}
+		}
+	}
+}
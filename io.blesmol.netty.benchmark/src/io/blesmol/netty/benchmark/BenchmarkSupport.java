@@ -0,0 +1,139 @@
+package io.blesmol.netty.benchmark;
+
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.cm.ConfigurationException;
+import org.osgi.service.cm.ManagedServiceFactory;
+import org.osgi.util.tracker.ServiceTracker;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/*
+ * Services and channels shared by the benchmarks. JMH creates the benchmark
+ * states, so services are looked up instead of injected
+ */
+final class BenchmarkSupport {
+
+	// Added by the dynamic channel handler after all its handlers, see
+	// io.blesmol.netty.provider.DynamicOutboundChannelHandler
+	static final String OUTBOUND_HANDLER_NAME = "dynamicOutboundChannelHandler";
+
+	static final String HOSTNAME = "localhost";
+	static final int PORT = 0;
+
+	private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+	private BenchmarkSupport() {
+	}
+
+	static BundleContext context() {
+		return FrameworkUtil.getBundle(BenchmarkSupport.class).getBundleContext();
+	}
+
+	static <T> T service(Class<T> clazz) throws Exception {
+		return service(clazz, String.format("(%s=%s)", Constants.OBJECTCLASS, clazz.getName()));
+	}
+
+	static <T> T service(Class<T> clazz, String filter) throws Exception {
+		final BundleContext context = context();
+		final ServiceTracker<T, T> tracker = new ServiceTracker<>(context, context.createFilter(filter), null);
+		tracker.open();
+		try {
+			final T service = tracker.waitForService(TimeUnit.NANOSECONDS.toMillis(TIMEOUT_NANOS));
+			if (service == null) {
+				throw new IllegalStateException("No service matching " + filter);
+			}
+			return service;
+		} finally {
+			tracker.close();
+		}
+	}
+
+	static List<String> handlerNames(String prefix, int count) {
+		return IntStream.range(0, count).mapToObj(i -> prefix + i).collect(Collectors.toList());
+	}
+
+	static List<String> factoryPids(String factoryPid, int count) {
+		return IntStream.range(0, count).mapToObj(i -> factoryPid).collect(Collectors.toList());
+	}
+
+	static ServiceRegistration<ManagedServiceFactory> registerHandlerFactory(String factoryPid) {
+		final Hashtable<String, Object> props = new Hashtable<>();
+		props.put(Constants.SERVICE_PID, factoryPid);
+		return context().registerService(ManagedServiceFactory.class, new PassThroughHandlerFactory(), props);
+	}
+
+	/*
+	 * Runs the embedded channel's tasks until the condition holds
+	 */
+	static void await(EmbeddedChannel ch, BooleanSupplier condition) {
+		final long deadline = System.nanoTime() + TIMEOUT_NANOS;
+		while (!condition.getAsBoolean()) {
+			if (System.nanoTime() - deadline > 0) {
+				throw new IllegalStateException("Timed out waiting on channel " + ch.id());
+			}
+			ch.runPendingTasks();
+			Thread.yield();
+		}
+	}
+
+	static void awaitAssembled(EmbeddedChannel ch) {
+		await(ch, () -> ch.pipeline().get(OUTBOUND_HANDLER_NAME) != null);
+	}
+
+	static class PassThroughHandler extends ChannelInboundHandlerAdapter {
+	}
+
+	// Consumes reads at the end of the pipeline
+	@ChannelHandler.Sharable
+	static class SinkHandler extends ChannelInboundHandlerAdapter {
+
+		long reads;
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+			reads++;
+		}
+	}
+
+	static class PassThroughHandlerFactory implements ManagedServiceFactory {
+
+		private final Map<String, ServiceRegistration<ChannelHandler>> registrations = new HashMap<>();
+
+		@Override
+		public String getName() {
+			return PassThroughHandlerFactory.class.getName();
+		}
+
+		@Override
+		public synchronized void updated(String pid, Dictionary<String, ?> properties) throws ConfigurationException {
+			if (!registrations.containsKey(pid)) {
+				registrations.put(pid, context().registerService(ChannelHandler.class, new PassThroughHandler(),
+						properties));
+			}
+		}
+
+		@Override
+		public synchronized void deleted(String pid) {
+			final ServiceRegistration<ChannelHandler> registration = registrations.remove(pid);
+			if (registration != null) {
+				registration.unregister();
+			}
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package io.blesmol.netty.benchmark;
+
+import static io.blesmol.netty.benchmark.BenchmarkSupport.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.cm.ManagedServiceFactory;
+
+import io.blesmol.netty.api.ConfigurationUtil;
+import io.blesmol.netty.api.NettyApi;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/*
+ * Reads passing through an assembled pipeline. Dynamic handlers run on the
+ * channel's event loop, so reads stay on the benchmark thread
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class ChannelReadBenchmark {
+
+	private static final Object MESSAGE = new Object();
+
+	private final String factoryPid = ChannelReadBenchmark.class.getName();
+
+	@Param({ "1", "10", "100" })
+	int handlers;
+
+	private ConfigurationUtil configUtil;
+	private ServiceRegistration<ManagedServiceFactory> factoryRegistration;
+	private final List<String> configPids = new ArrayList<>();
+	private EmbeddedChannel ch;
+
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setup() throws Exception {
+		final String appName = ChannelReadBenchmark.class.getName() + handlers;
+		configUtil = service(ConfigurationUtil.class);
+		factoryRegistration = registerHandlerFactory(factoryPid);
+		configPids.addAll(configUtil.createChannelInitializer(appName, HOSTNAME, PORT,
+				factoryPids(factoryPid, handlers), handlerNames("read", handlers), Optional.empty(),
+				Optional.of(Collections.singletonMap(NettyApi.ChannelInitializer.EVENT_LOOP_DYNAMIC_HANDLERS, true))));
+		final ChannelInitializer<Channel> initializer = service(ChannelInitializer.class,
+				String.format("(&(%s=%s)(%s=%s))", Constants.OBJECTCLASS, ChannelInitializer.class.getName(),
+						NettyApi.ChannelInitializer.APP_NAME, appName));
+
+		ch = new EmbeddedChannel(DefaultChannelId.newInstance());
+		ch.pipeline().addFirst(initializer);
+		awaitAssembled(ch);
+		ch.pipeline().addLast(new SinkHandler());
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		ch.close();
+		configUtil.deleteConfigurationPids(configPids);
+		factoryRegistration.unregister();
+	}
+
+	@Benchmark
+	public void channelRead() {
+		ch.pipeline().fireChannelRead(MESSAGE);
+	}
+}
@@ -0,0 +1,101 @@
+package io.blesmol.netty.benchmark;
+
+import static io.blesmol.netty.benchmark.BenchmarkSupport.*;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ManagedServiceFactory;
+
+import io.blesmol.netty.api.ConfigurationUtil;
+import io.blesmol.netty.api.DynamicChannelHandler;
+import io.blesmol.netty.api.Property;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/*
+ * Modifying an assembled pipeline's dynamic handler configuration, alternately
+ * inserting and removing a handler in the middle, until the pipeline reflects
+ * it
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+public class ModifiedBenchmark {
+
+	private final String appName = ModifiedBenchmark.class.getName();
+	private final String factoryPid = ModifiedBenchmark.class.getName();
+	private final String insertedName = "inserted";
+
+	@Param({ "10", "100" })
+	int handlers;
+
+	private ServiceRegistration<ManagedServiceFactory> factoryRegistration;
+	private Configuration handlerConfig;
+	private Dictionary<String, Object> initialProps;
+	private Dictionary<String, Object> insertedProps;
+	private EmbeddedChannel ch;
+	private boolean inserted;
+
+	@Setup
+	public void setup() throws Exception {
+		final ConfigurationUtil configUtil = service(ConfigurationUtil.class);
+		final ConfigurationAdmin admin = service(ConfigurationAdmin.class);
+		factoryRegistration = registerHandlerFactory(factoryPid);
+
+		ch = new EmbeddedChannel(DefaultChannelId.newInstance());
+		final String channelId = ch.id().asLongText();
+		final List<String> names = handlerNames("modified", handlers);
+		initialProps = configUtil.toDynamicChannelHandlerProperties(channelId, appName, HOSTNAME, PORT,
+				factoryPids(factoryPid, handlers), names, Optional.empty());
+		final List<String> insertedNames = new ArrayList<>(names);
+		insertedNames.add(handlers / 2, insertedName);
+		insertedProps = configUtil.toDynamicChannelHandlerProperties(channelId, appName, HOSTNAME, PORT,
+				factoryPids(factoryPid, handlers + 1), insertedNames, Optional.empty());
+
+		// Simulate a channel initializer
+		handlerConfig = admin.createFactoryConfiguration(io.blesmol.netty.api.Configuration.DYNAMIC_CHANNEL_HANDLER_PID,
+				"?");
+		handlerConfig.update(initialProps);
+		final DynamicChannelHandler dynamicHandler = service(DynamicChannelHandler.class,
+				String.format("(&(%s=%s)(%s=%s))", Constants.OBJECTCLASS, DynamicChannelHandler.class.getName(),
+						Property.DynamicChannelHandler.CHANNEL_ID, channelId));
+		ch.pipeline().addFirst(DynamicChannelHandler.HANDLER_NAME, dynamicHandler);
+		awaitAssembled(ch);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		handlerConfig.delete();
+		ch.close();
+		factoryRegistration.unregister();
+	}
+
+	@Benchmark
+	public boolean modified() throws Exception {
+		inserted = !inserted;
+		handlerConfig.update(inserted ? insertedProps : initialProps);
+		await(ch, () -> (ch.pipeline().get(insertedName) != null) == inserted);
+		return inserted;
+	}
+}
@@ -0,0 +1,87 @@
+package io.blesmol.netty.benchmark;
+
+import static io.blesmol.netty.benchmark.BenchmarkSupport.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.cm.ManagedServiceFactory;
+
+import io.blesmol.netty.api.ConfigurationUtil;
+import io.blesmol.netty.api.NettyApi;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/*
+ * From a channel initializer adding the dynamic handler to its last handler
+ * being added, which includes configuring the handlers via Config Admin
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+public class PipelineAssemblyBenchmark {
+
+	private final String factoryPid = PipelineAssemblyBenchmark.class.getName();
+
+	@Param({ "1", "10", "100", "500" })
+	int handlers;
+
+	private String appName;
+	private ConfigurationUtil configUtil;
+	private ServiceRegistration<ManagedServiceFactory> factoryRegistration;
+	private final List<String> configPids = new ArrayList<>();
+	private ChannelInitializer<Channel> initializer;
+	private EmbeddedChannel ch;
+
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setup() throws Exception {
+		appName = PipelineAssemblyBenchmark.class.getName() + handlers;
+		configUtil = service(ConfigurationUtil.class);
+		factoryRegistration = registerHandlerFactory(factoryPid);
+		configPids.addAll(configUtil.createChannelInitializer(appName, HOSTNAME, PORT,
+				factoryPids(factoryPid, handlers), handlerNames("assembly", handlers), Optional.empty()));
+		initializer = service(ChannelInitializer.class, String.format("(&(%s=%s)(%s=%s))", Constants.OBJECTCLASS,
+				ChannelInitializer.class.getName(), NettyApi.ChannelInitializer.APP_NAME, appName));
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		configUtil.deleteConfigurationPids(configPids);
+		factoryRegistration.unregister();
+	}
+
+	@TearDown(Level.Invocation)
+	public void closeChannel() {
+		ch.close();
+		ch.runPendingTasks();
+	}
+
+	@Benchmark
+	public EmbeddedChannel initChannel() {
+		ch = new EmbeddedChannel(DefaultChannelId.newInstance());
+		ch.pipeline().addFirst(initializer);
+		awaitAssembled(ch);
+		return ch;
+	}
+}
@@ -0,0 +1,47 @@
+package io.blesmol.netty.loadgen;
+
+import java.util.Dictionary;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.cm.ConfigurationException;
+import org.osgi.service.cm.ManagedServiceFactory;
+
+import io.netty.channel.ChannelHandler;
+
+/*
+ * Registers a new channel handler per handler configuration
+ */
+class HandlerFactory implements ManagedServiceFactory {
+
+	private final BundleContext context;
+	private final Supplier<ChannelHandler> supplier;
+	private final Map<String, ServiceRegistration<ChannelHandler>> registrations = new ConcurrentHashMap<>();
+
+	HandlerFactory(BundleContext context, Supplier<ChannelHandler> supplier) {
+		this.context = context;
+		this.supplier = supplier;
+	}
+
+	@Override
+	public String getName() {
+		return HandlerFactory.class.getName();
+	}
+
+	@Override
+	public void updated(String pid, Dictionary<String, ?> properties) throws ConfigurationException {
+		registrations.computeIfAbsent(pid,
+				k -> context.registerService(ChannelHandler.class, supplier.get(), properties));
+	}
+
+	@Override
+	public void deleted(String pid) {
+		final ServiceRegistration<ChannelHandler> registration = registrations.remove(pid);
+		if (registration != null) {
+			registration.unregister();
+		}
+	}
+}
@@ -0,0 +1,212 @@
+package io.blesmol.netty.loadgen;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.cm.ManagedServiceFactory;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.util.tracker.ServiceTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.blesmol.netty.api.ConfigurationUtil;
+import io.blesmol.netty.api.NettyApi;
+import io.blesmol.netty.api.NettyServer;
+import io.blesmol.netty.api.Property;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+
+/*
+ * Runs a loopback load test once activated: an echo server app and a client app
+ * created via the configuration utility, and many connections opened through
+ * the client app's bootstrap, which all assemble their pipelines via the
+ * provider. Results are written as JSON
+ */
+@Component(configurationPid = LoadGenerator.Config.PID, configurationPolicy = ConfigurationPolicy.OPTIONAL, immediate = true)
+public class LoadGenerator {
+
+	private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+	public @interface Config {
+		String PID = "io.blesmol.netty.loadgen.LoadGenerator";
+
+		String MODE_CLOSED_LOOP = "closedLoop";
+		String MODE_FIXED_RATE = "fixedRate";
+
+		String inetHost() default "127.0.0.1";
+
+		int inetPort() default 54400;
+
+		int connections() default 1000;
+
+		// Connections being established at once
+		int connectConcurrency() default 100;
+
+		// Closed loop connections send their next message when the last is echoed,
+		// fixed rate connections send at the configured rate, across all connections
+		String mode() default MODE_CLOSED_LOOP;
+
+		int rate() default 10000;
+
+		int messageSize() default 64;
+
+		int warmupSeconds() default 5;
+
+		int durationSeconds() default 30;
+
+		String transport() default NettyApi.EventLoopGroup.TRANSPORT_NIO;
+
+		int acceptors() default 1;
+
+		String resultFile() default "loadgen-result.json";
+	}
+
+	private final String serverAppName = LoadGenerator.class.getName() + ":server";
+	private final String clientAppName = LoadGenerator.class.getName() + ":client";
+	private final String serverFactoryPid = serverAppName;
+	private final String clientFactoryPid = clientAppName;
+
+	@Reference
+	ConfigurationUtil configUtil;
+
+	private volatile Thread thread;
+	private volatile LoadRun run;
+
+	@Activate
+	void activate(BundleContext context, Config config) {
+		thread = new Thread(() -> run(context, config), "blesmol-netty-loadgen");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Deactivate
+	void deactivate() throws InterruptedException {
+		final LoadRun run = this.run;
+		if (run != null) {
+			run.running = false;
+		}
+		thread.interrupt();
+		thread.join(TimeUnit.SECONDS.toMillis(10));
+	}
+
+	void run(BundleContext context, Config config) {
+		final LoadRun run = new LoadRun(config);
+		this.run = run;
+		final List<String> configPids = new ArrayList<>();
+		final List<ServiceRegistration<ManagedServiceFactory>> registrations = new ArrayList<>();
+		try {
+			registrations.add(registerFactory(context, serverFactoryPid, EchoHandler::new));
+			registrations.add(registerFactory(context, clientFactoryPid, () -> new LoadHandler(run)));
+
+			final Map<String, Object> providerProperties = new HashMap<>();
+			providerProperties.put(NettyApi.EventLoopGroup.TRANSPORT, config.transport());
+			providerProperties.put(Property.NettyServer.ACCEPTORS, config.acceptors());
+
+			// Echo server
+			configPids.addAll(configUtil.createNettyServer(serverAppName, config.inetHost(), config.inetPort(),
+					Collections.singletonList(serverFactoryPid), Collections.singletonList("echo"), Optional.empty(),
+					Optional.of(providerProperties)));
+			final NettyServer server = service(context, NettyServer.class, serverAppName);
+			for (ChannelFuture future : server.promises().getValue()) {
+				future.sync();
+			}
+
+			// Client app, whose own connection does not take part
+			configPids.addAll(configUtil.createNettyClient(clientAppName, config.inetHost(), config.inetPort(),
+					Collections.singletonList(clientFactoryPid), Collections.singletonList("load"), Optional.empty(),
+					Optional.empty(), Optional.of(true), Optional.of(providerProperties)));
+			final Bootstrap bootstrap = service(context, Bootstrap.class, clientAppName);
+			bootstrap.attr(LoadRun.TRACKED, true);
+
+			// Connect, bounded by the connect concurrency. Traffic starts per connection
+			// once it is established
+			logger.info("Opening {} connections to {}:{}", config.connections(), config.inetHost(),
+					config.inetPort());
+			for (int i = 0; i < config.connections() && run.running; i++) {
+				run.connectPermits.acquire();
+				final long started = System.nanoTime();
+				final ChannelFuture future = bootstrap.connect(config.inetHost(), config.inetPort());
+				future.channel().attr(LoadRun.CONNECT_STARTED).set(started);
+				run.channels.add(future.channel());
+				future.addListener(f -> {
+					if (!f.isSuccess()) {
+						logger.warn("Connection failed", f.cause());
+						run.connectFailed();
+					}
+				});
+			}
+			if (!run.connected.await(5, TimeUnit.MINUTES)) {
+				logger.warn("Timed out establishing connections, {} remain", run.connected.getCount());
+			}
+
+			// Measure after warming up
+			TimeUnit.SECONDS.sleep(config.warmupSeconds());
+			logger.info("Measuring for {} seconds", config.durationSeconds());
+			run.recording = true;
+			final long start = System.nanoTime();
+			TimeUnit.SECONDS.sleep(config.durationSeconds());
+			run.recording = false;
+			final long measuredNanos = System.nanoTime() - start;
+			run.running = false;
+
+			final Path result = Paths.get(config.resultFile());
+			Files.write(result, run.toJson(measuredNanos).getBytes(StandardCharsets.UTF_8));
+			logger.info("Wrote results of {} messages to {}", run.rtt.count(), result.toAbsolutePath());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			logger.error("Load run failed", e);
+		} finally {
+			run.running = false;
+			run.channels.close().awaitUninterruptibly(30, TimeUnit.SECONDS);
+			try {
+				configUtil.deleteConfigurationPids(configPids);
+			} catch (Exception e) {
+				logger.error("Could not delete configurations", e);
+			}
+			registrations.forEach(ServiceRegistration::unregister);
+		}
+	}
+
+	private ServiceRegistration<ManagedServiceFactory> registerFactory(BundleContext context, String factoryPid,
+			Supplier<ChannelHandler> supplier) {
+		final Hashtable<String, Object> props = new Hashtable<>();
+		props.put(Constants.SERVICE_PID, factoryPid);
+		return context.registerService(ManagedServiceFactory.class, new HandlerFactory(context, supplier), props);
+	}
+
+	private <T> T service(BundleContext context, Class<T> clazz, String appName) throws Exception {
+		final String filter = String.format("(&(%s=%s)(%s=%s))", Constants.OBJECTCLASS, clazz.getName(),
+				NettyApi.APP_NAME, appName);
+		final ServiceTracker<T, T> tracker = new ServiceTracker<>(context, context.createFilter(filter), null);
+		tracker.open();
+		try {
+			final T service = tracker.waitForService(TimeUnit.SECONDS.toMillis(30));
+			if (service == null) {
+				throw new IllegalStateException("No service matching " + filter);
+			}
+			return service;
+		} finally {
+			tracker.close();
+		}
+	}
+}
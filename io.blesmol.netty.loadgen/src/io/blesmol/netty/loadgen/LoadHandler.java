@@ -0,0 +1,115 @@
+package io.blesmol.netty.loadgen;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+/*
+ * Sends fixed size messages starting with their send time, and records the
+ * round trip time of their echo. Only channels opened by the load run send
+ */
+class LoadHandler extends ChannelInboundHandlerAdapter {
+
+	private final LoadRun run;
+
+	// Accessed on the handler's executor
+	private ByteBuf cumulation;
+	private boolean started;
+	private ScheduledFuture<?> schedule;
+	private long sends;
+
+	LoadHandler(LoadRun run) {
+		this.run = run;
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		cumulation = ctx.alloc().buffer(run.messageSize * 4);
+		if (ctx.channel().isActive()) {
+			maybeStart(ctx);
+		}
+	}
+
+	@Override
+	public void channelActive(ChannelHandlerContext ctx) throws Exception {
+		maybeStart(ctx);
+		super.channelActive(ctx);
+	}
+
+	// The channel is both connected and its pipeline assembled
+	private void maybeStart(ChannelHandlerContext ctx) {
+		if (started || !run.established(ctx.channel())) {
+			return;
+		}
+		started = true;
+		if (run.fixedRate) {
+			// Spread connections over the period, and measure from each message's
+			// intended send time so a stalled server is not hidden
+			final long period = run.periodNanos();
+			final long delay = ThreadLocalRandom.current().nextLong(period);
+			final long first = System.nanoTime() + delay;
+			schedule = ctx.executor().scheduleAtFixedRate(() -> {
+				if (run.running) {
+					send(ctx, first + sends++ * period);
+					ctx.flush();
+				}
+			}, delay, period, TimeUnit.NANOSECONDS);
+		} else {
+			send(ctx, System.nanoTime());
+			ctx.flush();
+		}
+	}
+
+	private void send(ChannelHandlerContext ctx, long sentNanos) {
+		final ByteBuf message = ctx.alloc().buffer(run.messageSize);
+		message.writeLong(sentNanos);
+		message.writeZero(run.messageSize - Long.BYTES);
+		ctx.write(message, ctx.voidPromise());
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		final ByteBuf in = (ByteBuf) msg;
+		try {
+			cumulation.writeBytes(in);
+		} finally {
+			in.release();
+		}
+		// Echoes may be split or coalesced
+		while (cumulation.readableBytes() >= run.messageSize) {
+			final long sentNanos = cumulation.readLong();
+			cumulation.skipBytes(run.messageSize - Long.BYTES);
+			run.received(System.nanoTime() - sentNanos);
+			if (!run.fixedRate && run.running) {
+				send(ctx, System.nanoTime());
+			}
+		}
+		cumulation.discardSomeReadBytes();
+	}
+
+	@Override
+	public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+		ctx.flush();
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		if (schedule != null) {
+			schedule.cancel(false);
+		}
+		if (cumulation != null) {
+			cumulation.release();
+			cumulation = null;
+		}
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+		run.error();
+		ctx.close();
+	}
+}
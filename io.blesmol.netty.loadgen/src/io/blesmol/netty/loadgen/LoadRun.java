@@ -0,0 +1,126 @@
+package io.blesmol.netty.loadgen;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.blesmol.netty.util.LatencyHistogram;
+import io.netty.channel.Channel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+/*
+ * State and results of a load run, shared by its load handlers
+ */
+class LoadRun {
+
+	// Set on the client bootstrap once the run opens connections
+	static final AttributeKey<Boolean> TRACKED = AttributeKey.valueOf(LoadRun.class, "tracked");
+	static final AttributeKey<Long> CONNECT_STARTED = AttributeKey.valueOf(LoadRun.class, "connectStarted");
+
+	final LoadGenerator.Config config;
+	final int messageSize;
+	final boolean fixedRate;
+
+	volatile boolean running = true;
+	volatile boolean recording;
+
+	final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+	final CountDownLatch connected;
+	final Semaphore connectPermits;
+
+	final LatencyHistogram connect = new LatencyHistogram();
+	final LatencyHistogram rtt = new LatencyHistogram();
+	final LongAdder connectFailures = new LongAdder();
+	final LongAdder errors = new LongAdder();
+
+	LoadRun(LoadGenerator.Config config) {
+		this.config = config;
+		this.messageSize = Math.max(Long.BYTES, config.messageSize());
+		this.fixedRate = LoadGenerator.Config.MODE_FIXED_RATE.equals(config.mode());
+		this.connected = new CountDownLatch(config.connections());
+		this.connectPermits = new Semaphore(Math.max(1, config.connectConcurrency()));
+	}
+
+	// Between two messages of a connection, so all connections together send at
+	// the configured rate
+	long periodNanos() {
+		return Math.max(1, TimeUnit.SECONDS.toNanos(config.connections()) / Math.max(1, config.rate()));
+	}
+
+	boolean established(Channel channel) {
+		if (channel.attr(TRACKED).get() == null) {
+			return false;
+		}
+		final Long started = channel.attr(CONNECT_STARTED).get();
+		if (started != null) {
+			connect.record(System.nanoTime() - started);
+		}
+		connectPermits.release();
+		connected.countDown();
+		return true;
+	}
+
+	void connectFailed() {
+		connectFailures.increment();
+		connectPermits.release();
+		connected.countDown();
+	}
+
+	void received(long rttNanos) {
+		if (recording) {
+			rtt.record(rttNanos);
+		}
+	}
+
+	void error() {
+		errors.increment();
+	}
+
+	String toJson(long measuredNanos) {
+		final double seconds = measuredNanos / 1e9;
+		final StringBuilder json = new StringBuilder();
+		json.append("{\n");
+		json.append(String.format(Locale.ROOT, "  \"mode\": \"%s\",\n", config.mode()));
+		json.append(String.format(Locale.ROOT, "  \"transport\": \"%s\",\n", config.transport()));
+		json.append(String.format(Locale.ROOT, "  \"connections\": %d,\n", config.connections()));
+		json.append(String.format(Locale.ROOT, "  \"messageSize\": %d,\n", messageSize));
+		if (fixedRate) {
+			json.append(String.format(Locale.ROOT, "  \"rate\": %d,\n", config.rate()));
+		}
+		json.append(String.format(Locale.ROOT, "  \"measuredSeconds\": %.3f,\n", seconds));
+		json.append(String.format(Locale.ROOT, "  \"messages\": %d,\n", rtt.count()));
+		json.append(String.format(Locale.ROOT, "  \"messagesPerSecond\": %.1f,\n", rtt.count() / seconds));
+		json.append(String.format(Locale.ROOT, "  \"connectFailures\": %d,\n", connectFailures.sum()));
+		json.append(String.format(Locale.ROOT, "  \"errors\": %d,\n", errors.sum()));
+		json.append("  \"connectMicros\": ");
+		appendHistogram(json, connect);
+		json.append(",\n  \"rttMicros\": ");
+		appendHistogram(json, rtt);
+		json.append("\n}\n");
+		return json.toString();
+	}
+
+	private static void appendHistogram(StringBuilder json, LatencyHistogram histogram) {
+		json.append(String.format(Locale.ROOT,
+				"{ \"count\": %d, \"mean\": %.1f, \"p50\": %.1f, \"p99\": %.1f, \"p999\": %.1f, \"max\": %.1f,",
+				histogram.count(), histogram.mean() / 1e3, micros(histogram, 50), micros(histogram, 99),
+				micros(histogram, 99.9), histogram.max() / 1e3));
+		// Percentile distribution, halving the remaining distance to 100 each step
+		json.append(" \"percentiles\": [");
+		double percentile = 0;
+		for (int i = 0; percentile < 99.999; i++) {
+			percentile = 100 - 100 / Math.pow(2, i);
+			json.append(String.format(Locale.ROOT, "[%.5f, %.1f], ", percentile, micros(histogram, percentile)));
+		}
+		json.append(String.format(Locale.ROOT, "[100.0, %.1f]] }", histogram.max() / 1e3));
+	}
+
+	private static double micros(LatencyHistogram histogram, double percentile) {
+		return histogram.valueAtPercentile(percentile) / 1e3;
+	}
+}
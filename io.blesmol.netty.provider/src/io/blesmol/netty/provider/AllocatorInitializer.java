@@ -0,0 +1,35 @@
+package io.blesmol.netty.provider;
+
+import java.util.function.Supplier;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInitializer;
+
+/*
+ * Gives each channel the app's allocator service, if one is bound when the
+ * channel is initialized, then adds the app's channel initializer. Allocators
+ * are bound dynamically, so one created after the app's servers and bootstraps
+ * applies to their channels from then on without reactivating them
+ */
+@ChannelHandler.Sharable
+final class AllocatorInitializer extends ChannelInitializer<Channel> {
+
+	private final ChannelHandler handler;
+	private final Supplier<ByteBufAllocator> allocator;
+
+	AllocatorInitializer(ChannelHandler handler, Supplier<ByteBufAllocator> allocator) {
+		this.handler = handler;
+		this.allocator = allocator;
+	}
+
+	@Override
+	protected void initChannel(Channel ch) throws Exception {
+		final ByteBufAllocator allocator = this.allocator.get();
+		if (allocator != null) {
+			ch.config().setAllocator(allocator);
+		}
+		ch.pipeline().addLast(handler);
+	}
+}
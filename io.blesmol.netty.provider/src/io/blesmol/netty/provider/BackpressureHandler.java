@@ -0,0 +1,89 @@
+package io.blesmol.netty.provider;
+
+import io.blesmol.netty.api.Backpressure;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.AttributeKey;
+
+/*
+ * Stops reading while the channel is not writable, or stops its peer from
+ * reading when linked. Added ahead of the dynamic handler, so writability is
+ * handled before the pipeline is complete.
+ */
+@ChannelHandler.Sharable
+class BackpressureHandler extends ChannelInboundHandlerAdapter {
+
+	private static final Tracer tracer = new Tracer(BackpressureHandler.class);
+
+	static final String HANDLER_NAME = "blesmolBackpressure";
+
+	static final BackpressureHandler INSTANCE = new BackpressureHandler();
+
+	// Set on channels whose reading was stopped by backpressure, so that only
+	// backpressure resumes it, and assembling their pipelines leaves it stopped.
+	// Not set on channels not yet reading, since their pipelines are incomplete
+	static final AttributeKey<Boolean> PAUSED = AttributeKey.valueOf(BackpressureHandler.class, "paused");
+
+	private BackpressureHandler() {
+	}
+
+	static Channel reader(Channel channel) {
+		final Channel peer = channel.attr(Backpressure.PEER).get();
+		return peer != null ? peer : channel;
+	}
+
+	static void pause(Channel reader) {
+		if (reader.config().isAutoRead() && reader.attr(PAUSED).getAndSet(Boolean.TRUE) == null) {
+			reader.config().setAutoRead(false);
+		}
+	}
+
+	static void resume(Channel reader) {
+		if (reader.attr(PAUSED).getAndSet(null) != null) {
+			reader.config().setAutoRead(true);
+		}
+	}
+
+	/*
+	 * Starts reading once the channel's pipeline is assembled, unless
+	 * backpressure paused it meanwhile. Writability changes before then found it
+	 * not reading, so pause it if the channel it writes to, itself or its peer,
+	 * is not writable now
+	 */
+	static void startReading(Channel channel) {
+		if (channel.attr(PAUSED).get() != null) {
+			return;
+		}
+		channel.config().setAutoRead(true);
+		final Channel writer = reader(channel);
+		if (!writer.isWritable() && writer.pipeline().get(BackpressureHandler.class) != null) {
+			pause(channel);
+		}
+	}
+
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		final Channel channel = ctx.channel();
+		final Channel reader = reader(channel);
+		if (channel.isWritable()) {
+			tracer.trace(channel, "Channel {} writable, resuming reads on {}", channel, reader);
+			resume(reader);
+		} else {
+			tracer.trace(channel, "Channel {} not writable, pausing reads on {}", channel, reader);
+			pause(reader);
+		}
+		ctx.fireChannelWritabilityChanged();
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		// A closed channel no longer fills up, so its peer may read again
+		final Channel reader = reader(ctx.channel());
+		if (reader != ctx.channel()) {
+			resume(reader);
+		}
+		ctx.fireChannelInactive();
+	}
+}
@@ -0,0 +1,69 @@
+package io.blesmol.netty.provider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.osgi.util.promise.Deferred;
+import org.osgi.util.promise.Promise;
+import org.osgi.util.promise.Promises;
+
+/*
+ * Applies an operation to each item of a batch on an executor, using at most a
+ * bounded number of tasks, each applying it to every n-th item
+ */
+final class Batch {
+
+	@FunctionalInterface
+	interface Operation<T, R> {
+		R apply(T t) throws Exception;
+	}
+
+	private Batch() {
+	}
+
+	/*
+	 * Resolves with the results in the order of the items, once all are applied.
+	 * Fails with a failure of the operation, after the other items are applied
+	 */
+	static <T, R> Promise<List<R>> apply(Executor executor, int concurrency, List<T> items,
+			Operation<T, R> operation) {
+		final int tasks = Math.min(concurrency, items.size());
+		if (tasks == 0) {
+			return Promises.resolved(Collections.emptyList());
+		}
+		final Object[] results = new Object[items.size()];
+		final List<Promise<Void>> promises = new ArrayList<>(tasks);
+		for (int task = 0; task < tasks; task++) {
+			final int first = task;
+			final Deferred<Void> deferred = new Deferred<>();
+			promises.add(deferred.getPromise());
+			DeferredTask.execute(executor, deferred, () -> {
+				Exception failure = null;
+				for (int i = first; i < items.size(); i += tasks) {
+					try {
+						results[i] = operation.apply(items.get(i));
+					} catch (Exception e) {
+						failure = failure == null ? e : failure;
+					}
+				}
+				if (failure == null) {
+					deferred.resolve(null);
+				} else {
+					deferred.fail(failure);
+				}
+			});
+		}
+		// Resolving happens-after the tasks' writes to the results
+		return Promises.all(promises).map(p -> {
+			final List<R> list = new ArrayList<>(results.length);
+			for (Object result : results) {
+				@SuppressWarnings("unchecked")
+				final R r = (R) result;
+				list.add(r);
+			}
+			return list;
+		});
+	}
+}
@@ -1,23 +1,37 @@
 package io.blesmol.netty.provider;
 
+import java.util.Map;
+
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import io.blesmol.netty.api.NettyApi;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
 
 @Component(configurationPid = NettyApi.Bootstrap.PID, configurationPolicy = ConfigurationPolicy.REQUIRE, service = Bootstrap.class)
 public class BootstrapProvider extends Bootstrap {
 
+	private static final Logger logger = LoggerFactory.getLogger(Bootstrap.class);
+
+	private volatile EventLoopGroup group;
+
+	private volatile ByteBufAllocator allocator;
+
 	@Reference(name = NettyApi.Bootstrap.Reference.EVENT_LOOP_GROUP)
 	void setEventLoopGroup(EventLoopGroup group) {
+		this.group = group;
 		this.group(group);
 	}
 
@@ -26,15 +40,51 @@ public class BootstrapProvider extends Bootstrap {
 	
 	@Reference(name = NettyApi.Bootstrap.Reference.CHANNEL_INITIALIZER)
 	void setChannelInitializer(ChannelInitializer<Channel> channelInitializer) {
-		this.handler(channelInitializer);
+		this.handler(new AllocatorInitializer(channelInitializer, () -> allocator));
 	}
 	void unsetChannelInitializer(ChannelInitializer<Channel> channelInitializer) {
 	}
 
+	// Bound when targeted by the configuration, and dynamically, since
+	// reactivating would drop the app's clients and pooled connections. Channels
+	// get the allocator bound when they are initialized
+	@Reference(name = NettyApi.Bootstrap.Reference.BYTE_BUF_ALLOCATOR, cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY, target = NettyApi.ByteBufAllocator.NO_TARGET)
+	void setByteBufAllocator(ByteBufAllocator allocator) {
+		this.allocator = allocator;
+	}
+
+	void unsetByteBufAllocator(ByteBufAllocator allocator) {
+		// A greedy rebind sets the replacement first
+		if (this.allocator == allocator) {
+			this.allocator = null;
+		}
+	}
+
 	@Activate
 	void activate(NettyApi.Bootstrap config) {
-		// TODO: move channel to channel factory and consume a provider factory
-		this.option(ChannelOption.AUTO_READ, false).channel(NioSocketChannel.class);
+		// Fail activation on invalid options
+		final Map<ChannelOption<Object>, Object> options = ChannelOptionParser.parse(config.options());
+		options.forEach(this::option);
+
+		if (allocator != null && options.containsKey(ChannelOption.ALLOCATOR)) {
+			logger.warn("Ignoring option {} for appName {}, using its allocator service", ChannelOption.ALLOCATOR,
+					config.appName());
+		}
+
+		// Reading is enabled once the pipeline is complete
+		if (Boolean.TRUE.equals(options.get(ChannelOption.AUTO_READ))) {
+			logger.warn("Ignoring option {}=true for appName {}", ChannelOption.AUTO_READ, config.appName());
+		}
+
+		// The channel class must match the group's transport
+		this.option(ChannelOption.AUTO_READ, false).channel(Transport.of(group).channelClass());
+
+	}
 
+	// Clients connecting on an inbound channel's event loop clone the bootstrap
+	// with that loop, whose transport may differ from the bootstrap's group
+	@Override
+	public Bootstrap clone(EventLoopGroup group) {
+		return super.clone(group).channel(Transport.of(group).channelClass());
 	}
 }
@@ -0,0 +1,163 @@
+package io.blesmol.netty.provider;
+
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Deactivate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.blesmol.netty.api.NettyApi;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufAllocatorMetricProvider;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocatorMetric;
+
+/*
+ * An app's pooled allocator. Its settings are fixed once created, so updated
+ * configurations reactivate the component, and the servers and bootstraps
+ * bound to it
+ */
+@Component(configurationPid = NettyApi.ByteBufAllocator.PID, configurationPolicy = ConfigurationPolicy.REQUIRE, service = {
+		ByteBufAllocator.class, ByteBufAllocatorMetricProvider.class })
+public class ByteBufAllocatorProvider implements ByteBufAllocator, ByteBufAllocatorMetricProvider {
+
+	private static final Logger logger = LoggerFactory.getLogger(ByteBufAllocator.class);
+
+	private volatile String appName;
+
+	private volatile PooledByteBufAllocator allocator;
+
+	@Activate
+	void activate(NettyApi.ByteBufAllocator config) {
+		appName = config.appName();
+		allocator = new PooledByteBufAllocator(config.preferDirect(),
+				orDefault(config.heapArenas(), PooledByteBufAllocator.defaultNumHeapArena()),
+				orDefault(config.directArenas(), PooledByteBufAllocator.defaultNumDirectArena()),
+				orDefault(config.pageSize(), PooledByteBufAllocator.defaultPageSize()),
+				orDefault(config.maxOrder(), PooledByteBufAllocator.defaultMaxOrder()),
+				orDefault(config.tinyCacheSize(), PooledByteBufAllocator.defaultTinyCacheSize()),
+				orDefault(config.smallCacheSize(), PooledByteBufAllocator.defaultSmallCacheSize()),
+				orDefault(config.normalCacheSize(), PooledByteBufAllocator.defaultNormalCacheSize()),
+				config.useCacheForAllThreads());
+		Metrics.allocators.put(appName, allocator.metric());
+		logger.debug("Activated allocator for appName {}: {} heap and {} direct arenas, chunk size {}", appName,
+				allocator.numHeapArenas(), allocator.numDirectArenas(), allocator.chunkSize());
+	}
+
+	@Deactivate
+	void deactivate() {
+		Metrics.allocators.remove(appName, allocator.metric());
+	}
+
+	private static int orDefault(int value, int defaultValue) {
+		return value < 0 ? defaultValue : value;
+	}
+
+	@Override
+	public PooledByteBufAllocatorMetric metric() {
+		return allocator.metric();
+	}
+
+	@Override
+	public ByteBuf buffer() {
+		return allocator.buffer();
+	}
+
+	@Override
+	public ByteBuf buffer(int initialCapacity) {
+		return allocator.buffer(initialCapacity);
+	}
+
+	@Override
+	public ByteBuf buffer(int initialCapacity, int maxCapacity) {
+		return allocator.buffer(initialCapacity, maxCapacity);
+	}
+
+	@Override
+	public ByteBuf ioBuffer() {
+		return allocator.ioBuffer();
+	}
+
+	@Override
+	public ByteBuf ioBuffer(int initialCapacity) {
+		return allocator.ioBuffer(initialCapacity);
+	}
+
+	@Override
+	public ByteBuf ioBuffer(int initialCapacity, int maxCapacity) {
+		return allocator.ioBuffer(initialCapacity, maxCapacity);
+	}
+
+	@Override
+	public ByteBuf heapBuffer() {
+		return allocator.heapBuffer();
+	}
+
+	@Override
+	public ByteBuf heapBuffer(int initialCapacity) {
+		return allocator.heapBuffer(initialCapacity);
+	}
+
+	@Override
+	public ByteBuf heapBuffer(int initialCapacity, int maxCapacity) {
+		return allocator.heapBuffer(initialCapacity, maxCapacity);
+	}
+
+	@Override
+	public ByteBuf directBuffer() {
+		return allocator.directBuffer();
+	}
+
+	@Override
+	public ByteBuf directBuffer(int initialCapacity) {
+		return allocator.directBuffer(initialCapacity);
+	}
+
+	@Override
+	public ByteBuf directBuffer(int initialCapacity, int maxCapacity) {
+		return allocator.directBuffer(initialCapacity, maxCapacity);
+	}
+
+	@Override
+	public CompositeByteBuf compositeBuffer() {
+		return allocator.compositeBuffer();
+	}
+
+	@Override
+	public CompositeByteBuf compositeBuffer(int maxNumComponents) {
+		return allocator.compositeBuffer(maxNumComponents);
+	}
+
+	@Override
+	public CompositeByteBuf compositeHeapBuffer() {
+		return allocator.compositeHeapBuffer();
+	}
+
+	@Override
+	public CompositeByteBuf compositeHeapBuffer(int maxNumComponents) {
+		return allocator.compositeHeapBuffer(maxNumComponents);
+	}
+
+	@Override
+	public CompositeByteBuf compositeDirectBuffer() {
+		return allocator.compositeDirectBuffer();
+	}
+
+	@Override
+	public CompositeByteBuf compositeDirectBuffer(int maxNumComponents) {
+		return allocator.compositeDirectBuffer(maxNumComponents);
+	}
+
+	@Override
+	public boolean isDirectBufferPooled() {
+		return allocator.isDirectBufferPooled();
+	}
+
+	@Override
+	public int calculateNewCapacity(int minNewCapacity, int maxCapacity) {
+		return allocator.calculateNewCapacity(minNewCapacity, maxCapacity);
+	}
+}
@@ -0,0 +1,50 @@
+package io.blesmol.netty.provider;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.FileRegion;
+
+/*
+ * Counts the bytes read and written by an app's channels. Added first in their
+ * pipelines, so it sees bytes before decoding and after encoding.
+ */
+@ChannelHandler.Sharable
+class ByteMetricsHandler extends ChannelDuplexHandler {
+
+	static final String HANDLER_NAME = "blesmolByteMetrics";
+
+	private final Metrics.App metrics;
+
+	ByteMetricsHandler(Metrics.App metrics) {
+		this.metrics = metrics;
+	}
+
+	static long bytes(Object msg) {
+		if (msg instanceof ByteBuf) {
+			return ((ByteBuf) msg).readableBytes();
+		}
+		if (msg instanceof ByteBufHolder) {
+			return ((ByteBufHolder) msg).content().readableBytes();
+		}
+		if (msg instanceof FileRegion) {
+			return ((FileRegion) msg).count();
+		}
+		return 0;
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		metrics.read(bytes(msg));
+		ctx.fireChannelRead(msg);
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+		metrics.written(bytes(msg));
+		ctx.write(msg, promise);
+	}
+}
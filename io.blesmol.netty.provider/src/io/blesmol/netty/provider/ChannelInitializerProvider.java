@@ -1,6 +1,10 @@
 package io.blesmol.netty.provider;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -9,10 +13,14 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.component.ComponentServiceObjects;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
@@ -21,22 +29,38 @@ import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
 import org.osgi.service.component.annotations.ReferencePolicyOption;
+import org.osgi.service.component.annotations.ReferenceScope;
+import org.slf4j.Logger;
 
 import io.blesmol.netty.api.Configuration;
 import io.blesmol.netty.api.ConfigurationUtil;
 import io.blesmol.netty.api.DynamicChannelHandler;
+import io.blesmol.netty.api.DynamicChannelHandlerPool;
+import io.blesmol.netty.api.EventExecutorGroupHandler;
 import io.blesmol.netty.api.NettyApi;
 import io.blesmol.netty.api.Property;
 import io.blesmol.netty.api.ReferenceName;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.util.concurrent.EventExecutorGroup;
 
 @Component(service = ChannelInitializer.class, configurationPid = NettyApi.ChannelInitializer.PID, configurationPolicy = ConfigurationPolicy.REQUIRE)
 public class ChannelInitializerProvider extends ChannelInitializer<Channel> {
 
+	private static final Tracer tracer = new Tracer(ChannelInitializer.class);
+	private static final Logger logger = tracer.logger();
+
+	static final String FLUSH_CONSOLIDATION_HANDLER_NAME = "blesmolFlushConsolidation";
+
+	// Handlers added ahead of all others, in pipeline order
+	static final String[] PREFIX_HANDLER_NAMES = { ByteMetricsHandler.HANDLER_NAME, FLUSH_CONSOLIDATION_HANDLER_NAME,
+			BackpressureHandler.HANDLER_NAME };
+
 	// Set in activate
 	private String pid;
 	private String appName;
@@ -51,6 +75,45 @@ public class ChannelInitializerProvider extends ChannelInitializer<Channel> {
 	private final List<String> configurationPids = new CopyOnWriteArrayList<>();
 	private final Map<String, Channel> channels = new ConcurrentHashMap<>();
 	private volatile Optional<Map<String, Object>> extraProperties;
+	// Extra properties plus the maximum of pending events, for dynamic channel
+	// handler configurations only
+	private volatile Optional<Map<String, Object>> dynamicHandlerProperties;
+
+	// Template pipeline: ordered keys, their handler services, and the
+	// configurations created for them
+	private volatile List<HandlerNameFactoryPid> templateKeys;
+	private final Map<HandlerNameFactoryPid, TemplateHandler> templateHandlers = new ConcurrentHashMap<>();
+	private final List<String> templateConfigurationPids = new CopyOnWriteArrayList<>();
+
+	// Pooled dynamic handlers, and their statistics service, when configured
+	private volatile DynamicChannelHandlerPoolProvider pool;
+	private volatile ServiceRegistration<DynamicChannelHandlerPool> poolRegistration;
+
+	// Set in activate; the byte handler only when configured
+	private volatile Metrics.App metrics;
+	private volatile ByteMetricsHandler byteMetricsHandler;
+
+	/*
+	 * A handler service of a template pipeline. Each channel gets its own instance
+	 * from a prototype scoped service; otherwise the handler must be sharable.
+	 */
+	static class TemplateHandler {
+		final ComponentServiceObjects<ChannelHandler> serviceObjects;
+		final boolean reusable;
+
+		TemplateHandler(ComponentServiceObjects<ChannelHandler> serviceObjects) {
+			this.serviceObjects = serviceObjects;
+			final boolean prototype = Constants.SCOPE_PROTOTYPE
+					.equals(serviceObjects.getServiceReference().getProperty(Constants.SERVICE_SCOPE));
+			boolean sharable = false;
+			if (!prototype) {
+				final ChannelHandler handler = serviceObjects.getService();
+				sharable = handler != null && handler.getClass().isAnnotationPresent(ChannelHandler.Sharable.class);
+				serviceObjects.ungetService(handler);
+			}
+			this.reusable = prototype || sharable;
+		}
+	}
 
 	@Reference
 	ExecutorService executorService;
@@ -63,35 +126,26 @@ public class ChannelInitializerProvider extends ChannelInitializer<Channel> {
 
 		final String channelId = (String) properties.get(Property.DynamicChannelHandler.CHANNEL_ID);
 		if (channelId == null) {
-			// TODO: log
-			System.err.println(String.format("Ignoring dynamic handler '%s' with null channel ID, with properties\n%s",
-					dynamicHandler, properties));
+			logger.warn("Ignoring dynamic handler '{}' with null channel ID, with properties {}", dynamicHandler,
+					properties);
 			return;
 		}
 
 		final Channel ch = channels.remove(channelId);
 		if (ch == null) {
-			// TODO: log debug
-			System.err.println(String.format("Ignoring dynamic handler '%s' with null channel, with properties\n%s",
-					dynamicHandler, properties));
+			logger.debug("Ignoring dynamic handler '{}' with null channel, with properties {}", dynamicHandler,
+					properties);
 			return;
 		}
 
-		// Run the dynamic handler on a separate event executor group so as to catch
-		// all channel activity whilst the handler is being added (but not fully added).
-		// Refer to the implementation details in
-		// io.netty.channel.AbstractChannelHandlerContext.invokeHandler()
-		ch.pipeline().addFirst(eventExecutorGroup, DynamicChannelHandler.HANDLER_NAME, dynamicHandler);
+		addDynamicHandler(ch, dynamicHandler);
 
-		// TODO: log trace
-		System.out.println(String.format("Added '%s', channel: '%s'", dynamicHandler, channelId));
+		tracer.trace(ch, "Added '{}', channel: '{}'", dynamicHandler, channelId);
 
 		String configurationPid = configurations.remove(channelId);
 		if (configurationPid == null) {
-			// TODO: log debug
-			System.err
-					.println(String.format("No configuration with channel ID '%s' for handler '%s' and properties\n%s",
-							channelId, dynamicHandler, properties));
+			logger.debug("No configuration with channel ID '{}' for handler '{}' and properties {}", channelId,
+					dynamicHandler, properties);
 			return;
 		}
 
@@ -101,18 +155,14 @@ public class ChannelInitializerProvider extends ChannelInitializer<Channel> {
 			public void operationComplete(ChannelFuture future) throws Exception {
 				// Delete config
 				try {
-					// TODO log trace
-					System.out.println(
-							String.format("Deleting the dynamic handler configuration for channel ID '%s'", channelId));
+					tracer.trace(ch, "Deleting the dynamic handler configuration for channel ID '{}'", channelId);
 					configUtil.deleteConfigurationPids(Stream.of(configurationPid).collect(Collectors.toList()));
 				} catch (Exception e) {
 					if (deactivated.get()) {
 						// In the process of deactivating, ignore error
 					} else {
-						// TODO: log info
-						System.err.println(String.format(
-								"Error in deleting dynamic handler configuration with channel ID '%s'", channelId));
-						e.printStackTrace();
+						logger.info("Error in deleting dynamic handler configuration with channel ID '{}'", channelId,
+								e);
 					}
 				}
 
@@ -123,7 +173,25 @@ public class ChannelInitializerProvider extends ChannelInitializer<Channel> {
 
 	// Do nothing
 	void unsetDynamicChannelHandler(DynamicChannelHandler dynamicHandler, Map<String, Object> properties) {
-		System.out.println("Unsetting dynamic handler " + dynamicHandler);
+		logger.trace("Unsetting dynamic handler {}", dynamicHandler);
+	}
+
+	@Reference(service = ChannelHandler.class, scope = ReferenceScope.PROTOTYPE, policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY, cardinality = ReferenceCardinality.MULTIPLE, name = ReferenceName.ChannelInitializer.TEMPLATE_HANDLERS)
+	void setTemplateHandler(ComponentServiceObjects<ChannelHandler> serviceObjects, Map<String, Object> properties) {
+		final HandlerNameFactoryPid key = HandlerNameFactoryPid.of(
+				(String) properties.get(NettyApi.ChannelHandler.HANDLER_NAME),
+				(String) properties.get(ConfigurationAdmin.SERVICE_FACTORYPID));
+		final TemplateHandler templateHandler = new TemplateHandler(serviceObjects);
+		if (!templateHandler.reusable) {
+			logger.warn(
+					"Template handler {} is neither prototype scoped nor sharable, channels will use dynamic handlers",
+					key);
+		}
+		templateHandlers.put(key, templateHandler);
+	}
+
+	void unsetTemplateHandler(ComponentServiceObjects<ChannelHandler> serviceObjects, Map<String, Object> properties) {
+		templateHandlers.values().removeIf(it -> it.serviceObjects == serviceObjects);
 	}
 
 	@Reference
@@ -133,7 +201,7 @@ public class ChannelInitializerProvider extends ChannelInitializer<Channel> {
 	ConfigurationUtil configUtil;
 
 	@Activate
-	void activate(NettyApi.ChannelInitializer config, Map<String, Object> props) {
+	void activate(BundleContext context, NettyApi.ChannelInitializer config, Map<String, Object> props) {
 		this.config = config;
 		this.appName = config.appName();
 		this.inetHost = config.inetHost();
@@ -141,6 +209,51 @@ public class ChannelInitializerProvider extends ChannelInitializer<Channel> {
 		this.pid = (String)props.get(Constants.SERVICE_PID);
 
 		extraProperties = configUtil.toOptionalExtraProperties(props);
+		final Map<String, Object> dynamicHandlerProperties = new HashMap<>(
+				extraProperties.orElse(Collections.emptyMap()));
+		dynamicHandlerProperties.put(NettyApi.ChannelInitializer.MAX_PENDING_EVENTS, config.maxPendingEvents());
+		this.dynamicHandlerProperties = Optional.of(dynamicHandlerProperties);
+
+		metrics = Metrics.app(appName);
+		if (config.byteMetrics()) {
+			byteMetricsHandler = new ByteMetricsHandler(metrics);
+		}
+
+		if (config.pooledDynamicHandlers()) {
+			pool = new DynamicChannelHandlerPoolProvider(config.dynamicHandlerPoolSize(),
+					(p) -> new PooledDynamicChannelHandler(p, context, executorService, configAdmin, configUtil));
+			// Registered with the initializer's properties, so that it can be found by
+			// app name
+			final Hashtable<String, Object> poolProperties = new Hashtable<>();
+			props.forEach((k, v) -> {
+				if (!k.startsWith(".") && !k.startsWith("component.")) {
+					poolProperties.put(k, v);
+				}
+			});
+			poolRegistration = context.registerService(DynamicChannelHandlerPool.class, pool, poolProperties);
+		}
+
+		if (config.templatePipeline()) {
+			final String[] handlerNames = config.handlerNames();
+			final String[] factoryPids = config.factoryPids();
+			templateKeys = IntStream.range(0, handlerNames.length)
+					.mapToObj(i -> HandlerNameFactoryPid.of(handlerNames[i], factoryPids[i]))
+					.collect(Collectors.toList());
+
+			// Configure the template's handlers once, off of the activating thread
+			final Optional<Map<String, Object>> extraProperties = this.extraProperties;
+			executorService.execute(() -> {
+				for (HandlerNameFactoryPid key : templateKeys) {
+					try {
+						templateConfigurationPids.add(configUtil.createChannelHandlerConfig(key.factoryPid, appName,
+								inetHost, inetPort, key.handlerName, NettyApi.ChannelHandler.TEMPLATE_CHANNEL_ID,
+								extraProperties));
+					} catch (Exception e) {
+						logger.error("Error creating template handler configuration {}", key, e);
+					}
+				}
+			});
+		}
 	}
 
 	@Deactivate
@@ -148,20 +261,76 @@ public class ChannelInitializerProvider extends ChannelInitializer<Channel> {
 		if (deactivated.getAndSet(true) == true) {
 			return;
 		}
-		// TODO log debug
-		System.out.println(
-				String.format("Deactivating channel initializer. Current configurations:\n%s\nCurrent channels:\n%s",
-						configurations, channels));
+		logger.debug("Deactivating channel initializer {}. Current configurations: {} Current channels: {}", this,
+				configurations, channels);
+
+		final ServiceRegistration<DynamicChannelHandlerPool> poolRegistration = this.poolRegistration;
+		if (poolRegistration != null) {
+			try {
+				poolRegistration.unregister();
+			} catch (IllegalStateException e) {
+				// Already unregistered with the bundle
+			}
+		}
+		final DynamicChannelHandlerPoolProvider pool = this.pool;
+		if (pool != null) {
+			pool.close();
+		}
+
+		if (!templateConfigurationPids.isEmpty()) {
+			try {
+				configUtil.deleteConfigurationPids(templateConfigurationPids);
+			} catch (Exception e) {
+				logger.warn("Error deleting template handler configurations of {}", this, e);
+			}
+		}
 	}
 
 	@Override
 	protected void initChannel(Channel ch) throws Exception {
 
-		// Create and cache configuration
+		final Metrics.App metrics = this.metrics;
+		metrics.channelInitialized(ch);
+		Channels.add(ch);
+
+		// Handlers ahead of the dynamic and user handlers: byte metrics, then flush
+		// consolidation, so that the flushes of all other handlers are consolidated,
+		// then backpressure
+		if (config.backpressure()) {
+			ch.pipeline().addFirst(BackpressureHandler.HANDLER_NAME, BackpressureHandler.INSTANCE);
+		}
+		if (config.flushConsolidation()) {
+			ch.pipeline().addFirst(FLUSH_CONSOLIDATION_HANDLER_NAME, new FlushConsolidationHandler(
+					config.explicitFlushAfterFlushes(), config.consolidateWhenNoReadInProgress()));
+		}
+		final ByteMetricsHandler byteMetricsHandler = this.byteMetricsHandler;
+		if (byteMetricsHandler != null) {
+			ch.pipeline().addFirst(ByteMetricsHandler.HANDLER_NAME, byteMetricsHandler);
+		}
+
+		// Fast path: build the pipeline from the template, no per-channel configuration
+		if (maybeInitTemplateChannel(ch)) {
+			metrics.assembled(ch, System.nanoTime());
+			return;
+		}
+
 		final String channelId = ch.id().asLongText();
+
+		// Pooled path: no configuration nor component activation for the dynamic handler
+		final DynamicChannelHandlerPoolProvider pool = this.pool;
+		if (pool != null) {
+			final PooledDynamicChannelHandler dynamicHandler = pool.acquire();
+			dynamicHandler.maxPendingEvents(config.maxPendingEvents());
+			dynamicHandler.open(pid, channelId, appName, inetHost, inetPort, config.handlerNames(),
+					config.factoryPids(), extraProperties);
+			addDynamicHandler(ch, dynamicHandler);
+			return;
+		}
+
+		// Create and cache configuration
 		final Channel priorChannel = channels.put(channelId, ch);
 		if (priorChannel != null) {
-			System.err.println(String.format("Prior channel %s existed in initializer %s", priorChannel, this));
+			logger.warn("Prior channel {} existed in initializer {}", priorChannel, this);
 		}
 
 		executorService.execute(() -> {
@@ -169,19 +338,104 @@ public class ChannelInitializerProvider extends ChannelInitializer<Channel> {
 			try {
 				configurationPid = configUtil.createDynamicChannelHandlerConfig(channelId, config.appName(),
 						config.inetHost(), config.inetPort(), Arrays.asList(config.factoryPids()),
-						Arrays.asList(config.handlerNames()), extraProperties);
+						Arrays.asList(config.handlerNames()), dynamicHandlerProperties);
 				if (configurationPids.contains(configurationPid)) {
-					System.err.println(String.format("%s received a previously created configuration pid: %s", ChannelInitializerProvider.this, configurationPid));
+					logger.warn("{} received a previously created configuration pid: {}",
+							ChannelInitializerProvider.this, configurationPid);
 				}
 				configurationPids.add(configurationPid);
 				configurations.put(channelId, configurationPid);
 			} catch (Exception e) {
-				e.printStackTrace();
+				logger.error("Error creating dynamic handler configuration for channel {}", channelId, e);
 			}
 		});
 
-		System.out.println(String.format("%s initializing channel %s:[%s] with event loop %s", this, ch, channelId, ch.eventLoop()));
+		tracer.trace(ch, "{} initializing channel {} with event loop {}", this, ch, ch.eventLoop());
+
+	}
+
+	private void addDynamicHandler(Channel ch, ChannelHandler dynamicHandler) {
+		if (config.eventLoopDynamicHandlers()) {
+			// Adding on the channel's event loop completes the add right away, so no
+			// events skip the handler and every later event stays on the loop
+			if (ch.eventLoop().inEventLoop()) {
+				addAfterPrefix(ch.pipeline(), null, DynamicChannelHandler.HANDLER_NAME, dynamicHandler);
+			} else {
+				ch.eventLoop().execute(
+						() -> addAfterPrefix(ch.pipeline(), null, DynamicChannelHandler.HANDLER_NAME, dynamicHandler));
+			}
+			return;
+		}
+		// Run the dynamic handler on a separate event executor group so as to catch
+		// all channel activity whilst the handler is being added (but not fully added).
+		// Refer to the implementation details in
+		// io.netty.channel.AbstractChannelHandlerContext.invokeHandler()
+		addAfterPrefix(ch.pipeline(), eventExecutorGroup, DynamicChannelHandler.HANDLER_NAME, dynamicHandler);
+	}
+
+	/*
+	 * Add first, or after the handlers added ahead of all others when initialized
+	 */
+	static void addAfterPrefix(ChannelPipeline pipeline, EventExecutorGroup group, String name,
+			ChannelHandler handler) {
+		for (int i = PREFIX_HANDLER_NAMES.length - 1; i >= 0; i--) {
+			if (pipeline.context(PREFIX_HANDLER_NAMES[i]) != null) {
+				pipeline.addAfter(group, PREFIX_HANDLER_NAMES[i], name, handler);
+				return;
+			}
+		}
+		pipeline.addFirst(group, name, handler);
+	}
+
+	/*
+	 * Add new handler instances from the template pipeline, if all of its handlers
+	 * are available. Called on the channel's event loop.
+	 */
+	private boolean maybeInitTemplateChannel(Channel ch) {
+
+		final List<HandlerNameFactoryPid> keys = templateKeys;
+		if (keys == null) {
+			return false;
+		}
+
+		final List<TemplateHandler> template = new ArrayList<>(keys.size());
+		for (HandlerNameFactoryPid key : keys) {
+			final TemplateHandler templateHandler = templateHandlers.get(key);
+			if (templateHandler == null || !templateHandler.reusable) {
+				logger.debug("Template pipeline {} not ready, missing handler {}", this, key);
+				return false;
+			}
+			template.add(templateHandler);
+		}
+
+		final ChannelPipeline pipeline = ch.pipeline();
+		final List<ChannelHandler> handlers = new ArrayList<>(keys.size());
+		try {
+			for (int i = 0; i < keys.size(); i++) {
+				final ChannelHandler handler = template.get(i).serviceObjects.getService();
+				handlers.add(handler);
+				// a null event executor group is the same as using the channel's event loop
+				final EventExecutorGroup group = handler instanceof EventExecutorGroupHandler
+						? ((EventExecutorGroupHandler) handler).getEventExecutorGroup()
+						: null;
+				pipeline.addLast(group, keys.get(i).handlerName, handler);
+			}
+		} finally {
+			// Return this channel's handler instances when closed
+			ch.closeFuture().addListener((f) -> {
+				for (int i = 0; i < handlers.size(); i++) {
+					try {
+						template.get(i).serviceObjects.ungetService(handlers.get(i));
+					} catch (Exception e) {
+						// Service already gone
+					}
+				}
+			});
+		}
 
+		// The pipeline is complete, so allow reading
+		BackpressureHandler.startReading(ch);
+		return true;
 	}
 
 	@Override
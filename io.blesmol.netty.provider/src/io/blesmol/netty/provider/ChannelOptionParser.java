@@ -0,0 +1,200 @@
+package io.blesmol.netty.provider;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.blesmol.netty.api.NettyApi;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.AdaptiveRecvByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * Parses and validates channel options configured as {@code NAME=value}
+ * strings. Boolean, integer and long values are parsed as the type the option's
+ * constant declares, in {@link ChannelOption} or a transport's option class, so
+ * that a wrongly typed value fails activation rather than channel creation.
+ * 
+ * @see NettyApi.ChannelOptions
+ */
+final class ChannelOptionParser {
+
+	private ChannelOptionParser() {
+	}
+
+	/**
+	 * @return the options in configured order
+	 * @throws IllegalArgumentException on an unknown option or invalid value
+	 */
+	static Map<ChannelOption<Object>, Object> parse(String[] specs) {
+		if (specs == null || specs.length == 0) {
+			return Collections.emptyMap();
+		}
+		final Map<ChannelOption<Object>, Object> results = new LinkedHashMap<>();
+		for (String spec : specs) {
+			final int idx = spec.indexOf('=');
+			if (idx < 1) {
+				throw new IllegalArgumentException(String.format("Channel option '%s' is not NAME=value", spec));
+			}
+			final String name = spec.substring(0, idx).trim();
+			final String value = spec.substring(idx + 1).trim();
+			final Field constant = constant(name);
+			if (constant == null) {
+				throw new IllegalArgumentException(String.format("Unknown channel option '%s'", name));
+			}
+			final ChannelOption<Object> option = option(constant);
+			try {
+				results.put(option, parseValue(option, valueType(constant), value));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(
+						String.format("Invalid value '%s' for channel option '%s': %s", value, name, e.getMessage()),
+						e);
+			}
+		}
+		return results;
+	}
+
+	static Object parseValue(ChannelOption<?> option, Type type, String value) {
+		if (option == ChannelOption.WRITE_BUFFER_WATER_MARK) {
+			final int[] sizes = parseInts(value, 2);
+			return new WriteBufferWaterMark(sizes[0], sizes[1]);
+		}
+		if (option == ChannelOption.RCVBUF_ALLOCATOR) {
+			return parseRecvByteBufAllocator(value);
+		}
+		if (option == ChannelOption.ALLOCATOR) {
+			return parseAllocator(value);
+		}
+		if (type == Boolean.class) {
+			return parseBoolean(value);
+		}
+		if (type == Integer.class) {
+			return Integer.valueOf(value);
+		}
+		if (type == Long.class) {
+			return Long.valueOf(value);
+		}
+		throw new IllegalArgumentException(String.format("values of type %s are not supported", type.getTypeName()));
+	}
+
+	/*
+	 * The option constant of the name, declared by ChannelOption or else by an
+	 * available transport's option class, or null if none. Transport options are
+	 * pooled under their class' name, so they are looked up by constant rather
+	 * than by ChannelOption.valueOf
+	 */
+	static Field constant(String name) {
+		Field constant = constant(ChannelOption.class, name);
+		for (Transport transport : Transport.values()) {
+			if (constant == null) {
+				constant = constant(transport.optionClass(), name);
+			}
+		}
+		return constant;
+	}
+
+	private static Field constant(Class<?> optionClass, String name) {
+		if (optionClass == null) {
+			return null;
+		}
+		try {
+			final Field field = optionClass.getField(name);
+			if (Modifier.isStatic(field.getModifiers()) && field.getType() == ChannelOption.class
+					&& field.getGenericType() instanceof ParameterizedType) {
+				return field;
+			}
+		} catch (NoSuchFieldException e) {
+			// Not declared by this class
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ChannelOption<Object> option(Field constant) {
+		try {
+			return (ChannelOption<Object>) constant.get(null);
+		} catch (IllegalAccessException | LinkageError e) {
+			throw new IllegalArgumentException(String.format("Channel option '%s' is not available", constant.getName()),
+					e);
+		}
+	}
+
+	private static Type valueType(Field constant) {
+		return ((ParameterizedType) constant.getGenericType()).getActualTypeArguments()[0];
+	}
+
+	static RecvByteBufAllocator parseRecvByteBufAllocator(String value) {
+		final String[] kindArgs = value.split(":", 2);
+		switch (kindArgs[0]) {
+		case "adaptive":
+			if (kindArgs.length == 1) {
+				return new AdaptiveRecvByteBufAllocator();
+			}
+			final int[] sizes = parseInts(kindArgs[1], 3);
+			return new AdaptiveRecvByteBufAllocator(sizes[0], sizes[1], sizes[2]);
+		case "fixed":
+			if (kindArgs.length == 2) {
+				return new FixedRecvByteBufAllocator(parseInts(kindArgs[1], 1)[0]);
+			}
+			break;
+		default:
+			break;
+		}
+		throw new IllegalArgumentException("expected adaptive, adaptive:min,initial,max or fixed:size");
+	}
+
+	static ByteBufAllocator parseAllocator(String value) {
+		final String[] kindArgs = value.split(":", 2);
+		final boolean direct;
+		if (kindArgs.length == 1) {
+			direct = PlatformDependent.directBufferPreferred();
+		} else if ("direct".equals(kindArgs[1])) {
+			direct = true;
+		} else if ("heap".equals(kindArgs[1])) {
+			direct = false;
+		} else {
+			throw new IllegalArgumentException("expected a direct or heap suffix");
+		}
+		switch (kindArgs[0]) {
+		case "pooled":
+			return direct == PooledByteBufAllocator.DEFAULT.isDirectBufferPooled() ? PooledByteBufAllocator.DEFAULT
+					: new PooledByteBufAllocator(direct);
+		case "unpooled":
+			return new UnpooledByteBufAllocator(direct);
+		default:
+			throw new IllegalArgumentException("expected pooled or unpooled");
+		}
+	}
+
+	private static boolean parseBoolean(String value) {
+		if ("true".equalsIgnoreCase(value)) {
+			return true;
+		}
+		if ("false".equalsIgnoreCase(value)) {
+			return false;
+		}
+		throw new IllegalArgumentException("expected true or false");
+	}
+
+	private static int[] parseInts(String value, int count) {
+		final String[] parts = value.split(",");
+		if (parts.length != count) {
+			throw new IllegalArgumentException(String.format("expected %d comma separated integers", count));
+		}
+		final int[] results = new int[count];
+		for (int i = 0; i < count; i++) {
+			results[i] = Integer.parseInt(parts[i].trim());
+		}
+		return results;
+	}
+}
@@ -0,0 +1,33 @@
+package io.blesmol.netty.provider;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.netty.channel.Channel;
+
+/*
+ * Open channels initialized by the provider's channel initializers, by channel
+ * ID, so that a client can connect on the event loop of the inbound channel it
+ * relays for. Held statically like Metrics, so lookups don't depend on which
+ * initializer created the channel.
+ */
+final class Channels {
+
+	private static final Map<String, Channel> channels = new ConcurrentHashMap<>();
+
+	private Channels() {
+	}
+
+	static void add(Channel ch) {
+		final String channelId = ch.id().asLongText();
+		channels.put(channelId, ch);
+		ch.closeFuture().addListener(f -> channels.remove(channelId, ch));
+	}
+
+	/*
+	 * Returns the open channel, or null
+	 */
+	static Channel get(String channelId) {
+		return channels.get(channelId);
+	}
+}
@@ -0,0 +1,288 @@
+package io.blesmol.netty.provider;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.osgi.framework.Constants;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.blesmol.netty.api.ConfigurationUtil;
+import io.blesmol.netty.api.NettyApi;
+
+/*
+ * Factory configurations by PID, and inverted indexes of their factory PID and
+ * the properties identifying netty providers, maintained from configuration
+ * events. A lookup filters the smallest matching index entry instead of having
+ * Configuration Admin evaluate a filter against every configuration.
+ *
+ * Factory PIDs are tracked from their first lookup, which lists their
+ * configurations once. Configurations of tracked factory PIDs created by this
+ * provider are indexed when created; others cost a lookup by PID on their first
+ * event. Events are asynchronous, so changes made through Configuration Admin
+ * directly are seen shortly after they are made.
+ */
+class ConfigurationIndex {
+
+	private static final Logger logger = LoggerFactory.getLogger(ConfigurationUtil.class);
+
+	// Properties identifying netty providers, besides the factory PID
+	static final String[] INDEXED_PROPERTIES = { NettyApi.APP_NAME, NettyApi.INET_HOST, NettyApi.INET_PORT,
+			NettyApi.CHANNEL_ID, NettyApi.EventLoopGroup.GROUP_NAME };
+
+	private static final class Entry {
+		final Configuration configuration;
+		final Dictionary<String, Object> properties;
+		final List<String> terms;
+
+		Entry(Configuration configuration, Dictionary<String, Object> properties, List<String> terms) {
+			this.configuration = configuration;
+			this.properties = properties;
+			this.terms = terms;
+		}
+	}
+
+	private final ConfigurationAdmin admin;
+
+	private final Function<String, String> escape;
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	// Term, such as appName=app, to the PIDs of configurations having it
+	private final Map<String, Set<String>> postings = new ConcurrentHashMap<>();
+
+	// Factory PIDs whose events are indexed, and those whose configurations have
+	// also been listed
+	private final Set<String> trackedFactoryPids = ConcurrentHashMap.newKeySet();
+	private final Set<String> indexedFactoryPids = ConcurrentHashMap.newKeySet();
+
+	ConfigurationIndex(ConfigurationAdmin admin, Function<String, String> escape) {
+		this.admin = admin;
+		this.escape = escape;
+	}
+
+	/*
+	 * Returns the configurations of the factory PID matching the properties, like
+	 * ConfigurationUtil.createFilterFromMap: targets and null values are ignored,
+	 * and each element of a collection or array must match
+	 */
+	List<Configuration> get(String factoryPid, Map<String, Object> properties) throws Exception {
+		track(factoryPid);
+
+		Set<String> candidates = postings.getOrDefault(term(ConfigurationAdmin.SERVICE_FACTORYPID, factoryPid),
+				Collections.emptySet());
+		for (String name : INDEXED_PROPERTIES) {
+			final Object value = properties.get(name);
+			if (value == null || value instanceof Collection || value.getClass().isArray()) {
+				continue;
+			}
+			final Set<String> pids = postings.getOrDefault(term(name, value), Collections.emptySet());
+			if (pids.size() < candidates.size()) {
+				candidates = pids;
+			}
+		}
+
+		final List<Configuration> results = new ArrayList<>();
+		for (String pid : candidates) {
+			final Entry entry = entries.get(pid);
+			if (entry != null && entry.properties != null
+					&& factoryPid.equals(entry.properties.get(ConfigurationAdmin.SERVICE_FACTORYPID))
+					&& matches(entry.properties, properties)) {
+				results.add(entry.configuration);
+			}
+		}
+		return results;
+	}
+
+	/*
+	 * Returns the indexed configuration, or null
+	 */
+	Configuration get(String pid) {
+		final Entry entry = entries.get(pid);
+		return entry == null ? null : entry.configuration;
+	}
+
+	/*
+	 * Indexes the configuration's current properties
+	 */
+	synchronized void put(Configuration configuration) {
+		final String pid = configuration.getPid();
+		final Dictionary<String, Object> properties;
+		try {
+			properties = configuration.getProperties();
+		} catch (IllegalStateException e) {
+			// Deleted
+			remove(pid);
+			return;
+		}
+
+		final List<String> terms = new ArrayList<>();
+		if (properties != null) {
+			final Object factoryPid = properties.get(ConfigurationAdmin.SERVICE_FACTORYPID);
+			if (factoryPid != null) {
+				terms.add(term(ConfigurationAdmin.SERVICE_FACTORYPID, factoryPid));
+			}
+			for (String name : INDEXED_PROPERTIES) {
+				final Object value = properties.get(name);
+				if (value != null) {
+					terms.add(term(name, value));
+				}
+			}
+		}
+
+		final Entry previous = entries.put(pid, new Entry(configuration, properties, terms));
+		if (previous != null) {
+			unpost(pid, previous.terms);
+		}
+		terms.forEach(t -> postings.computeIfAbsent(t, k -> ConcurrentHashMap.newKeySet()).add(pid));
+	}
+
+	synchronized void remove(String pid) {
+		final Entry previous = entries.remove(pid);
+		if (previous != null) {
+			unpost(pid, previous.terms);
+		}
+	}
+
+	void configurationEvent(ConfigurationEvent event) {
+		final String pid = event.getPid();
+		switch (event.getType()) {
+		case ConfigurationEvent.CM_DELETED:
+			remove(pid);
+			break;
+		case ConfigurationEvent.CM_UPDATED:
+			final Configuration configuration = get(pid);
+			if (configuration != null) {
+				put(configuration);
+				break;
+			}
+			// Created elsewhere, of a factory PID being looked up
+			final String factoryPid = event.getFactoryPid();
+			if (factoryPid == null || !trackedFactoryPids.contains(factoryPid)) {
+				break;
+			}
+			try {
+				final Configuration[] configurations = admin
+						.listConfigurations(String.format("(%s=%s)", Constants.SERVICE_PID, escape.apply(pid)));
+				if (configurations != null) {
+					for (Configuration c : configurations) {
+						put(c);
+					}
+				}
+			} catch (Exception e) {
+				logger.warn("Error indexing configuration {}", pid, e);
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void track(String factoryPid) throws Exception {
+		if (indexedFactoryPids.contains(factoryPid)) {
+			return;
+		}
+		synchronized (trackedFactoryPids) {
+			if (indexedFactoryPids.contains(factoryPid)) {
+				return;
+			}
+			// Track before listing, so that later events are not missed
+			trackedFactoryPids.add(factoryPid);
+			try {
+				final Configuration[] configurations = admin.listConfigurations(
+						String.format("(%s=%s)", ConfigurationAdmin.SERVICE_FACTORYPID, escape.apply(factoryPid)));
+				if (configurations != null) {
+					for (Configuration configuration : configurations) {
+						put(configuration);
+					}
+				}
+				indexedFactoryPids.add(factoryPid);
+				logger.debug("Indexed {} configurations of factory pid {}",
+						configurations == null ? 0 : configurations.length, factoryPid);
+			} catch (Exception e) {
+				trackedFactoryPids.remove(factoryPid);
+				throw e;
+			}
+		}
+	}
+
+	private void unpost(String pid, List<String> terms) {
+		for (String t : terms) {
+			final Set<String> pids = postings.get(t);
+			if (pids != null) {
+				pids.remove(pid);
+				if (pids.isEmpty()) {
+					postings.remove(t, pids);
+				}
+			}
+		}
+	}
+
+	static String term(String name, Object value) {
+		return name + '=' + value;
+	}
+
+	static boolean matches(Dictionary<String, Object> properties, Map<String, Object> wanted) {
+		for (Map.Entry<String, Object> es : wanted.entrySet()) {
+			final String key = es.getKey();
+			final Object value = es.getValue();
+			if (value == null || key.endsWith(NettyApi.DOT_TARGET)) {
+				continue;
+			}
+			final Object actual = properties.get(key);
+			if (value instanceof Collection) {
+				for (Object o : (Collection<?>) value) {
+					if (!contains(actual, o)) {
+						return false;
+					}
+				}
+			} else if (value.getClass().isArray()) {
+				for (int i = 0; i < Array.getLength(value); i++) {
+					if (!contains(actual, Array.get(value, i))) {
+						return false;
+					}
+				}
+			} else if (!contains(actual, value)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Filters compare string representations, and match any value of a
+	// multi-valued property
+	private static boolean contains(Object actual, Object value) {
+		if (actual == null) {
+			return false;
+		}
+		if (actual instanceof Collection) {
+			for (Object o : (Collection<?>) actual) {
+				if (contains(o, value)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if (actual.getClass().isArray()) {
+			for (int i = 0; i < Array.getLength(actual); i++) {
+				if (contains(Array.get(actual, i), value)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		return Objects.equals(String.valueOf(actual), String.valueOf(value));
+	}
+}
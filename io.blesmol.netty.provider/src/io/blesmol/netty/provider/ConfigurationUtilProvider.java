@@ -5,27 +5,36 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.osgi.framework.Constants;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
+import org.osgi.service.cm.ConfigurationListener;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.util.promise.Promise;
+import org.osgi.util.promise.Promises;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,21 +43,46 @@ import io.blesmol.netty.api.NettyApi;
 import io.blesmol.netty.api.Property;
 import io.blesmol.netty.api.ReferenceName;
 
-@Component(immediate = true)
-public class ConfigurationUtilProvider implements ConfigurationUtil {
+@Component(immediate = true, service = { ConfigurationUtil.class, ConfigurationListener.class })
+public class ConfigurationUtilProvider implements ConfigurationUtil, ConfigurationListener {
 
 	private static final Logger logger = LoggerFactory.getLogger(ConfigurationUtil.class);
 
 	private final AtomicBoolean deactivated = new AtomicBoolean(false);
 
+	// Maximum number of PIDs per lookup filter, and of configurations being
+	// created, updated or deleted at once by a batch
+	static final int FILTER_BATCH_SIZE = 256;
+	static final int BATCH_CONCURRENCY = 8;
+
+	// Maximum number of cached filters
+	static final int FILTER_CACHE_SIZE = 4096;
+
+	final Map<List<Object>, CachedFilter> filters = new ConcurrentHashMap<>();
+
 	// Is this needed?
-	final List<Configuration> configurations = new CopyOnWriteArrayList<>();
+	final Map<String, Configuration> configurations = new ConcurrentHashMap<>();
 
 	@Reference
 	ConfigurationAdmin admin;
 
+	@Reference
+	ExecutorService executor;
+
+	// Set on activation, before lookups
+	volatile ConfigurationIndex index;
+
 	@Activate
 	void activate() {
+		index = new ConfigurationIndex(admin, this::ldapSearchEscape);
+	}
+
+	@Override
+	public void configurationEvent(ConfigurationEvent event) {
+		final ConfigurationIndex index = this.index;
+		if (index != null) {
+			index.configurationEvent(event);
+		}
 	}
 
 	@Deactivate
@@ -57,9 +91,8 @@ public class ConfigurationUtilProvider implements ConfigurationUtil {
 			return;
 		}
 
-		// TODO trace log
-		logger.debug("Deactivating configuration utility provider");
-		configurations.forEach(c -> {
+		logger.trace("Deactivating configuration utility provider");
+		configurations.values().forEach(c -> {
 			try {
 				c.delete();
 			}
@@ -80,15 +113,24 @@ public class ConfigurationUtilProvider implements ConfigurationUtil {
 		}
 	}
 
+	void addProviderProperties(Dictionary<String, Object> properties,
+			Optional<Map<String, Object>> providerProperties) {
+		// Never override the properties used to identify and target providers
+		providerProperties.ifPresent(pp -> pp.forEach((k, v) -> {
+			if (properties.get(k) == null) {
+				properties.put(k, v);
+			}
+		}));
+	}
+
 	String listFilter(String propertyName, List<String> property) {
 		return property.stream().map(s -> String.format("(%s=%s)", propertyName, s.toString()))
 				.collect(Collectors.joining());
 	}
 
+	// Served from the index, without building a filter
 	List<Configuration> getConfigurations(String factoryPid, Hashtable<String, Object> properties) throws Exception {
-		final Configuration[] configurations = admin.listConfigurations(
-				createFilterFromMap(ConfigurationAdmin.SERVICE_FACTORYPID, factoryPid, properties));
-		return (configurations == null) ? Collections.emptyList() : Arrays.asList(configurations);
+		return index.get(factoryPid, properties);
 	}
 
 	// https://stackoverflow.com/a/46008789
@@ -101,35 +143,35 @@ public class ConfigurationUtilProvider implements ConfigurationUtil {
 			return "";
 		}
 
-		final StringBuilder sb = new StringBuilder(unescaped.length());
-		for (byte c : unescaped.getBytes(StandardCharsets.UTF_8)) {
-			if (c == '\\') {
-				sb.append("\\5c");
-			} else if (c == '*') {
-				sb.append("\\2a");
-			} else if (c == '(') {
-				sb.append("\\28");
-			} else if (c == ')') {
-				sb.append("\\29");
-			} else if (c == 0) {
-				sb.append("\\00");
-			} else if ((c & 0xff) > 127) {
-				sb.append("\\").append(to2CharHexString((c & 0xff)));
-			} // UTF-8's non-7-bit characters, e.g. é, á, etc...
-			else {
+		// Most values need no escaping, and are returned as-is
+		final int length = unescaped.length();
+		int i = 0;
+		while (i < length && !escaped(unescaped.charAt(i))) {
+			i++;
+		}
+		if (i == length) {
+			return unescaped;
+		}
+
+		final StringBuilder sb = new StringBuilder(length + 16).append(unescaped, 0, i);
+		for (byte b : unescaped.substring(i).getBytes(StandardCharsets.UTF_8)) {
+			final int c = b & 0xff;
+			// UTF-8's non-7-bit characters, e.g. é, á, etc...
+			if (escaped((char) c)) {
+				sb.append('\\').append(HEX[c >> 4]).append(HEX[c & 0xf]);
+			} else {
 				sb.append((char) c);
 			}
 		}
 		return sb.toString();
-
 	}
-	private String to2CharHexString(int i)
-	{
-	    String s = Integer.toHexString(i & 0xff);
-	    if (s.length()==1) return "0"+s;
-	    else return s;
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private static boolean escaped(char c) {
+		return c == '\\' || c == '*' || c == '(' || c == ')' || c == 0 || c > 127;
 	}
-	
+
 	String toEscapedFilter(String key, Object value) {
 		if (value == null) return "";
 
@@ -138,19 +180,20 @@ public class ConfigurationUtilProvider implements ConfigurationUtil {
 			return "";
 		}
 		
+		final String escapedKey = ldapSearchEscape(key);
 		StringBuilder sb = new StringBuilder();
 		if (value instanceof Collection) {
 			Collection collection = (Collection)value;
 			for (Object o : collection) {
-				sb.append(String.format("(%s=%s)", ldapSearchEscape(key), toEscapedValue(o)));
+				sb.append('(').append(escapedKey).append('=').append(toEscapedValue(o)).append(')');
 			}
 		} else if (value.getClass().isArray()) {
 			Object[] array = (Object[]) value;
 			for (Object o : array) {
-				sb.append(String.format("(%s=%s)", ldapSearchEscape(key), toEscapedValue(o)));
+				sb.append('(').append(escapedKey).append('=').append(toEscapedValue(o)).append(')');
 			}
 		} else {
-			sb.append(String.format("(%s=%s)", ldapSearchEscape(key), toEscapedValue(value)));
+			sb.append('(').append(escapedKey).append('=').append(toEscapedValue(value)).append(')');
 		}
 		return sb.toString();
 	}
@@ -169,9 +212,75 @@ public class ConfigurationUtilProvider implements ConfigurationUtil {
 	
 	@Override
 	public String createFilterFromMap(String pidKey, String pidValue, Map<String, Object> properties) {
+		return cachedFilter(pidKey, pidValue, properties).text;
+	}
+
+	@Override
+	public Filter createFilter(String pidKey, String pidValue, Map<String, Object> properties)
+			throws InvalidSyntaxException {
+		final CachedFilter cached = cachedFilter(pidKey, pidValue, properties);
+		Filter filter = cached.filter;
+		if (filter == null) {
+			// Parsed once per cached filter, racing threads parse the same text
+			filter = cached.filter = FrameworkUtil.createFilter(cached.text);
+		}
+		return filter;
+	}
+
+	/*
+	 * Filters are immutable, so are shared by all callers for equal arguments
+	 */
+	static final class CachedFilter {
+		final String text;
+		volatile Filter filter;
+
+		CachedFilter(String text) {
+			this.text = text;
+		}
+	}
+
+	CachedFilter cachedFilter(String pidKey, String pidValue, Map<String, Object> properties) {
+		final List<Object> key = filterKey(pidKey, pidValue, properties);
+		CachedFilter cached = filters.get(key);
+		if (cached == null) {
+			// Cleared rather than evicted when full, which only happens when
+			// callers filter on values that differ per channel
+			if (filters.size() >= FILTER_CACHE_SIZE) {
+				filters.clear();
+			}
+			cached = new CachedFilter(buildFilter(pidKey, pidValue, properties));
+			final CachedFilter previous = filters.putIfAbsent(key, cached);
+			cached = previous == null ? cached : previous;
+		}
+		return cached;
+	}
+
+	/*
+	 * Equal for arguments resulting in the same filter: targets and null values
+	 * are ignored, and arrays are compared by their elements
+	 */
+	static List<Object> filterKey(String pidKey, String pidValue, Map<String, Object> properties) {
+		final Map<String, Object> values = new HashMap<>();
+		properties.forEach((k, v) -> {
+			if (v == null || k.endsWith(NettyApi.DOT_TARGET)) {
+				return;
+			}
+			if (v instanceof Object[]) {
+				values.put(k, Arrays.asList((Object[]) v));
+			} else if (v instanceof Collection) {
+				values.put(k, new ArrayList<>((Collection<?>) v));
+			} else {
+				values.put(k, v);
+			}
+		});
+		final boolean pid = pidKey != null && pidValue != null;
+		return Arrays.asList(pid ? pidKey : null, pid ? pidValue : null, values);
+	}
+
+	String buildFilter(String pidKey, String pidValue, Map<String, Object> properties) {
 		final StringBuilder sb = new StringBuilder("(&");
 		if (pidKey != null && pidValue != null) {
-			sb.append(String.format("(%s=%s)", ldapSearchEscape(pidKey), ldapSearchEscape(pidValue)));
+			sb.append('(').append(ldapSearchEscape(pidKey)).append('=').append(ldapSearchEscape(pidValue)).append(')');
 		}
 		properties.entrySet().stream().map(es -> toEscapedFilter(es.getKey(), es.getValue())).filter(f -> (f != null && !f.isEmpty()))
 				.forEach(sb::append);
@@ -198,7 +307,8 @@ public class ConfigurationUtilProvider implements ConfigurationUtil {
 	String createConfiguration(String factoryPid, Dictionary<String, Object> properties) throws Exception {
 		Configuration configuration = admin.createFactoryConfiguration(factoryPid, "?");
 		configuration.update(properties);
-		configurations.add(configuration);
+		configurations.put(configuration.getPid(), configuration);
+		index.put(configuration);
 		return configuration.getPid();
 	}
 
@@ -239,21 +349,27 @@ public class ConfigurationUtilProvider implements ConfigurationUtil {
 
 	@Override
 	public List<String> createNettyServer(String appName, String hostname, Integer port, List<String> factoryPids,
-			List<String> handlerNames, Optional<Map<String, Object>> extraProperties) throws Exception {
+			List<String> handlerNames, Optional<Map<String, Object>> extraProperties,
+			Optional<Map<String, Object>> providerProperties) throws Exception {
 
 		final List<String> results = new ArrayList<>();
-		results.add(createServerBootstrapProvider(appName, hostname, port));
-		results.add(createEventLoopGroup(appName, hostname, port, ReferenceName.NettyServer.BOSS_EVENT_LOOP_GROUP));
-		results.add(createEventLoopGroup(appName, hostname, port, ReferenceName.NettyServer.WORKER_EVENT_LOOP_GROUP));
-		results.addAll(createChannelInitializer(appName, hostname, port, factoryPids, handlerNames, extraProperties));
-		results.add(createNettyServerConfig(appName, hostname, port, factoryPids, handlerNames, extraProperties));
+		results.add(createServerBootstrapProvider(appName, hostname, port, providerProperties));
+		results.add(createEventLoopGroup(appName, hostname, port, ReferenceName.NettyServer.BOSS_EVENT_LOOP_GROUP,
+				providerProperties));
+		results.add(createEventLoopGroup(appName, hostname, port, ReferenceName.NettyServer.WORKER_EVENT_LOOP_GROUP,
+				providerProperties));
+		results.addAll(createChannelInitializer(appName, hostname, port, factoryPids, handlerNames, extraProperties,
+				providerProperties));
+		results.add(createNettyServerConfig(appName, hostname, port, factoryPids, handlerNames, extraProperties,
+				providerProperties));
 		return results;
 
 	}
 
 	@Override
 	public String createNettyServerConfig(String appName, String hostname, Integer port, List<String> factoryPids,
-			List<String> handlerNames, Optional<Map<String, Object>> extraProperties) throws Exception {
+			List<String> handlerNames, Optional<Map<String, Object>> extraProperties,
+			Optional<Map<String, Object>> providerProperties) throws Exception {
 
 		final Hashtable<String, Object> props = new Hashtable<>();
 		props.put(Property.NettyServer.APP_NAME, appName);
@@ -279,6 +395,7 @@ public class ConfigurationUtilProvider implements ConfigurationUtil {
 		String serverBootstrapTarget = String.format("(&(%s=%s)(%s=%s)(%s=%d))", Property.ServerBootstrap.APP_NAME,
 				appName, Property.ServerBootstrap.INET_HOST, hostname, Property.ServerBootstrap.INET_PORT, port);
 		props.put(ReferenceName.NettyServer.SERVER_BOOTSTRAP_TARGET, serverBootstrapTarget);
+		props.put(ReferenceName.NettyServer.BYTE_BUF_ALLOCATOR_TARGET, byteBufAllocatorTarget(appName));
 
 		props.put(Property.NettyServer.INET_HOST, hostname);
 		props.put(Property.NettyServer.INET_PORT, port);
@@ -286,6 +403,7 @@ public class ConfigurationUtilProvider implements ConfigurationUtil {
 		props.put(Property.NettyServer.HANDLER_NAMES, handlerNames.toArray(EMPTY_ARRAY));
 
 		// addExtraProperties(props, extraProperties);
+		addProviderProperties(props, providerProperties);
 
 		return createConfiguration(io.blesmol.netty.api.Configuration.NETTY_SERVER_PID, props);
 
@@ -294,14 +412,19 @@ public class ConfigurationUtilProvider implements ConfigurationUtil {
 	@Override
 	public List<String> createNettyClient(String appName, String hostname, Integer port, List<String> factoryPids,
 			List<String> handlerNames, Optional<Map<String, Object>> extraProperties, Optional<String> serverAppName,
-			Optional<Boolean> shutdownGroup) throws Exception {
+			Optional<Boolean> shutdownGroup, Optional<Map<String, Object>> providerProperties) throws Exception {
 
 		final List<String> results = new ArrayList<>();
-		results.addAll(createBootstrap(appName, hostname, port, factoryPids, handlerNames, extraProperties, serverAppName));
+		results.addAll(createBootstrap(appName, hostname, port, factoryPids, handlerNames, extraProperties,
+				serverAppName, providerProperties));
 //		results.add(createEventLoopGroup(appName, hostname, port, ReferenceName.NettyClient.EVENT_LOOP_GROUP));
 //		results.addAll(createChannelInitializer(appName, hostname, port, factoryPids, handlerNames, extraProperties));
-		results.add(createNettyClientConfig(appName, hostname, port, factoryPids, handlerNames, extraProperties,
-				serverAppName, shutdownGroup));
+		final Hashtable<String, Object> props = nettyClientProperties(appName, hostname, port, factoryPids,
+				handlerNames, extraProperties, serverAppName, shutdownGroup);
+		// The inbound channel, for clients relaying on its event loop
+		providerProperties.map(p -> p.get(NettyApi.NettyClient.CHANNEL_ID))
+				.ifPresent(channelId -> props.put(NettyApi.NettyClient.CHANNEL_ID, channelId));
+		results.add(createConfiguration(NettyApi.NettyClient.PID, props));
 		return results;
 	}
 
@@ -316,40 +439,74 @@ public class ConfigurationUtilProvider implements ConfigurationUtil {
 
 	@Override
 	public List<String> createBootstrap(String appName, String inetHost, int inetPort, List<String> factoryPids,
-			List<String> handlerNames, Optional<Map<String, Object>> extraProperties, Optional<String> serverAppName)
-			throws Exception {
+			List<String> handlerNames, Optional<Map<String, Object>> extraProperties, Optional<String> serverAppName,
+			Optional<Map<String, Object>> providerProperties) throws Exception {
 		final List<String> results = new ArrayList<>();
-		results.add(createBootstrapConfig(appName, inetHost, inetPort, factoryPids, handlerNames, extraProperties, serverAppName));
-		results.add(createEventLoopGroup(appName, inetHost, inetPort, NettyApi.Bootstrap.Reference.EVENT_LOOP_GROUP));
-		results.addAll(createChannelInitializer(appName, inetHost, inetPort, factoryPids, handlerNames, extraProperties));
+		results.add(createBootstrapConfig(appName, inetHost, inetPort, factoryPids, handlerNames, extraProperties,
+				serverAppName, providerProperties));
+		results.add(createEventLoopGroup(appName, inetHost, inetPort, NettyApi.Bootstrap.Reference.EVENT_LOOP_GROUP,
+				providerProperties));
+		results.addAll(createChannelInitializer(appName, inetHost, inetPort, factoryPids, handlerNames, extraProperties,
+				providerProperties));
 
 		return results;
 	}
 	
 	@Override
 	public String createBootstrapConfig(String appName, String inetHost, int inetPort, List<String> factoryPids,
-			List<String> handlerNames, Optional<Map<String, Object>> extraProperties, Optional<String> serverAppName)
-			throws Exception {
+			List<String> handlerNames, Optional<Map<String, Object>> extraProperties, Optional<String> serverAppName,
+			Optional<Map<String, Object>> providerProperties) throws Exception {
 		final Hashtable<String, Object> props = bootstrapProperties(appName, inetHost, inetPort, factoryPids, handlerNames, extraProperties, serverAppName);
+		addProviderProperties(props, providerProperties);
 		return createConfiguration(NettyApi.Bootstrap.PID, props);
 	}
 
 	@Override
-	public String createServerBootstrapProvider(String appName, String hostname, int port) throws Exception {
+	public String createServerBootstrapProvider(String appName, String hostname, int port,
+			Optional<Map<String, Object>> providerProperties) throws Exception {
 		final Hashtable<String, Object> props = new Hashtable<>();
 		props.put(Property.ServerBootstrap.APP_NAME, appName);
 		props.put(Property.ServerBootstrap.INET_HOST, hostname);
 		props.put(Property.ServerBootstrap.INET_PORT, port);
+		addProviderProperties(props, providerProperties);
 		return createConfiguration(io.blesmol.netty.api.Configuration.SERVER_BOOTSTRAP_PID, props);
 	}
 
 	@Override
-	public String createEventLoopGroup(String appName, String inetHost, Integer inetPort, String groupName)
-			throws Exception {
+	public String createEventLoopGroup(String appName, String inetHost, Integer inetPort, String groupName,
+			Optional<Map<String, Object>> providerProperties) throws Exception {
 		final Hashtable<String, Object> props = eventLoopGroupProperties(appName, inetHost, inetPort, groupName);
+		addProviderProperties(props, providerProperties);
 		return createConfiguration(NettyApi.EventLoopGroup.PID, props);
 	}
 
+	@Override
+	public List<String> createNettyClientPool(String appName, List<String> factoryPids, List<String> handlerNames,
+			Optional<Map<String, Object>> extraProperties, Optional<Map<String, Object>> providerProperties)
+			throws Exception {
+		final String inetHost = NettyApi.NettyClientPool.ANY_INET_HOST;
+		final int inetPort = NettyApi.NettyClientPool.ANY_INET_PORT;
+		final List<String> results = new ArrayList<>(createBootstrap(appName, inetHost, inetPort, factoryPids,
+				handlerNames, extraProperties, Optional.empty(), providerProperties));
+
+		final Hashtable<String, Object> props = new Hashtable<>();
+		props.put(NettyApi.NettyClientPool.APP_NAME, appName);
+		props.put(NettyApi.NettyClientPool.Reference.BOOTSTRAP_TARGET,
+				createFilterFromMap(ConfigurationAdmin.SERVICE_FACTORYPID, NettyApi.Bootstrap.PID, bootstrapProperties(
+						appName, inetHost, inetPort, factoryPids, handlerNames, extraProperties, Optional.empty())));
+		addProviderProperties(props, providerProperties);
+		results.add(createConfiguration(NettyApi.NettyClientPool.PID, props));
+		return results;
+	}
+
+	@Override
+	public String createByteBufAllocator(String appName, Optional<Map<String, Object>> providerProperties)
+			throws Exception {
+		final Hashtable<String, Object> props = byteBufAllocatorProperties(appName);
+		addProviderProperties(props, providerProperties);
+		return createConfiguration(NettyApi.ByteBufAllocator.PID, props);
+	}
+
 	@Override
 	public String createEventExecutorGroup(String appName, String inetHost, Integer inetPort, String groupName)
 			throws Exception {
@@ -365,24 +522,34 @@ public class ConfigurationUtilProvider implements ConfigurationUtil {
 		return createConfiguration(factoryPid, channelProperties(appName, inetHost, inetPort, channelId));
 	}
 
+	@Override
+	public String createChannelHandlerConfig(String factoryPid, String appName, String inetHost, int inetPort,
+			String handlerName, String channelId, Optional<Map<String, Object>> extraProperties) throws Exception {
+		return createConfiguration(factoryPid,
+				channelHandlerProperties(appName, inetHost, inetPort, handlerName, channelId, extraProperties));
+	}
+
 	@Override
 	public List<String> createChannelInitializer(String appName, String hostname, int port, List<String> factoryPids,
-			List<String> handlerNames, Optional<Map<String, Object>> extraProperties) throws Exception {
+			List<String> handlerNames, Optional<Map<String, Object>> extraProperties,
+			Optional<Map<String, Object>> providerProperties) throws Exception {
 
 		final List<String> results = new ArrayList<>();
 		results.add(createEventExecutorGroup(appName, hostname, port,
 				ReferenceName.ChannelInitializer.EVENT_EXECUTOR_GROUP));
-		results.add(
-				createChannelInitializerConfig(appName, hostname, port, factoryPids, handlerNames, extraProperties));
+		results.add(createChannelInitializerConfig(appName, hostname, port, factoryPids, handlerNames,
+				extraProperties, providerProperties));
 		return results;
 	}
 
 	@Override
 	public String createChannelInitializerConfig(String appName, String hostname, int port, List<String> factoryPids,
-			List<String> handlerNames, Optional<Map<String, Object>> extraProperties) throws Exception {
+			List<String> handlerNames, Optional<Map<String, Object>> extraProperties,
+			Optional<Map<String, Object>> providerProperties) throws Exception {
 
 		final Dictionary<String, Object> props = toChannelInitializerProperties(appName, hostname, port, factoryPids,
 				handlerNames, extraProperties);
+		addProviderProperties(props, providerProperties);
 		return createConfiguration(NettyApi.ChannelInitializer.PID, props);
 	}
 
@@ -409,25 +576,101 @@ public class ConfigurationUtilProvider implements ConfigurationUtil {
 
 	@Override
 	public void deleteConfigurationPids(Collection<String> pids) throws Exception {
+		// On the calling thread, which may be an executor thread itself
+		for (Configuration config : listConfigurationsByPid(pids).values()) {
+			delete(config);
+		}
+	}
 
-		for (String pid : pids) {
-			final String filter = String.format("(%s=%s)", Constants.SERVICE_PID, pid);
+	private String delete(Configuration config) {
+		final String pid = config.getPid();
+		configurations.remove(pid);
+		index.remove(pid);
+		try {
+			config.delete();
+		} catch (Exception e) {
+			logger.warn("Error deleting configuration {}", pid, e);
+		}
+		return pid;
+	}
 
-			Configuration[] configs = admin.listConfigurations(filter);
+	/*
+	 * Returns the existing configurations in the order of the pids. Those not
+	 * indexed are looked up with a filter per batch of PIDs, instead of per PID
+	 */
+	Map<String, Configuration> listConfigurationsByPid(Collection<String> pids) throws Exception {
+		final Map<String, Configuration> found = new HashMap<>();
+		final List<String> list = new ArrayList<>();
+		for (String pid : pids) {
+			final Configuration config = index.get(pid);
+			if (config != null) {
+				found.put(pid, config);
+			} else {
+				list.add(pid);
+			}
+		}
+		for (int from = 0; from < list.size(); from += FILTER_BATCH_SIZE) {
+			final StringBuilder filter = new StringBuilder("(|");
+			for (String pid : list.subList(from, Math.min(list.size(), from + FILTER_BATCH_SIZE))) {
+				filter.append('(').append(Constants.SERVICE_PID).append('=').append(ldapSearchEscape(pid)).append(')');
+			}
+			filter.append(')');
+			final Configuration[] configs = admin.listConfigurations(filter.toString());
 			if (configs == null) {
-				// TODO debug/trace log
-				System.err.println("No configurations to delete for filter " + filter);
+				logger.debug("No configurations for filter {}", filter);
 				continue;
 			}
 			for (Configuration config : configs) {
-				configurations.remove(config);
-				try {
-					config.delete();
-				} catch (Exception e) {
-					e.printStackTrace();
-				}
+				found.put(config.getPid(), config);
+			}
+		}
+		final Map<String, Configuration> results = new LinkedHashMap<>();
+		for (String pid : pids) {
+			final Configuration config = found.get(pid);
+			if (config != null) {
+				results.put(pid, config);
 			}
 		}
+		return results;
+	}
+
+	// BATCH
+
+	@Override
+	public Promise<List<String>> createConfigurations(List<String> factoryPids,
+			List<Dictionary<String, Object>> properties) {
+		if (factoryPids.size() != properties.size()) {
+			return Promises.failed(new IllegalArgumentException(
+					String.format("%d factory PIDs but %d properties", factoryPids.size(), properties.size())));
+		}
+		final List<Integer> indexes = IntStream.range(0, factoryPids.size()).boxed().collect(Collectors.toList());
+		return Batch.apply(executor, BATCH_CONCURRENCY, indexes, i -> createConfiguration(factoryPids.get(i), properties.get(i)));
+	}
+
+	@Override
+	public Promise<List<String>> updateConfigurations(Map<String, Dictionary<String, Object>> properties) {
+		final Map<String, Configuration> configs;
+		try {
+			configs = listConfigurationsByPid(properties.keySet());
+		} catch (Exception e) {
+			return Promises.failed(e);
+		}
+		return Batch.apply(executor, BATCH_CONCURRENCY, new ArrayList<>(configs.values()), c -> {
+			c.update(properties.get(c.getPid()));
+			index.put(c);
+			return c.getPid();
+		});
+	}
+
+	@Override
+	public Promise<List<String>> deleteConfigurations(Collection<String> pids) {
+		final Map<String, Configuration> configs;
+		try {
+			configs = listConfigurationsByPid(pids);
+		} catch (Exception e) {
+			return Promises.failed(e);
+		}
+		return Batch.apply(executor, BATCH_CONCURRENCY, new ArrayList<>(configs.values()), this::delete);
 	}
 
 	// PROPERTIES
@@ -458,6 +701,7 @@ public class ConfigurationUtilProvider implements ConfigurationUtil {
 		String eventGroupTarget = eventLoopGroupTarget(ConfigurationAdmin.SERVICE_FACTORYPID,
 				NettyApi.EventLoopGroup.PID, appName, inetHost, inetPort, NettyApi.Bootstrap.Reference.EVENT_LOOP_GROUP);
 		props.put(NettyApi.Bootstrap.Reference.EVENT_LOOP_GROUP_TARGET, eventGroupTarget);
+		props.put(NettyApi.Bootstrap.Reference.BYTE_BUF_ALLOCATOR_TARGET, byteBufAllocatorTarget(appName));
 
 		
 		return props;
@@ -501,6 +745,12 @@ public class ConfigurationUtilProvider implements ConfigurationUtil {
 				Property.EventExecutorGroup.GROUP_NAME, ReferenceName.ChannelInitializer.EVENT_EXECUTOR_GROUP);
 		props.put(ReferenceName.ChannelInitializer.EVENT_EXECUTOR_GROUP_TARGET, eventTarget);
 
+		// Target channel handlers shared by a template pipeline
+		final String templateTarget = String.format("(&(%s=%s)(%s=%s)(%s=%d)(%s=%s))", NettyApi.ChannelHandler.APP_NAME,
+				appName, NettyApi.ChannelHandler.INET_HOST, hostname, NettyApi.ChannelHandler.INET_PORT, port,
+				NettyApi.ChannelHandler.CHANNEL_ID, NettyApi.ChannelHandler.TEMPLATE_CHANNEL_ID);
+		props.put(ReferenceName.ChannelInitializer.TEMPLATE_HANDLERS_TARGET, templateTarget);
+
 		return props;
 	}
 
@@ -561,6 +811,13 @@ public class ConfigurationUtilProvider implements ConfigurationUtil {
 		return eventLoopProperties;
 	}
 
+	@Override
+	public Hashtable<String, Object> byteBufAllocatorProperties(String appName) {
+		final Hashtable<String, Object> props = new Hashtable<>();
+		props.put(NettyApi.ByteBufAllocator.APP_NAME, appName);
+		return props;
+	}
+
 	@Override
 	public Hashtable<String, Object> nettyClientProperties(String appName, String inetHost, Integer inetPort,
 			List<String> factoryPids, List<String> handlerNames, Optional<Map<String, Object>> extraProperties,
@@ -609,7 +866,21 @@ public class ConfigurationUtilProvider implements ConfigurationUtil {
 
 	@Override
 	public String channelTarget(String appName, String inetHost, Integer inetPort, String channelId) {
-		return createFilterFromMap(null, null, channelProperties(appName, inetHost, inetPort, channelId));
+		// Only the app's part of the filter is cached, since channel IDs differ per
+		// connection
+		final Map<String, Object> props = new HashMap<>();
+		props.put(NettyApi.Channel.APP_NAME, appName);
+		props.put(NettyApi.Channel.INET_HOST, inetHost);
+		props.put(NettyApi.Channel.INET_PORT, inetPort);
+		final String appFilter = createFilterFromMap(null, null, props);
+		return new StringBuilder(appFilter.length() + 64).append(appFilter, 0, appFilter.length() - 1).append('(')
+				.append(NettyApi.Channel.CHANNEL_ID).append('=').append(ldapSearchEscape(channelId)).append("))")
+				.toString();
+	}
+
+	String byteBufAllocatorTarget(String appName) {
+		return createFilterFromMap(ConfigurationAdmin.SERVICE_FACTORYPID, NettyApi.ByteBufAllocator.PID,
+				byteBufAllocatorProperties(appName));
 	}
 
 	@Override
@@ -0,0 +1,58 @@
+package io.blesmol.netty.provider;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.osgi.util.promise.Deferred;
+
+/*
+ * A task resolving a deferred, which is failed instead if the executor rejects
+ * the task, whatever its rejection policy, or if the task throws. Otherwise a
+ * discarded task would leave its promise, and every promise chained off of it,
+ * unresolved
+ */
+final class DeferredTask extends FutureTask<Void> {
+
+	private final Deferred<?> deferred;
+
+	private DeferredTask(Deferred<?> deferred, Runnable task) {
+		super(task, null);
+		this.deferred = deferred;
+	}
+
+	/*
+	 * Returns the task, as a future of its running
+	 */
+	static DeferredTask execute(Executor executor, Deferred<?> deferred, Runnable task) {
+		final DeferredTask result = new DeferredTask(deferred, task);
+		try {
+			executor.execute(result);
+		} catch (RejectedExecutionException e) {
+			result.rejected(e);
+		}
+		return result;
+	}
+
+	/*
+	 * Called by the executor's rejection policy, and when executing throws
+	 */
+	void rejected(RejectedExecutionException e) {
+		cancel(false);
+		fail(e);
+	}
+
+	@Override
+	protected void setException(Throwable t) {
+		super.setException(t);
+		fail(t);
+	}
+
+	private void fail(Throwable t) {
+		// Rejections are on the submitting thread, so only a task that has run can
+		// race with them, and it has resolved or failed the deferred already
+		if (!deferred.getPromise().isDone()) {
+			deferred.fail(t);
+		}
+	}
+}
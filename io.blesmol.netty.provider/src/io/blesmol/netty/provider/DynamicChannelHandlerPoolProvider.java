@@ -0,0 +1,104 @@
+package io.blesmol.netty.provider;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import io.blesmol.netty.api.DynamicChannelHandlerPool;
+
+/**
+ * A bounded pool of idle dynamic channel handlers, owned by a channel
+ * initializer.
+ */
+class DynamicChannelHandlerPoolProvider implements DynamicChannelHandlerPool {
+
+	private final ConcurrentLinkedDeque<PooledDynamicChannelHandler> idle = new ConcurrentLinkedDeque<>();
+	// Deque size is not constant time
+	private final AtomicInteger size = new AtomicInteger();
+	private final int maxSize;
+	private final Function<DynamicChannelHandlerPoolProvider, PooledDynamicChannelHandler> factory;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder resets = new LongAdder();
+	private final LongAdder resetNanos = new LongAdder();
+	private final AtomicLong maxResetNanos = new AtomicLong();
+
+	private volatile boolean closed = false;
+
+	DynamicChannelHandlerPoolProvider(int maxSize,
+			Function<DynamicChannelHandlerPoolProvider, PooledDynamicChannelHandler> factory) {
+		this.maxSize = maxSize;
+		this.factory = factory;
+	}
+
+	PooledDynamicChannelHandler acquire() {
+		final PooledDynamicChannelHandler handler = idle.pollFirst();
+		if (handler != null) {
+			size.decrementAndGet();
+			hits.increment();
+			return handler;
+		}
+		misses.increment();
+		return factory.apply(this);
+	}
+
+	/*
+	 * Reset the handler and keep it for the next channel, unless the pool is full
+	 * or closed
+	 */
+	void release(PooledDynamicChannelHandler handler, long closedNanos) {
+		handler.reset();
+
+		final long elapsed = System.nanoTime() - closedNanos;
+		resets.increment();
+		resetNanos.add(elapsed);
+		maxResetNanos.accumulateAndGet(elapsed, Math::max);
+
+		if (closed || size.incrementAndGet() > maxSize) {
+			size.decrementAndGet();
+			return;
+		}
+		// Most recently used first, its memory is more likely to still be cached
+		idle.offerFirst(handler);
+	}
+
+	void close() {
+		closed = true;
+		idle.clear();
+		size.set(0);
+	}
+
+	@Override
+	public int size() {
+		return size.get();
+	}
+
+	@Override
+	public long hits() {
+		return hits.sum();
+	}
+
+	@Override
+	public long misses() {
+		return misses.sum();
+	}
+
+	@Override
+	public long resets() {
+		return resets.sum();
+	}
+
+	@Override
+	public long resetNanos() {
+		return resetNanos.sum();
+	}
+
+	@Override
+	public long maxResetNanos() {
+		return maxResetNanos.get();
+	}
+
+}
@@ -1,18 +1,24 @@
 package io.blesmol.netty.provider;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import org.osgi.framework.Constants;
@@ -29,6 +35,7 @@ import org.osgi.service.component.annotations.ReferencePolicyOption;
 import org.osgi.util.promise.Deferred;
 import org.osgi.util.promise.Promise;
 import org.osgi.util.promise.Promises;
+import org.slf4j.Logger;
 
 import io.blesmol.netty.api.Configuration;
 import io.blesmol.netty.api.ConfigurationUtil;
@@ -42,14 +49,19 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoop;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.EventExecutorGroup;
 
 @Component(configurationPid = Configuration.DYNAMIC_CHANNEL_HANDLER_PID, configurationPolicy = ConfigurationPolicy.REQUIRE, service = DynamicChannelHandler.class, immediate = true)
 public class DynamicChannelHandlerProvider extends ChannelInboundHandlerAdapter implements DynamicChannelHandler {
 
-	// This handler's context
-	private final Deferred<ChannelHandlerContext> deferredContext = new Deferred<>();
-	private final Promise<ChannelHandlerContext> promisedContext = deferredContext.getPromise();
+	private static final Tracer tracer = new Tracer(DynamicChannelHandler.class);
+	private static final Logger logger = tracer.logger();
+
+	// This handler's context; renewed when a pooled handler is reset
+	private volatile Deferred<ChannelHandlerContext> deferredContext = new Deferred<>();
+	private volatile Promise<ChannelHandlerContext> promisedContext = deferredContext.getPromise();
 
 	// Set in activate
 	private String channelId;
@@ -78,6 +90,19 @@ public class DynamicChannelHandlerProvider extends ChannelInboundHandlerAdapter
 	private static final AtomicReferenceFieldUpdater<DynamicChannelHandlerProvider, Deferred> OUTBOUND_DEFERRED = AtomicReferenceFieldUpdater
 			.newUpdater(DynamicChannelHandlerProvider.class, Deferred.class, "outboundHandlerDeferred");
 
+	// Inbound events received whilst assembling the pipeline, in order, and
+	// whether assembly has finished. Both only change on this handler's executor,
+	// but a pooled handler is reset from another thread
+	private final Queue<PendingEvent> pendingEvents = new ArrayDeque<>();
+	private volatile boolean assembled = false;
+	private volatile int maxPendingEvents = Configuration.DynamicChannelHandler.DEFAULT_MAX_PENDING_EVENTS;
+
+	// When opened, and how long the last assembly took on the event loop
+	private volatile long openedNanos;
+	private volatile long lastAssemblyNanos;
+	// Accessed on the channel's event loop
+	private boolean assemblyRecorded;
+
 	// Signifies when all handler configs have been tasked to be added
 	private volatile Deferred<Future<?>> maybeAddToPipelineDeferred = new Deferred<>();
 	private volatile Promise<Future<?>> maybeAddToPipelinePromise = maybeAddToPipelineDeferred.getPromise();
@@ -89,23 +114,13 @@ public class DynamicChannelHandlerProvider extends ChannelInboundHandlerAdapter
 	private static final AtomicReferenceFieldUpdater<DynamicChannelHandlerProvider, Promise> MAYBE_ADD_PIPELINE_PROMISE = AtomicReferenceFieldUpdater
 			.newUpdater(DynamicChannelHandlerProvider.class, Promise.class, "maybeAddToPipelinePromise");
 
-	// Needs volatile since it can be updated on modified method calls
-	// after activate method, possibly on a different thread.
-	private volatile Configuration.DynamicChannelHandler priorConfig;
-
 	// Deque of activated or modified promises
 	private final ConcurrentLinkedDeque<Promise<List<Void>>> promises = new ConcurrentLinkedDeque<>();
 
-	// Holds the defers for channel handlers; resolved asynchronously when a handler
-	// is set
-	private final Map<HandlerNameFactoryPid, Deferred<ChannelHandler>> deferredHandlers = new ConcurrentHashMap<>();
-	// Holds promises for configurations generated by configuration admin, resolved
-	// when created
-	private final Map<HandlerNameFactoryPid, Promise<org.osgi.service.cm.Configuration>> configurations = new ConcurrentHashMap<>();
-	// Lookup map between keys and handlers
-	private final Map<HandlerNameFactoryPid, ChannelHandler> keysToHandlers = new ConcurrentHashMap<>();
-	// Holds empty promises for keys added to pipeline
-	private final Map<HandlerNameFactoryPid, Promise<Void>> keyedPipeline = new ConcurrentHashMap<>();
+	// Per handler: its configuration, the defer resolved asynchronously when its
+	// service is set, the service, and the promise of its being added to the
+	// pipeline. Updated on modified method calls, possibly on a different thread
+	private final HandlerTable table = new HandlerTable();
 
 	//
 	// OSGI FIELD AND METHOD REFERENCES
@@ -125,68 +140,65 @@ public class DynamicChannelHandlerProvider extends ChannelInboundHandlerAdapter
 	@Reference(policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY, cardinality = ReferenceCardinality.MULTIPLE, name = ReferenceName.DynamicChannelHandler.CHANNEL_HANDLER)
 	void setChannelHandler(ChannelHandler handler, Map<String, Object> props) {
 
-		// TODO log
-		System.out.println(String.format("Setting channel handler %s on %s", props.get(Constants.SERVICE_PID), this));
+		logger.trace("Setting channel handler {} on {}", props.get(Constants.SERVICE_PID), this);
 		String handlerName = null;
 		String factoryPid = null;
 		try {
 			handlerName = (String) props.get(Property.ChannelHandler.HANDLER_NAME);
 			factoryPid = (String) props.get(ConfigurationAdmin.SERVICE_FACTORYPID);
 		} catch (NullPointerException e) {
-			// TODO: log warning
-			String errMessage = "Error: ignoring handler '%s'; does not have expected property keys '%s' or '%s' in its map:\n%s";
-			System.err.println(String.format(errMessage, handler.toString(), Property.ChannelHandler.HANDLER_NAME,
-					ConfigurationAdmin.SERVICE_FACTORYPID, props));
+			logger.warn("Ignoring handler '{}'; does not have expected property keys '{}' or '{}' in its map: {}",
+					new Object[] { handler, Property.ChannelHandler.HANDLER_NAME, ConfigurationAdmin.SERVICE_FACTORYPID,
+							props });
 			return;
 		}
 
-		final HandlerNameFactoryPid key = new HandlerNameFactoryPid(handlerName, factoryPid);
-
-		if (!deferredHandlers.containsKey(key)) {
-			// TODO: log warning
-			System.err.println(String.format("Error: key '%s' does not exist in deferred handler map, ignoring", key));
+		final HandlerTable.Slot slot = table.get(handlerName, factoryPid);
+		final Deferred<ChannelHandler> deferred = slot == null ? null : slot.deferred;
+		if (deferred == null) {
+			logger.warn("Handler '{}:{}' is not deferred by {}, ignoring", handlerName, factoryPid, this);
 			return;
 		}
 
-		// Putting into the map happens-before resolving
-		keysToHandlers.put(key, handler);
+		// Setting the handler happens-before resolving
+		slot.handler = handler;
 
 		// Resolve handler
-		deferredHandlers.get(key).resolve(handler);
+		deferred.resolve(handler);
 
 	}
 
 	void unsetChannelHandler(ChannelHandler handler, Map<String, Object> props) {
 
-		// TODO log
-		System.out.println(String.format("Unsetting channel handler %s on %s", handler, this));
+		logger.trace("Unsetting channel handler {} on {}", handler, this);
 		String handlerName = null;
 		String factoryPid = null;
 		try {
 			handlerName = (String) props.get(Property.ChannelHandler.HANDLER_NAME);
 			factoryPid = (String) props.get(ConfigurationAdmin.SERVICE_FACTORYPID);
 		} catch (NullPointerException e) {
-			// TODO: log warning
-			String errMessage = "Error: ignoring handler '%s'; does not have expected property keys '%s' or '%s' in its map:\n%s";
-			System.err.println(String.format(errMessage, handler.toString(), Property.ChannelHandler.HANDLER_NAME,
-					ConfigurationAdmin.SERVICE_FACTORYPID, props));
+			logger.warn("Ignoring handler '{}'; does not have expected property keys '{}' or '{}' in its map: {}",
+					new Object[] { handler, Property.ChannelHandler.HANDLER_NAME, ConfigurationAdmin.SERVICE_FACTORYPID,
+							props });
 			return;
 		}
 
-		final HandlerNameFactoryPid key = new HandlerNameFactoryPid(handlerName, factoryPid);
+		// A renewed slot has the same key as the one it retired, so match the
+		// handler too
+		final HandlerTable.Slot slot = table.get(handlerName, factoryPid);
+		if (slot == null || slot.handler != handler) {
+			return;
+		}
 
 		// Remove previously resolved handler
-		deferredHandlers.remove(key);
+		slot.deferred = null;
+		table.unset(slot);
 
 		// If this handler was added, remove
-		if (keyedPipeline.remove(key) != null) {
-			promisedContext.then((p) -> removeFromPipeline(key, handler, p.getValue()));
-			System.out.println(String.format("Unsetted channel handler %s:%s:%s in %s", handler, key.factoryPid,
-					key.handlerName, this));
-
+		if (HandlerTable.PIPELINE.getAndSet(slot, null) != null) {
+			promisedContext.then((p) -> removeFromPipeline(slot.key, handler, p.getValue()));
+			logger.trace("Unset channel handler {}:{} in {}", handler, slot, this);
 		}
-
-		System.out.println(String.format("Leaving unsetChannelHandler in %s", this));
 	}
 
 	// Currently a no-op so as not to unset and then set the reference.
@@ -195,31 +207,62 @@ public class DynamicChannelHandlerProvider extends ChannelInboundHandlerAdapter
 
 	@Activate
 	void activate(Configuration.DynamicChannelHandler config, Map<String, Object> props) {
+		maxPendingEvents = config.maxPendingEvents();
+		open((String) props.get(Constants.SERVICE_PID), config.channelId(), config.appName(), config.inetHost(),
+				config.inetPort(), config.handlerNames(), config.factoryPids(),
+				configUtil.toOptionalExtraProperties(props));
+	}
 
-		updateProperties(config, props);
-		System.out.println("Activating " + this);
+	// only call in activate, or when a pooled handler is handed to a channel
+	void open(String pid, String channelId, String appName, String inetHost, int inetPort, String[] handlerNames,
+			String[] factoryPids, Optional<Map<String, Object>> extraProperties) {
+		this.openedNanos = System.nanoTime();
+		this.pid = pid;
+		this.channelId = channelId;
+		this.appName = appName;
+		this.inetHost = inetHost;
+		this.inetPort = inetPort;
 
 		// Update extra properties
-		extraProperties = configUtil.toOptionalExtraProperties(props);
-
-		this.priorConfig = config;
+		this.extraProperties = extraProperties;
 
-		final List<HandlerNameFactoryPid> keys = toKeys(config.handlerNames(), config.factoryPids());
+		final HandlerTable.Slot[] prior = table.slots();
+		final List<HandlerTable.Slot> retired = table.update(handlerNames, factoryPids);
+		final List<PipelineDiff.Edit> edits = edits(prior, retired);
 
-		addOrUpdateConfigurationsAndHandlers(keys);
+		addOrUpdateConfigurationsAndHandlers(table.slots(), edits, retired);
 
-		// TODO: log
-		System.out.println("Activated " + this);
+		logger.debug("Opened {}", this);
+	}
 
+	// Set by the pool before opening, as activate does from the configuration
+	void maxPendingEvents(int maxPendingEvents) {
+		this.maxPendingEvents = maxPendingEvents;
 	}
 
-	// only call in activate
-	void updateProperties(Configuration.DynamicChannelHandler config, Map<String, Object> properties) {
-		channelId = config.channelId();
-		pid = (String) properties.get(Constants.SERVICE_PID);
-		appName = config.appName();
-		inetHost = config.inetHost();
-		inetPort = config.inetPort();
+	/*
+	 * Clear all per-channel state so this handler can be opened for another
+	 * channel. Only call after the close promise has resolved.
+	 */
+	void reset() {
+		deferredContext = new Deferred<>();
+		promisedContext = deferredContext.getPromise();
+		outboundHandlerDeferred = new Deferred<>();
+		outboundHandlerPromise = outboundHandlerDeferred.getPromise();
+		maybeAddToPipelineDeferred = new Deferred<>();
+		maybeAddToPipelinePromise = maybeAddToPipelineDeferred.getPromise();
+		promises.clear();
+		assemblyRecorded = false;
+		table.clear();
+		extraProperties = null;
+		pid = null;
+		channelId = null;
+		appName = null;
+		inetHost = null;
+		inetPort = 0;
+		assembled = false;
+		releasePending();
+		CLOSED.set(this, false);
 	}
 
 	@Modified
@@ -227,95 +270,98 @@ public class DynamicChannelHandlerProvider extends ChannelInboundHandlerAdapter
 
 		assert config.factoryPids().length == config.handlerNames().length;
 
-		System.out.println("Modifying " + this);
 
 		// Update our properties
 		extraProperties = configUtil.toOptionalExtraProperties(props);
-		Configuration.DynamicChannelHandler priorConfig = this.priorConfig;
-		this.priorConfig = config;
-
-		// Create our sets used for filtering
-		final Set<HandlerNameFactoryPid> theseKeys = IntStream.range(0, config.factoryPids().length)
-				.mapToObj(i -> new HandlerNameFactoryPid(config.handlerNames()[i], config.factoryPids()[i]))
-				.collect(Collectors.toSet());
-
-		// Union of the above sets
-		final Set<HandlerNameFactoryPid> allKeys = IntStream.range(0, priorConfig.factoryPids().length)
-				.mapToObj(i -> new HandlerNameFactoryPid(priorConfig.handlerNames()[i], priorConfig.factoryPids()[i]))
-				.collect(Collectors.toSet());
-		allKeys.addAll(theseKeys);
 
-		// Remove the keys that don't exist in this config
-		final Set<HandlerNameFactoryPid> toRemove = allKeys.stream().filter(it -> !theseKeys.contains(it))
-				.collect(Collectors.toSet());
+		// Retire the handlers that don't exist in this config, and work out the
+		// edits to the live pipeline
+		final HandlerTable.Slot[] prior = table.slots();
+		final List<HandlerTable.Slot> retired = table.update(config.handlerNames(), config.factoryPids());
+		final List<PipelineDiff.Edit> edits = edits(prior, retired);
+		final HandlerTable.Slot[] slots = table.slots();
 
 		// Get promise created via prior activate or modified method call
 		// and chain off of it
-		promises.remove()
-				// Remove the cruft first
-				.then((p) -> deleteFactoryConfigurations(toRemove))
-				// Then add / update everything else
-				.then((p) -> addOrUpdateConfigurationsAndHandlers(toKeys(config.handlerNames(), config.factoryPids())));
+		promises.remove().then((p) -> addOrUpdateConfigurationsAndHandlers(slots, edits, retired));
 
-		System.out.println("Modified " + this);
+		logger.debug("Modified {}", this);
+	}
+
+	/*
+	 * The edits from the prior slots to the current ones. Moved handlers that
+	 * are not @Sharable are renewed, which retires their slots
+	 */
+	private List<PipelineDiff.Edit> edits(HandlerTable.Slot[] prior, List<HandlerTable.Slot> retired) {
+		return PipelineDiff.renewUnsharable(table, PipelineDiff.diff(prior, table.slots()), retired);
 	}
 
 	@Deactivate
 	void deactivate(Configuration.DynamicChannelHandler config, Map<String, ?> properties) {
-
-		System.out.println("Deactivating dynamic handler properties: " + properties);
-
-		priorConfig = config;
 		close();
-		System.out.println("Deactivated " + this);
+		// Release the interned keys; closing holds on to the slots it deletes
+		table.clear();
+		logger.debug("Deactivated {}", this);
 	}
 
-	private void close() {
+	void close() {
 
 		// exit quickly if we've already been called
 		if (CLOSED.compareAndSet(this, false, true)) {
 
-			Configuration.DynamicChannelHandler config = this.priorConfig;
+			final HandlerTable.Slot[] slots = table.slots();
 
 			// Chain this promise off the existing one in the queue, which there should
 			// always be one. What we create we must destroy
-			promises.remove()
-					.then((p) -> deleteFactoryConfigurations(IntStream.range(0, config.handlerNames().length)
-							.mapToObj(i -> new HandlerNameFactoryPid(config.handlerNames()[i], config.factoryPids()[i]))
-							.collect(Collectors.toList())));
+			closed(promises.remove().then((p) -> deleteFactoryConfigurations(Arrays.asList(slots))));
 		}
 	}
 
-	private List<HandlerNameFactoryPid> toKeys(String[] handlerNames, String[] factoryPids) {
-
-		assert handlerNames.length == factoryPids.length;
-
-		return IntStream.range(0, handlerNames.length)
-				.mapToObj(it -> new HandlerNameFactoryPid(handlerNames[it], factoryPids[it]))
-				.collect(Collectors.toList());
+	/*
+	 * Called once per close with the promise of the configurations being deleted
+	 */
+	void closed(Promise<List<Void>> deleted) {
 	}
 
 	//
 	// PROMISE METHODS
 	//
 
-	private Promise<Void> addOrUpdateConfigurationsAndHandlers(final List<HandlerNameFactoryPid> keys) {
+	/*
+	 * Configures the slots' handlers, applies the edits to the pipeline, then
+	 * deletes the configurations of the retired slots, whose handlers are out of
+	 * the pipeline by then
+	 */
+	private Promise<Void> addOrUpdateConfigurationsAndHandlers(final HandlerTable.Slot[] slots,
+			final List<PipelineDiff.Edit> edits, final List<HandlerTable.Slot> retired) {
+
+		// Offer the promise right away, so a close racing with this method always
+		// finds it
+		final Deferred<List<Void>> offerred = new Deferred<>();
+		promises.offer(offerred.getPromise());
+
+		final String channelId = this.channelId;
+		final Promise<ChannelHandlerContext> promisedContext = this.promisedContext;
 
 		// Ensure we're not blocking activate method by running on a different thread
-		executor.execute(new Runnable() {
+		DeferredTask.execute(executor, offerred, new Runnable() {
 
 			@Override
 			public void run() {
-				Promise<List<Void>> offerredPromises =
+				final Promise<List<Void>> applied =
 						// First create the managed service factory configurations
-						maybeCreateFactoryConfigurations(keys)
+						maybeCreateFactoryConfigurations(slots)
 								// Then update the configurations with required properties
-								.then((p) -> maybeUpdateFactoryConfigurations(p.getValue(), keys, channelId))
-								// And finally add to the pipeline if not already added
-								.then((p) -> maybeAddToPipeline(p.getValue(), promisedContext.getValue(), keys),
-										(f) -> f.getFailure().printStackTrace());
-				System.out.println("Offering promises to dequeue: " + offerredPromises);
-				promises.offer(offerredPromises);
+								.then((p) -> maybeUpdateFactoryConfigurations(p.getValue(), slots, channelId))
+								// And finally edit the pipeline
+								.then((p) -> maybeAddToPipeline(p.getValue(), promisedContext.getValue(), slots,
+										edits), (f) -> logger.error("Error configuring handlers of {}",
+												DynamicChannelHandlerProvider.this, f.getFailure()));
+				// Delete retired configurations even if configuring failed, else none
+				// would delete them
+				offerred.resolveWith(retired.isEmpty() ? applied
+						: applied.recover((f) -> Collections.emptyList())
+								.then((p) -> deleteFactoryConfigurations(retired)));
 			}
 		});
 		return Promises.resolved(null);
@@ -325,41 +371,44 @@ public class DynamicChannelHandlerProvider extends ChannelInboundHandlerAdapter
 	 * Create a list of configuration promises
 	 */
 	private Promise<List<org.osgi.service.cm.Configuration>> maybeCreateFactoryConfigurations(
-			List<HandlerNameFactoryPid> keys) {
+			HandlerTable.Slot[] slots) {
 		final Deferred<List<org.osgi.service.cm.Configuration>> results = new Deferred<>();
 
-		executor.execute(new Runnable() {
+		DeferredTask.execute(executor, results, new Runnable() {
 			@Override
 			public void run() {
-				final List<Promise<org.osgi.service.cm.Configuration>> promisedConfigs = new ArrayList<>();
-				keys.stream().forEachOrdered(it -> {
+				final List<Promise<org.osgi.service.cm.Configuration>> promisedConfigs = new ArrayList<>(slots.length);
+				final Map<HandlerTable.Slot, Deferred<org.osgi.service.cm.Configuration>> missing = new LinkedHashMap<>();
+				for (HandlerTable.Slot it : slots) {
 
-					Promise<org.osgi.service.cm.Configuration> promise = configurations.get(it);
+					Promise<org.osgi.service.cm.Configuration> promise = it.configuration;
 					if (promise == null) {
 						Deferred<org.osgi.service.cm.Configuration> deferred = new Deferred<>();
-						try {
-							final org.osgi.service.cm.Configuration configuration = configAdmin
-									.createFactoryConfiguration(it.factoryPid, "?");
-
-							// Store configurations for future deletion
-							// This happens-before updating the configuration
-							DynamicChannelHandlerProvider.this.configurations.put(it, deferred.getPromise());
-							deferred.resolve(configuration);
-							System.out.println(
-									String.format("Created configuration for '%s:%s'", it.factoryPid, it.handlerName));
-						} catch (Exception e) {
-							e.printStackTrace();
-							deferred.fail(e);
-						}
+						// Store configurations for future deletion
+						// This happens-before creating and updating the configuration
+						it.configuration = deferred.getPromise();
+						missing.put(it, deferred);
 						promise = deferred.getPromise();
 					}
 					promisedConfigs.add(promise);
+				}
+
+				// Create the missing configurations concurrently, instead of one at a time
+				Batch.apply(executor, ConfigurationUtilProvider.BATCH_CONCURRENCY, new ArrayList<>(missing.keySet()), it -> {
+					final Deferred<org.osgi.service.cm.Configuration> deferred = missing.get(it);
+					try {
+						deferred.resolve(configAdmin.createFactoryConfiguration(it.key.factoryPid, "?"));
+						logger.trace("Created configuration for '{}'", it);
+					} catch (Exception e) {
+						logger.error("Error creating configuration for '{}'", it, e);
+						deferred.fail(e);
+					}
+					return null;
 				});
 				results.resolveWith(Promises.all(promisedConfigs));
 			}
 		});
 
-		System.out.println("Finished maybeCreateFactoryConfigurations in " + this);
 		return results.getPromise();
 	}
 
@@ -367,11 +416,11 @@ public class DynamicChannelHandlerProvider extends ChannelInboundHandlerAdapter
 	 * 
 	 */
 	private Promise<List<ChannelHandler>> maybeUpdateFactoryConfigurations(
-			List<org.osgi.service.cm.Configuration> configs, List<HandlerNameFactoryPid> keys, String channelId) {
+			List<org.osgi.service.cm.Configuration> configs, HandlerTable.Slot[] slots, String channelId) {
 
 		Deferred<List<ChannelHandler>> result = new Deferred<>();
 
-		executor.execute(new Runnable() {
+		DeferredTask.execute(executor, result, new Runnable() {
 
 			@Override
 			public void run() {
@@ -379,128 +428,110 @@ public class DynamicChannelHandlerProvider extends ChannelInboundHandlerAdapter
 				final List<Promise<ChannelHandler>> promises = new ArrayList<>(configs.size());
 				IntStream.range(0, configs.size()).forEachOrdered(i -> {
 
-					final HandlerNameFactoryPid key = keys.get(i);
+					final HandlerTable.Slot slot = slots[i];
+					final HandlerNameFactoryPid key = slot.key;
 
-					Deferred<ChannelHandler> deferred = deferredHandlers.get(key);
+					Deferred<ChannelHandler> deferred = slot.deferred;
 					if (deferred == null) {
 						deferred = new Deferred<>();
 						final org.osgi.service.cm.Configuration c = configs.get(i);
 						final String handlerName = key.handlerName;
 
-						// Putting in the concurrent maps needs to happen-before updating the
-						// configuration
-						deferredHandlers.put(key, deferred);
+						// Setting the defer needs to happen-before updating the configuration
+						slot.deferred = deferred;
 
 						// Fail the channel handler defer if its expected configuration cannot be
 						// updated
 						try {
 							c.update(
 									configUtil.channelHandlerProperties(appName, inetHost, inetPort, handlerName, channelId, extraProperties));
-							System.out.println(
-									String.format("Updated configuration for %s:%s:%s:%s", appName, key.factoryPid, handlerName, channelId));
+							logger.trace("Updated configuration for {}:{}:{}", appName, key, channelId);
 						} catch (Exception e) {
-							e.printStackTrace();
+							logger.error("Error updating configuration for {}:{}:{}", appName, key, channelId, e);
 							deferred.fail(e);
 						}
 					}
 					promises.add(deferred.getPromise());
 				});
-				System.out.println("updateConfigsAndMaps resolving promise in " + this);
 				result.resolveWith(Promises.all(promises));
 
 			}
 		});
-		System.out.println("Finished maybeUpdateFactoryConfigurations in " + this);
 		return result.getPromise();
 	}
 
 	private Promise<List<Void>> maybeAddToPipeline(List<ChannelHandler> handlers, ChannelHandlerContext context,
-			List<HandlerNameFactoryPid> keys) {
+			HandlerTable.Slot[] slots, List<PipelineDiff.Edit> edits) {
 
 		Deferred<List<Void>> result = new Deferred<>();
 
-		System.out.println("Starting maybeAddToPipeline in " + this);
-		maybeAddToPipelineDeferred.resolve(executor.submit(() -> {
-			System.out.println("Submitted maybeAddToPipeline in " + this);
-			final List<Promise<Void>> promises = new ArrayList<>();
+		maybeAddToPipelineDeferred.resolve(DeferredTask.execute(executor, result, () -> {
 			final ChannelPipeline pipeline = context.pipeline();
 			final EventLoop channelEventLoop = context.channel().eventLoop();
 			final String channelId = context.channel().id().asLongText();
 
 			// NEEDS TO BE ORDERED
-			// The passed in keys are ordered correctly
+			// The passed in slots are ordered correctly
 			// The list of handlers may not be ordered
-			keys.stream().forEachOrdered(it -> {
-
-				Promise<Void> promise = keyedPipeline.get(it);
-
-				// The handler has not been added yet
-				if (promise == null) {
-					Deferred<Void> deferred = new Deferred<>();
-					final ChannelHandler handler = keysToHandlers.get(it);
-					final int idx = keys.indexOf(it);
-					final String handlerName = it.handlerName;
-					try {
-						// a null event executor group is the same as using the channel's event loop, so
-						// set it here
-						final EventExecutorGroup eventExecutorGroup = handler instanceof EventExecutorGroupHandler
-								? ((EventExecutorGroupHandler) handler).getEventExecutorGroup()
-								: channelEventLoop;
-
-						Runnable toAdd = null;
-						// If this is the first handler, add after this dynamic handler
-						if (idx == 0) {
-							toAdd = () -> {
-								pipeline.addAfter(eventExecutorGroup, DynamicChannelHandler.HANDLER_NAME, handlerName,
-										handler);
-								System.out.println(
-										String.format("Added handler '%s' after dynamic handler", handlerName));
-								deferred.resolve(null);
-							};
-						}
-						// Otherwise, use the previously added (just now or before) handler as a guide
-						else {
-							toAdd = () -> {
-								String priorHandlerName = keys.get(idx - 1).handlerName;
-								pipeline.addAfter(eventExecutorGroup, priorHandlerName, handlerName, handler);
-								System.out.println(
-										String.format("Added handler '%s' after '%s'", handlerName, priorHandlerName));
-								deferred.resolve(null);
-							};
-						}
-
-						// Since we're using the channel's event loop to execute the runnable, we
-						// ensure adding handlers sequentially.
-						System.out.println(String.format("Executing runnable to add handler %s on channel id %s via %s",
-								handlerName, channelId, this));
-						channelEventLoop.execute(toAdd);
+			final Deferred<Void> batch = new Deferred<>();
+			final List<PipelineDiff.Edit> toApply = claim(slots, edits, batch.getPromise());
+			final List<Promise<Void>> promises = new ArrayList<>(slots.length);
+			for (HandlerTable.Slot slot : slots) {
+				promises.add(slot.pipeline);
+			}
+			final int pending = (int) toApply.stream()
+					.filter(it -> it.op == PipelineDiff.Op.INSERT || it.op == PipelineDiff.Op.REPLACE).count();
+			final Metrics.App metrics = Metrics.app(appName);
+			metrics.pendingHandlers(pending);
+
+			// Apply all edits, add the outbound dynamic handler and enable reading in a
+			// single event loop task, so the pipeline is assembled or reconfigured in
+			// one turn and events never see it half edited
+			channelEventLoop.execute(() -> {
+				final long start = System.nanoTime();
+				Throwable failure = null;
+				try {
+					edit(pipeline, channelEventLoop, toApply);
+					tracer.trace(context.channel(), "Applied {}", toApply);
+				} catch (Exception e) {
+					logger.error("Error applying {} to channel {}; none applied", toApply, channelId, e);
+					unclaim(toApply, batch.getPromise());
+					failure = e;
+				}
 
-						// deferred.resolve(null);
-					} catch (Exception e) {
-						e.printStackTrace();
-						deferred.fail(e);
+				// Once assembled, add the outbound dynamic handler, which signals us when
+				// it's added, using our executor so as to receive events whilst still being
+				// added, and allow reading of the channel. A channel whose pipeline could
+				// not be assembled is closed instead
+				if (pipeline.get(DynamicOutboundChannelHandler.HANDLER_NAME) == null) {
+					if (failure == null) {
+						pipeline.addLast(context.executor(), DynamicOutboundChannelHandler.HANDLER_NAME,
+								new DynamicOutboundChannelHandler());
+						BackpressureHandler.startReading(context.channel());
+					} else {
+						context.channel().close();
 					}
-					promise = deferred.getPromise();
-					keyedPipeline.put(it, promise);
 				}
-				promises.add(promise);
-			});
 
-			// Add the outbound dynamic handler, which signals us when it's
-			// added, using our executor so as to receive events whilst still being added
-			// Ensure it's added to via event loop of the channel, but use our executor
-			channelEventLoop.execute(() -> {
-				System.out.println("Adding outbound dynamic handler");
-				pipeline.addLast(context.executor(), DynamicOutboundChannelHandler.HANDLER_NAME,
-						new DynamicOutboundChannelHandler());
+				final long end = System.nanoTime();
+				lastAssemblyNanos = end - start;
+				metrics.pendingHandlers(-pending);
+				if (!assemblyRecorded) {
+					assemblyRecorded = true;
+					metrics.assembled(context.channel(), openedNanos);
+				}
+				if (logger.isDebugEnabled() && Tracer.isSampled(context.channel())) {
+					logger.debug("Assembled {} handlers on channel {} in {}us, {}us after opening", pending,
+							channelId, TimeUnit.NANOSECONDS.toMicros(end - start),
+							TimeUnit.NANOSECONDS.toMicros(end - openedNanos));
+				}
+				if (failure == null) {
+					batch.resolve(null);
+				} else {
+					batch.fail(failure);
+				}
 			});
 
-			// Now allow reading of channel
-			channelEventLoop.execute(() -> {
-				System.out.println(
-						String.format("Enabling auto read on channel id %s", context.channel().id().asLongText()));
-				context.channel().config().setAutoRead(true);
-			});
 			// and resolve
 			result.resolveWith(Promises.all(promises));
 		}));
@@ -509,10 +540,214 @@ public class DynamicChannelHandlerProvider extends ChannelInboundHandlerAdapter
 		MAYBE_ADD_PIPELINE_PROMISE.set(this, maybeAddToPipelineDeferred.getPromise());
 		MAYBE_ADD_PIPELINE_DEFERRED.set(this, new Deferred<Future<?>>());
 
-		System.out.println("Finished maybeAddToPipeline in " + this);
 		return result.getPromise();
 	}
 
+	/*
+	 * Claims the edits still to apply, in order: removals of slots still in the
+	 * pipeline, then, in pipeline order, slots not yet added, which are inserted
+	 * or replace a removed handler of the same name, and moves. A slot whose
+	 * handler was unset and set again since the edits were worked out is
+	 * inserted again.
+	 */
+	private static List<PipelineDiff.Edit> claim(HandlerTable.Slot[] slots, List<PipelineDiff.Edit> edits,
+			Promise<Void> added) {
+		final List<PipelineDiff.Edit> claimed = new ArrayList<>(edits.size());
+		final Map<HandlerTable.Slot, PipelineDiff.Edit> bySlot = new IdentityHashMap<>(edits.size() * 2);
+		for (PipelineDiff.Edit edit : edits) {
+			if (edit.op == PipelineDiff.Op.REMOVE) {
+				if (HandlerTable.PIPELINE.getAndSet(edit.slot, null) != null) {
+					claimed.add(edit);
+				}
+			} else {
+				bySlot.put(edit.slot, edit);
+			}
+		}
+		for (int i = 0; i < slots.length; i++) {
+			final HandlerTable.Slot slot = slots[i];
+			final PipelineDiff.Edit edit = bySlot.get(slot);
+			if (slot.pipeline == null) {
+				slot.pipeline = added;
+				final String after = i == 0 ? DynamicChannelHandler.HANDLER_NAME : slots[i - 1].key.handlerName;
+				if (edit != null && edit.op == PipelineDiff.Op.REPLACE
+						&& HandlerTable.PIPELINE.getAndSet(edit.replaced, null) != null) {
+					claimed.add(new PipelineDiff.Edit(PipelineDiff.Op.REPLACE, slot, edit.replaced, after));
+				} else {
+					claimed.add(new PipelineDiff.Edit(PipelineDiff.Op.INSERT, slot, null, after));
+				}
+			} else if (edit != null && edit.op == PipelineDiff.Op.MOVE) {
+				claimed.add(edit);
+			}
+		}
+		return claimed;
+	}
+
+	/*
+	 * Gives back the claims of edits that were not applied: slots not added are
+	 * added by a later edit, and handlers left in the pipeline are removed when
+	 * their service is unset
+	 */
+	private static void unclaim(List<PipelineDiff.Edit> edits, Promise<Void> added) {
+		final Promise<Void> present = Promises.resolved(null);
+		for (PipelineDiff.Edit edit : edits) {
+			switch (edit.op) {
+			case REMOVE:
+				HandlerTable.PIPELINE.compareAndSet(edit.slot, null, present);
+				break;
+			case REPLACE:
+				HandlerTable.PIPELINE.compareAndSet(edit.replaced, null, present);
+				HandlerTable.PIPELINE.compareAndSet(edit.slot, added, null);
+				break;
+			case INSERT:
+				HandlerTable.PIPELINE.compareAndSet(edit.slot, added, null);
+				break;
+			case MOVE:
+				break;
+			}
+		}
+	}
+
+	/*
+	 * Applies all of the edits or none. Each is checked against the pipeline's
+	 * handler names first; if applying one still fails, those applied are undone,
+	 * last first. Only call on the channel's event loop
+	 */
+	static void edit(ChannelPipeline pipeline, EventLoop channelEventLoop, List<PipelineDiff.Edit> edits) {
+		validate(pipeline, edits);
+		final Deque<Runnable> undo = new ArrayDeque<>(edits.size() * 2);
+		try {
+			for (PipelineDiff.Edit edit : edits) {
+				apply(pipeline, channelEventLoop, edit, undo);
+			}
+		} catch (RuntimeException e) {
+			rollback(pipeline, undo);
+			throw e;
+		}
+	}
+
+	private static void validate(ChannelPipeline pipeline, List<PipelineDiff.Edit> edits) {
+		final Set<String> names = new HashSet<>(pipeline.names());
+		for (PipelineDiff.Edit edit : edits) {
+			switch (edit.op) {
+			case REMOVE:
+				drop(pipeline, names, edit.slot.handler);
+				break;
+			case REPLACE:
+				drop(pipeline, names, edit.replaced.handler);
+				checkAdd(names, edit);
+				break;
+			case MOVE:
+				if (!PipelineDiff.reusable(edit.slot.handler)) {
+					throw new IllegalStateException(
+							String.format("Cannot apply '%s'; the handler is not @Sharable", edit));
+				}
+				drop(pipeline, names, edit.slot.handler);
+				checkAdd(names, edit);
+				break;
+			case INSERT:
+				checkAdd(names, edit);
+				break;
+			}
+		}
+	}
+
+	private static void drop(ChannelPipeline pipeline, Set<String> names, ChannelHandler handler) {
+		final ChannelHandlerContext ctx = handler == null ? null : pipeline.context(handler);
+		if (ctx != null) {
+			names.remove(ctx.name());
+		}
+	}
+
+	private static void checkAdd(Set<String> names, PipelineDiff.Edit edit) {
+		if (edit.slot.handler == null) {
+			throw new IllegalStateException(String.format("Cannot apply '%s'; the handler is not set", edit));
+		}
+		if (!names.contains(edit.after)) {
+			throw new IllegalStateException(
+					String.format("Cannot apply '%s'; '%s' is not in the pipeline", edit, edit.after));
+		}
+		if (!names.add(edit.slot.key.handlerName)) {
+			throw new IllegalStateException(String.format("Cannot apply '%s'; the name is taken", edit));
+		}
+	}
+
+	private static void apply(ChannelPipeline pipeline, EventLoop channelEventLoop, PipelineDiff.Edit edit,
+			Deque<Runnable> undo) {
+		switch (edit.op) {
+		case REMOVE:
+			removeIfPresent(pipeline, edit.slot.handler, undo);
+			break;
+		case REPLACE:
+			removeIfPresent(pipeline, edit.replaced.handler, undo);
+			addAfter(pipeline, channelEventLoop, edit, undo);
+			break;
+		case MOVE:
+			// Moved handlers see handlerRemoved, then handlerAdded
+			removeIfPresent(pipeline, edit.slot.handler, undo);
+			addAfter(pipeline, channelEventLoop, edit, undo);
+			break;
+		case INSERT:
+			addAfter(pipeline, channelEventLoop, edit, undo);
+			break;
+		}
+	}
+
+	private static void addAfter(ChannelPipeline pipeline, EventLoop channelEventLoop, PipelineDiff.Edit edit,
+			Deque<Runnable> undo) {
+		final ChannelHandler handler = edit.slot.handler;
+		// a null event executor group is the same as using the channel's event loop, so
+		// set it here
+		final EventExecutorGroup eventExecutorGroup = handler instanceof EventExecutorGroupHandler
+				? ((EventExecutorGroupHandler) handler).getEventExecutorGroup()
+				: channelEventLoop;
+		pipeline.addAfter(eventExecutorGroup, edit.after, edit.slot.key.handlerName, handler);
+		undo.push(() -> pipeline.remove(handler));
+	}
+
+	private static void removeIfPresent(ChannelPipeline pipeline, ChannelHandler handler, Deque<Runnable> undo) {
+		final ChannelHandlerContext ctx = handler == null ? null : pipeline.context(handler);
+		if (ctx == null) {
+			return;
+		}
+		final String name = ctx.name();
+		final EventExecutor executor = ctx.executor();
+		final List<String> names = pipeline.names();
+		final int index = names.indexOf(name);
+		final String before = index > 0 ? names.get(index - 1) : null;
+		pipeline.remove(handler);
+		undo.push(() -> {
+			if (before == null) {
+				pipeline.addFirst(executor, name, handler);
+			} else {
+				pipeline.addAfter(executor, before, name, handler);
+			}
+		});
+	}
+
+	/*
+	 * A removed handler that is not @Sharable cannot be added back, so the
+	 * channel is closed rather than left half edited
+	 */
+	private static void rollback(ChannelPipeline pipeline, Deque<Runnable> undo) {
+		Runnable it;
+		while ((it = undo.poll()) != null) {
+			try {
+				it.run();
+			} catch (RuntimeException e) {
+				logger.error("Closing channel {}; cannot undo edits to its pipeline", pipeline.channel(), e);
+				pipeline.channel().close();
+				return;
+			}
+		}
+	}
+
+	/*
+	 * Time spent on the channel's event loop assembling the pipeline, most recently
+	 */
+	long lastAssemblyNanos() {
+		return lastAssemblyNanos;
+	}
+
 	private Promise<Void> removeFromPipeline(HandlerNameFactoryPid key, ChannelHandler handler,
 			ChannelHandlerContext context) {
 		final Deferred<Void> deferred = new Deferred<>();
@@ -520,48 +755,36 @@ public class DynamicChannelHandlerProvider extends ChannelInboundHandlerAdapter
 			// Only attempt to remove the handler if the channel is still active
 			if (context.channel().isActive() && context.pipeline().get(key.handlerName) != null) {
 				context.pipeline().remove(handler);
-				System.out.println(String.format("Removed handler '%s' from channelId", key.handlerName, channelId));
+				tracer.trace(context.channel(), "Removed handler '{}' from channel {}", key.handlerName, channelId);
 			}
 			deferred.resolve(null);
 		} catch (Exception e) {
-			e.printStackTrace();
+			logger.warn("Error removing handler '{}' from channel {}", key.handlerName, channelId, e);
 			deferred.fail(e);
 		}
-		System.out.println("Finished removeFromPipeline in " + this);
 		return deferred.getPromise();
 	}
 
 	/*
-	 * Parallel delete configurations
+	 * Delete configurations concurrently, on at most a few executor tasks
 	 */
-	private Promise<List<Void>> deleteFactoryConfigurations(Collection<HandlerNameFactoryPid> keys) {
-		final Deferred<List<Void>> results = new Deferred<>();
-
-		executor.execute(new Runnable() {
-			@Override
-			public void run() {
-				List<Promise<Void>> deletedConfigs = new CopyOnWriteArrayList<>();
-				keys.parallelStream().forEach((k) -> {
-					final Deferred<Void> deferred = new Deferred<>();
-					try {
-						System.out.println(
-								String.format("Deleting factory configuration for %s:%s", k.factoryPid, k.handlerName));
-						org.osgi.service.cm.Configuration c = configurations.remove(k).getValue();
-						c.delete();
-						deferred.resolve(null);
-					} catch (Exception e) {
-						e.printStackTrace();
-						deferred.fail(e);
-					}
-					deletedConfigs.add(deferred.getPromise());
-				});
-				System.out.println(String
-						.format("Resolved deleteFactoryConfigurations for " + DynamicChannelHandlerProvider.this));
-				results.resolveWith(Promises.all(deletedConfigs));
+	@SuppressWarnings("unchecked")
+	private Promise<List<Void>> deleteFactoryConfigurations(Collection<HandlerTable.Slot> slots) {
+		return Batch.apply(executor, ConfigurationUtilProvider.BATCH_CONCURRENCY, new ArrayList<>(slots), k -> {
+			try {
+				logger.trace("Deleting factory configuration for {}", k);
+				final Promise<org.osgi.service.cm.Configuration> promise = HandlerTable.CONFIGURATION.getAndSet(k,
+						null);
+				if (promise == null) {
+					return null;
+				}
+				promise.getValue().delete();
+				return null;
+			} catch (Exception e) {
+				logger.warn("Error deleting factory configuration for {}", k, e);
+				throw e;
 			}
 		});
-		System.out.println("Finished deleteFactoryConfigurations in " + this);
-		return results.getPromise();
 	}
 
 	//
@@ -579,69 +802,54 @@ public class DynamicChannelHandlerProvider extends ChannelInboundHandlerAdapter
 
 	@Override
 	public void handlerAdded(final ChannelHandlerContext ctx) throws Exception {
-		System.out.println(this + " added");
+		tracer.trace(ctx.channel(), "{} added", this);
 		deferredContext.resolve(ctx);
 	}
 
 	// TODO: close
 	@Override
 	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
-		System.out.println(this + " removed");
+		tracer.trace(ctx.channel(), "{} removed", this);
+		// The channel closed before assembly finished
+		releasePending();
 		close();
 	}
 
-	// For below methods, wrap the call in a promise that'll resolve when the
-	// dynamic channel outbound handler is added to the pipeline
+	// Until the pipeline is assembled, below methods queue their events in
+	// order. Afterwards they pass events straight through
 
 	@Override
 	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-		System.out.println(String.format("%s read called with promise %s", this, outboundHandlerPromise));
-		outboundHandlerPromise.onResolve(new Runnable() {
-			@Override
-			public void run() {
-				System.out.println(DynamicChannelHandlerProvider.this + " read");
-				try {
-					DynamicChannelHandlerProvider.super.channelRead(ctx, msg);
-				} catch (Exception e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
-			}
-		});
+		if (assembled) {
+			ctx.fireChannelRead(msg);
+			return;
+		}
+		tracer.trace(ctx.channel(), "{} queueing read", this);
+		queue(ctx, PendingEvent.Type.READ, msg);
 	}
 
 	@Override
 	public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
-		System.out.println(String.format("%s read complete called with promise %s", this, outboundHandlerPromise));
-		outboundHandlerPromise.onResolve(new Runnable() {
-			@Override
-			public void run() {
-				System.out.println(DynamicChannelHandlerProvider.this + " read complete");
-				try {
-					DynamicChannelHandlerProvider.super.channelReadComplete(ctx);
-				} catch (Exception e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
-			}
-		});
+		if (assembled) {
+			ctx.fireChannelReadComplete();
+			return;
+		}
+		tracer.trace(ctx.channel(), "{} queueing read complete", this);
+		queue(ctx, PendingEvent.Type.READ_COMPLETE, null);
 	}
 
 	@Override
 	public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
-		// If this is a promise, see if it's from the outbound communicating to us
-		// Deferred<Void> outboundHandlerDeferred = this.outboundHandlerDeferred;
-		// System.out.println("Outbound deferred in user event triggered: " +
-		// outboundHandlerDeferred);
+		// If this is a promise, see if it's from the outbound communicating to us.
+		// Checked even once assembled, since modifications add handlers again
 		if (evt instanceof Promise<?>) {
 			try {
 				@SuppressWarnings("unchecked")
 				Promise<DynamicHandlerEvents> eventPromise = (Promise<DynamicHandlerEvents>) evt;
-				System.out.println(String.format("Getting event promise in " + this));
 				switch (eventPromise.getValue()) {
 				case LAST_HANDLER_ADDED:
-					System.out.println(
-							String.format("Resolving deferred related to promise: %s", outboundHandlerPromise));
+					tracer.trace(ctx.channel(), "{} resolving deferred related to promise {}", this,
+							outboundHandlerPromise);
 					// First resolve the deferred, which resolves any outstanding promise callbacks
 					outboundHandlerDeferred.resolveWith(eventPromise);
 					// Update the promise with the newly updated deferred promise
@@ -650,7 +858,11 @@ public class DynamicChannelHandlerProvider extends ChannelInboundHandlerAdapter
 					// Then update the deferred so it is ready to resolve the next time around
 					final Deferred<Void> newOutboundHandlerDeferred = new Deferred<>();
 					OUTBOUND_DEFERRED.set(this, newOutboundHandlerDeferred);
-					System.out.println(String.format("New promise: %s", outboundHandlerDeferred.getPromise()));
+					// Replay what arrived during assembly, then pass through
+					if (!assembled) {
+						firePending(ctx);
+						assembled = true;
+					}
 					return;
 				default:
 					break;
@@ -662,71 +874,106 @@ public class DynamicChannelHandlerProvider extends ChannelInboundHandlerAdapter
 
 		}
 		// Otherwise send the event onwards
-		System.out.println(this + " user event triggered called");
-		outboundHandlerPromise.onResolve(new Runnable() {
-			@Override
-			public void run() {
-				try {
-					System.out.println(this + " user event triggered, calling super");
-					DynamicChannelHandlerProvider.super.userEventTriggered(ctx, evt);
-				} catch (Exception e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
-			}
-		});
+		if (assembled) {
+			ctx.fireUserEventTriggered(evt);
+			return;
+		}
+		tracer.trace(ctx.channel(), "{} queueing user event", this);
+		queue(ctx, PendingEvent.Type.USER_EVENT, evt);
 	}
 
 	@Override
 	public void channelActive(ChannelHandlerContext ctx) throws Exception {
-		System.out.println(this + " active called");
-		outboundHandlerPromise.onResolve(new Runnable() {
-			@Override
-			public void run() {
-				System.out.println(this + " activte");
-				try {
-					DynamicChannelHandlerProvider.super.channelActive(ctx);
-				} catch (Exception e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
-			}
-		});
+		if (assembled) {
+			ctx.fireChannelActive();
+			return;
+		}
+		tracer.trace(ctx.channel(), "{} queueing active", this);
+		queue(ctx, PendingEvent.Type.ACTIVE, null);
 	}
 
 	@Override
 	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-		System.out.println(this + " inactive called");
-		outboundHandlerPromise.onResolve(new Runnable() {
-			@Override
-			public void run() {
-				System.out.println(this + " inactive");
-				try {
-					DynamicChannelHandlerProvider.super.channelInactive(ctx);
-				} catch (Exception e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
-			}
-		});
+		if (assembled) {
+			ctx.fireChannelInactive();
+			return;
+		}
+		tracer.trace(ctx.channel(), "{} queueing inactive", this);
+		queue(ctx, PendingEvent.Type.INACTIVE, null);
 	}
 
 	@Override
 	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
-		System.out.println(this + " channel writability changed called");
-		outboundHandlerPromise.onResolve(new Runnable() {
-			@Override
-			public void run() {
-				System.out.println(this + " channel writability changed");
-				try {
-					DynamicChannelHandlerProvider.super.channelWritabilityChanged(ctx);
-				} catch (Exception e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
+		if (assembled) {
+			ctx.fireChannelWritabilityChanged();
+			return;
+		}
+		tracer.trace(ctx.channel(), "{} queueing channel writability changed", this);
+		queue(ctx, PendingEvent.Type.WRITABILITY_CHANGED, null);
+	}
+
+	/*
+	 * An inbound event received before the pipeline was assembled
+	 */
+	static final class PendingEvent {
+		enum Type {
+			READ, READ_COMPLETE, USER_EVENT, ACTIVE, INACTIVE, WRITABILITY_CHANGED
+		}
+
+		final Type type;
+		final Object payload;
+
+		PendingEvent(Type type, Object payload) {
+			this.type = type;
+			this.payload = payload;
+		}
+	}
+
+	/*
+	 * Called on this handler's executor only, like the other event methods
+	 */
+	private void queue(ChannelHandlerContext ctx, PendingEvent.Type type, Object payload) {
+		if (pendingEvents.size() >= maxPendingEvents) {
+			logger.warn("Closing channel {}; more than {} events received while assembling its pipeline",
+					ctx.channel(), maxPendingEvents);
+			ReferenceCountUtil.release(payload);
+			ctx.close();
+			return;
+		}
+		pendingEvents.add(new PendingEvent(type, payload));
+	}
+
+	private void firePending(ChannelHandlerContext ctx) {
+		PendingEvent event;
+		while ((event = pendingEvents.poll()) != null) {
+			switch (event.type) {
+			case READ:
+				ctx.fireChannelRead(event.payload);
+				break;
+			case READ_COMPLETE:
+				ctx.fireChannelReadComplete();
+				break;
+			case USER_EVENT:
+				ctx.fireUserEventTriggered(event.payload);
+				break;
+			case ACTIVE:
+				ctx.fireChannelActive();
+				break;
+			case INACTIVE:
+				ctx.fireChannelInactive();
+				break;
+			case WRITABILITY_CHANGED:
+				ctx.fireChannelWritabilityChanged();
+				break;
 			}
-		});
+		}
+	}
 
+	private void releasePending() {
+		PendingEvent event;
+		while ((event = pendingEvents.poll()) != null) {
+			ReferenceCountUtil.release(event.payload);
+		}
 	}
 
 	/*
@@ -739,7 +986,7 @@ public class DynamicChannelHandlerProvider extends ChannelInboundHandlerAdapter
 	 */
 	@Override
 	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-		cause.printStackTrace();
+		logger.warn("Closing channel {} on exception", ctx.channel(), cause);
 		ctx.close();
 		close();
 	}
@@ -10,6 +10,8 @@ import io.netty.channel.ChannelPromise;
 
 public class DynamicOutboundChannelHandler extends ChannelOutboundHandlerAdapter {
 
+	private static final Tracer tracer = new Tracer(DynamicOutboundChannelHandler.class);
+
 	// TODO move to api?
 	public static String HANDLER_NAME = "dynamicOutboundChannelHandler";
 
@@ -23,19 +25,23 @@ public class DynamicOutboundChannelHandler extends ChannelOutboundHandlerAdapter
 		// and we don't need to shuttle promises around
 		// Fire the event on the pipeline to get to the first handler
 		ctx.channel().pipeline().fireUserEventTriggered(handlerAddedPromise);
-		System.out.println("Fired last handler added event in dynamic outbound handler on first context");
-		System.out.println("Removing dynamic outbound handler from pipeline");
+		tracer.trace(ctx.channel(), "Fired last handler added event on channel {}, removing {}", ctx.channel(),
+				HANDLER_NAME);
 		ctx.channel().pipeline().remove(this);
 	}
 
 	@Override
 	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-		cause.printStackTrace();
+		tracer.logger().warn("Closing channel {} on exception", ctx.channel(), cause);
 		ctx.close();
 	}
 
 	@Override
 	public void read(ChannelHandlerContext ctx) throws Exception {
+		if (handlerAddedPromise.isDone()) {
+			super.read(ctx);
+			return;
+		}
 		handlerAddedPromise.onResolve(new Runnable() {
 
 			@Override
@@ -43,8 +49,7 @@ public class DynamicOutboundChannelHandler extends ChannelOutboundHandlerAdapter
 				try {
 					DynamicOutboundChannelHandler.super.read(ctx);
 				} catch (Exception e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
+					tracer.logger().warn("Error in deferred read on channel {}", ctx.channel(), e);
 				}
 			}
 		});
@@ -52,6 +57,12 @@ public class DynamicOutboundChannelHandler extends ChannelOutboundHandlerAdapter
 
 	@Override
 	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+		// Once the pipeline is complete, messages such as file regions pass through
+		// as-is until this handler is removed
+		if (handlerAddedPromise.isDone()) {
+			super.write(ctx, msg, promise);
+			return;
+		}
 		handlerAddedPromise.onResolve(new Runnable() {
 
 			@Override
@@ -59,8 +70,7 @@ public class DynamicOutboundChannelHandler extends ChannelOutboundHandlerAdapter
 				try {
 					DynamicOutboundChannelHandler.super.write(ctx, msg, promise);
 				} catch (Exception e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
+					tracer.logger().warn("Error in deferred write on channel {}", ctx.channel(), e);
 				}
 			}
 		});
@@ -68,6 +78,10 @@ public class DynamicOutboundChannelHandler extends ChannelOutboundHandlerAdapter
 
 	@Override
 	public void flush(ChannelHandlerContext ctx) throws Exception {
+		if (handlerAddedPromise.isDone()) {
+			super.flush(ctx);
+			return;
+		}
 		handlerAddedPromise.onResolve(new Runnable() {
 
 			@Override
@@ -75,8 +89,7 @@ public class DynamicOutboundChannelHandler extends ChannelOutboundHandlerAdapter
 				try {
 					DynamicOutboundChannelHandler.super.flush(ctx);
 				} catch (Exception e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
+					tracer.logger().warn("Error in deferred flush on channel {}", ctx.channel(), e);
 				}
 			}
 		});
@@ -1,59 +1,161 @@
 package io.blesmol.netty.provider;
 
+import java.util.Iterator;
 import java.util.Map;
-import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import org.osgi.framework.Constants;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
 import org.osgi.service.component.annotations.Deactivate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import io.blesmol.netty.api.NettyApi;
+import io.netty.channel.AbstractEventLoopGroup;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
 
+/**
+ * An event loop group of the configured transport. Since the group's class
+ * depends on configuration, this component delegates to a group created on
+ * activation.
+ */
 @Component(configurationPid = NettyApi.EventLoopGroup.PID, configurationPolicy = ConfigurationPolicy.REQUIRE, service = EventLoopGroup.class)
-public class EventLoopGroupProvider extends NioEventLoopGroup {
+public class EventLoopGroupProvider extends AbstractEventLoopGroup {
+
+	private static final Logger logger = LoggerFactory.getLogger(EventLoopGroup.class);
 
 	private String pid;
 	private String appName;
 	private String groupName;
 
+	// Set in activate
+	private volatile Transport transport;
+	private volatile EventLoopGroup delegate;
+	private volatile EventLoopWatchdog watchdog;
+
 	@Activate
-	void activate(NettyApi.EventLoopGroup config, Map<String, Object> properties) {
+	void activate(NettyApi.EventLoopGroup config, Map<String, Object> properties) throws Exception {
 		this.appName = config.appName();
 		this.groupName = config.groupName();
 		this.pid = (String) properties.get(Constants.SERVICE_PID);
-		System.out.println("Activated " + this);
-		terminationFuture().addListener((f) -> {
-			System.out.println("Terminating " + this);
-		});
+		this.transport = Transport.select(config.transport());
+		this.delegate = transport.newGroup(0);
+		Metrics.app(appName).eventLoopGroupAdded(this);
+		if (config.watchdogIntervalMillis() > 0) {
+			watchdog = new EventLoopWatchdog(watchdogName(), delegate, config.watchdogIntervalMillis(),
+					config.watchdogThresholdMillis());
+			Metrics.watchdogs.put(watchdogName(), watchdog);
+			watchdog.start();
+		}
+		if (logger.isDebugEnabled()) {
+			for (EventExecutor eventLoop : delegate) {
+				logger.debug("Created event loop {} in {}", eventLoop, this);
+				eventLoop.terminationFuture().addListener((f) -> {
+					logger.debug("Event loop {} terminated with future {}", eventLoop, f);
+				});
+			}
+			terminationFuture().addListener((f) -> {
+				logger.debug("Terminated {}", this);
+			});
+		}
+		logger.debug("Activated {}", this);
 	}
-	
+
 	@Deactivate
 	void deactivate() {
+		Metrics.app(appName).eventLoopGroupRemoved(this);
+		final EventLoopWatchdog watchdog = this.watchdog;
+		if (watchdog != null) {
+			watchdog.stop();
+			Metrics.watchdogs.remove(watchdogName(), watchdog);
+		}
 		if (!isShuttingDown()) {
 			shutdownGracefully();
 		}
-		System.out.println("Deactivated " + this);
+		logger.debug("Deactivated {}", this);
+	}
+
+	Transport transport() {
+		return transport;
+	}
+
+	String watchdogName() {
+		return appName + ":" + groupName;
 	}
 
 	@Override
 	public String toString() {
-		return pid + ":" + appName + ":" + groupName;
+		return pid + ":" + appName + ":" + groupName + ":" + transport.kind;
+	}
+
+	@Override
+	public EventLoop next() {
+		return delegate.next();
+	}
+
+	@Override
+	public Iterator<EventExecutor> iterator() {
+		return delegate.iterator();
+	}
+
+	@Override
+	public ChannelFuture register(Channel channel) {
+		return delegate.register(channel);
+	}
+
+	@Override
+	public ChannelFuture register(ChannelPromise promise) {
+		return delegate.register(promise);
+	}
+
+	@Deprecated
+	@Override
+	public ChannelFuture register(Channel channel, ChannelPromise promise) {
+		return delegate.register(channel, promise);
+	}
+
+	@Override
+	public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+		return delegate.shutdownGracefully(quietPeriod, timeout, unit);
+	}
+
+	@Override
+	public Future<?> terminationFuture() {
+		return delegate.terminationFuture();
+	}
+
+	@Deprecated
+	@Override
+	public void shutdown() {
+		delegate.shutdown();
+	}
+
+	@Override
+	public boolean isShuttingDown() {
+		return delegate.isShuttingDown();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return delegate.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return delegate.isTerminated();
 	}
 
 	@Override
-	protected EventLoop newChild(Executor executor, Object... args) throws Exception {
-		final EventLoop eventLoop = super.newChild(executor, args);
-		eventLoop.terminationFuture().addListener((f) -> {
-			System.out.println(String.format("Event loop %s terminated with future %s", eventLoop, f));
-		});
-		System.out.println(String.format("Creating new event loop %s", eventLoop));
-		return eventLoop;
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return delegate.awaitTermination(timeout, unit);
 	}
 
-	
 }
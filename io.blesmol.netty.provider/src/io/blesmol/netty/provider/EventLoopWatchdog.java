@@ -0,0 +1,191 @@
+package io.blesmol.netty.provider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.blesmol.netty.api.NettyMetrics;
+import io.blesmol.netty.util.LatencyHistogram;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+
+/*
+ * Periodically runs a probe on each event loop of a group, recording how long
+ * it waited to run. A loop whose probe waits past the threshold is reported
+ * once per stall, with the stack of its thread, which is usually blocked in a
+ * handler.
+ */
+final class EventLoopWatchdog {
+
+	private static final Logger logger = LoggerFactory.getLogger(EventLoopGroup.class);
+
+	private final String group;
+	private final long intervalNanos;
+	private final long thresholdNanos;
+	private final List<Probe> probes = new ArrayList<>();
+	private final ScheduledExecutorService scheduler;
+
+	final LatencyHistogram delays = new LatencyHistogram();
+	final LongAdder stalls = new LongAdder();
+
+	EventLoopWatchdog(String group, Iterable<EventExecutor> eventLoops, long intervalMillis, long thresholdMillis) {
+		this.group = group;
+		this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+		this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+		eventLoops.forEach(it -> probes.add(new Probe(it)));
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			final Thread thread = new Thread(r, "blesmol-netty-watchdog-" + group);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	void start() {
+		scheduler.scheduleAtFixedRate(this::tick, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+	}
+
+	void stop() {
+		scheduler.shutdownNow();
+	}
+
+	void tick() {
+		final long now = System.nanoTime();
+		for (Probe probe : probes) {
+			if (probe.pending) {
+				probe.check(now);
+			} else {
+				probe.submit(now);
+			}
+		}
+	}
+
+	NettyMetrics.EventLoopDelay snapshot() {
+		return new Delay(group, delays.count(), delays.valueAtPercentile(50), delays.valueAtPercentile(99),
+				delays.valueAtPercentile(99.9), delays.max(), stalls.sum());
+	}
+
+	private class Probe implements Runnable {
+
+		private final EventExecutor eventLoop;
+
+		// Set by the probe on the event loop, read by the watchdog
+		private volatile Thread thread;
+		private volatile long submittedNanos;
+		private volatile boolean pending;
+
+		// Set by the watchdog, cleared by the probe
+		private volatile boolean reported;
+
+		Probe(EventExecutor eventLoop) {
+			this.eventLoop = eventLoop;
+		}
+
+		void submit(long now) {
+			submittedNanos = now;
+			pending = true;
+			try {
+				eventLoop.execute(this);
+			} catch (RejectedExecutionException e) {
+				// Shutting down
+				pending = false;
+			}
+		}
+
+		void check(long now) {
+			final long delay = now - submittedNanos;
+			if (reported || delay < thresholdNanos) {
+				return;
+			}
+			reported = true;
+			stalls.increment();
+			final Thread thread = this.thread;
+			if (thread == null) {
+				logger.warn("Event loop {} of group {} has not run a probe for {}ms", eventLoop, group,
+						TimeUnit.NANOSECONDS.toMillis(delay));
+				return;
+			}
+			final StringBuilder stack = new StringBuilder();
+			for (StackTraceElement element : thread.getStackTrace()) {
+				stack.append("\n\tat ").append(element);
+			}
+			logger.warn("Event loop thread {} of group {} has not run a probe for {}ms, its stack:{}", thread.getName(),
+					group, TimeUnit.NANOSECONDS.toMillis(delay), stack);
+		}
+
+		@Override
+		public void run() {
+			final long delay = System.nanoTime() - submittedNanos;
+			thread = Thread.currentThread();
+			delays.record(delay);
+			if (reported) {
+				reported = false;
+				logger.info("Event loop thread {} of group {} ran a probe after {}ms", thread.getName(), group,
+						TimeUnit.NANOSECONDS.toMillis(delay));
+			}
+			pending = false;
+		}
+	}
+
+	static final class Delay implements NettyMetrics.EventLoopDelay {
+
+		private final String group;
+		private final long count;
+		private final long p50Nanos;
+		private final long p99Nanos;
+		private final long p999Nanos;
+		private final long maxNanos;
+		private final long stalls;
+
+		Delay(String group, long count, long p50Nanos, long p99Nanos, long p999Nanos, long maxNanos, long stalls) {
+			this.group = group;
+			this.count = count;
+			this.p50Nanos = p50Nanos;
+			this.p99Nanos = p99Nanos;
+			this.p999Nanos = p999Nanos;
+			this.maxNanos = maxNanos;
+			this.stalls = stalls;
+		}
+
+		@Override
+		public String group() {
+			return group;
+		}
+
+		@Override
+		public long count() {
+			return count;
+		}
+
+		@Override
+		public long p50Nanos() {
+			return p50Nanos;
+		}
+
+		@Override
+		public long p99Nanos() {
+			return p99Nanos;
+		}
+
+		@Override
+		public long p999Nanos() {
+			return p999Nanos;
+		}
+
+		@Override
+		public long maxNanos() {
+			return maxNanos;
+		}
+
+		@Override
+		public long stalls() {
+			return stalls;
+		}
+	}
+}
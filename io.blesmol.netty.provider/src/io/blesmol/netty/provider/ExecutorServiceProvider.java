@@ -1,28 +1,248 @@
 package io.blesmol.netty.provider;
 
-import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-@Component
-public class ExecutorServiceProvider implements ExecutorService {
+import io.blesmol.netty.api.ExecutorStatistics;
+import io.blesmol.netty.api.NettyApi;
 
-	/**
-	 * @see java.util.concurrent.Executors#newCachedThreadPool()
+@Component(configurationPid = NettyApi.Executor.PID, configurationPolicy = ConfigurationPolicy.OPTIONAL, service = {
+		ExecutorService.class, ExecutorStatistics.class })
+public class ExecutorServiceProvider extends AbstractExecutorService implements ExecutorStatistics {
+
+	private static final Logger logger = LoggerFactory.getLogger(ExecutorStatistics.class);
+
+	// Set on activation, before tasks are accepted, and replaced when modified
+	// settings cannot be changed in place
+	private volatile ExecutorService delegate;
+	// Null when running virtual threads
+	private volatile ThreadPoolExecutor pool;
+	private volatile NettyApi.Executor config;
+
+	// Statistics
+	private final AtomicInteger active = new AtomicInteger();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder queueNanos = new LongAdder();
+	private final LongAdder runNanos = new LongAdder();
+	private final AtomicLong maxQueueNanos = new AtomicLong();
+
+	@Activate
+	void activate(NettyApi.Executor config) {
+		start(config);
+		Metrics.executor = this;
+		logger.debug("Activated executor with core size {}, max size {}, queue size {} and virtual threads {}",
+				config.coreSize(), config.maxSize(), config.queueSize(), pool == null);
+	}
+
+	private void start(NettyApi.Executor config) {
+		ExecutorService delegate = null;
+		ThreadPoolExecutor pool = null;
+		if (config.virtualThreads()) {
+			delegate = newVirtualThreadPerTaskExecutor();
+		}
+		if (delegate == null) {
+			final int coreSize = Math.max(0, config.coreSize());
+			pool = new ThreadPoolExecutor(coreSize, Math.max(Math.max(1, coreSize), config.maxSize()),
+					config.keepAliveSeconds(), TimeUnit.SECONDS,
+					new ArrayBlockingQueue<>(Math.max(1, config.queueSize())),
+					new NamedDaemonThreadFactory(config.threadNamePrefix()), rejectionPolicy(config.rejectionPolicy()));
+			pool.allowCoreThreadTimeOut(true);
+			delegate = pool;
+		}
+		this.config = config;
+		this.pool = pool;
+		this.delegate = delegate;
+	}
+
+	@Modified
+	void modified(NettyApi.Executor config) {
+		final NettyApi.Executor prior = this.config;
+		final ThreadPoolExecutor pool = this.pool;
+
+		// A thread pool's queue and thread factory are fixed, so replace the pool,
+		// or the virtual thread executor. Tasks already queued run on the old one
+		if (config.virtualThreads() != prior.virtualThreads()
+				|| (pool != null && (config.queueSize() != prior.queueSize()
+						|| !config.threadNamePrefix().equals(prior.threadNamePrefix())))) {
+			final ExecutorService replaced = delegate;
+			start(config);
+			replaced.shutdown();
+			logger.debug("Replaced executor with core size {}, max size {}, queue size {} and virtual threads {}",
+					config.coreSize(), config.maxSize(), config.queueSize(), this.pool == null);
+			return;
+		}
+		this.config = config;
+		if (pool == null) {
+			// Sizes and policies do not apply to virtual threads
+			return;
+		}
+
+		final int coreSize = Math.max(0, config.coreSize());
+		final int maxSize = Math.max(Math.max(1, coreSize), config.maxSize());
+		// The core size may never exceed the maximum, so grow the maximum first or
+		// shrink the core size first
+		if (maxSize >= pool.getMaximumPoolSize()) {
+			pool.setMaximumPoolSize(maxSize);
+			pool.setCorePoolSize(coreSize);
+		} else {
+			pool.setCorePoolSize(coreSize);
+			pool.setMaximumPoolSize(maxSize);
+		}
+		pool.setKeepAliveTime(config.keepAliveSeconds(), TimeUnit.SECONDS);
+		pool.setRejectedExecutionHandler(rejectionPolicy(config.rejectionPolicy()));
+		logger.debug("Modified executor to core size {} and max size {}", coreSize, maxSize);
+	}
+
+	@Deactivate
+	void deactivate() {
+		if (Metrics.executor == this) {
+			Metrics.executor = null;
+		}
+		delegate.shutdown();
+	}
+
+	/*
+	 * The JDK's policies, except that tasks not run fail their deferred
 	 */
-	private final ExecutorService delegate = Executors.newCachedThreadPool(); 
+	RejectedExecutionHandler rejectionPolicy(String name) {
+		final RejectedExecutionHandler policy;
+		switch (name) {
+		case NettyApi.Executor.REJECTION_POLICY_ABORT:
+			policy = (r, e) -> {
+				final RejectedExecutionException rejection = rejection(r, e);
+				reject(r, rejection);
+				throw rejection;
+			};
+			break;
+		case NettyApi.Executor.REJECTION_POLICY_DISCARD:
+			policy = (r, e) -> reject(r, rejection(r, e));
+			break;
+		case NettyApi.Executor.REJECTION_POLICY_DISCARD_OLDEST:
+			policy = (r, e) -> {
+				if (e.isShutdown()) {
+					reject(r, rejection(r, e));
+					return;
+				}
+				final Runnable oldest = e.getQueue().poll();
+				if (oldest != null) {
+					reject(oldest, rejection(oldest, e));
+				}
+				e.execute(r);
+			};
+			break;
+		case NettyApi.Executor.REJECTION_POLICY_CALLER_RUNS:
+			policy = (r, e) -> {
+				if (e.isShutdown()) {
+					reject(r, rejection(r, e));
+					return;
+				}
+				rejected.increment();
+				r.run();
+			};
+			break;
+		default:
+			throw new IllegalArgumentException(String.format("Unknown rejection policy '%s'", name));
+		}
+		return (r, e) -> {
+			// Submitted to a replaced pool
+			final ExecutorService current = delegate;
+			if (e.isShutdown() && current != e && !current.isShutdown()) {
+				current.execute(r);
+				return;
+			}
+			policy.rejectedExecution(r, e);
+		};
+	}
+
+	private static RejectedExecutionException rejection(Runnable r, ThreadPoolExecutor e) {
+		return new RejectedExecutionException(String.format("Task %s rejected from %s", r, e));
+	}
+
+	private void reject(Runnable r, RejectedExecutionException rejection) {
+		rejected.increment();
+		final Runnable command = r instanceof TimedTask ? ((TimedTask) r).command : r;
+		if (command instanceof DeferredTask) {
+			((DeferredTask) command).rejected(rejection);
+		}
+	}
+
+	// Available since Java 21, while the provider targets Java 8
+	static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			logger.warn("Virtual threads are not supported by this JVM, falling back to a thread pool");
+			return null;
+		}
+	}
+
+	static class NamedDaemonThreadFactory implements ThreadFactory {
+
+		private final String prefix;
+		private final AtomicInteger count = new AtomicInteger();
+
+		NamedDaemonThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			final Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	// Records how long a task waited for a thread and how long it ran
+	private class TimedTask implements Runnable {
+
+		private final Runnable command;
+		private final long queued = System.nanoTime();
+
+		TimedTask(Runnable command) {
+			this.command = command;
+		}
+
+		@Override
+		public void run() {
+			final long start = System.nanoTime();
+			final long waited = start - queued;
+			queueNanos.add(waited);
+			maxQueueNanos.accumulateAndGet(waited, Math::max);
+			active.incrementAndGet();
+			try {
+				command.run();
+			} finally {
+				active.decrementAndGet();
+				runNanos.add(System.nanoTime() - start);
+				completed.increment();
+			}
+		}
+	}
 
 	@Override
 	public void execute(Runnable command) {
-		delegate.execute(command);
+		delegate.execute(new TimedTask(command));
 	}
 
 	@Override
@@ -51,40 +271,44 @@ public class ExecutorServiceProvider implements ExecutorService {
 	}
 
 	@Override
-	public <T> Future<T> submit(Callable<T> task) {
-		return delegate.submit(task);
+	public int queueDepth() {
+		final ThreadPoolExecutor pool = this.pool;
+		return pool == null ? 0 : pool.getQueue().size();
 	}
 
 	@Override
-	public <T> Future<T> submit(Runnable task, T result) {
-		return delegate.submit(task, result);
+	public int activeCount() {
+		return active.get();
 	}
 
 	@Override
-	public Future<?> submit(Runnable task) {
-		return delegate.submit(task);
+	public int poolSize() {
+		final ThreadPoolExecutor pool = this.pool;
+		return pool == null ? 0 : pool.getPoolSize();
 	}
 
 	@Override
-	public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
-		return delegate.invokeAll(tasks);
+	public long completedTasks() {
+		return completed.sum();
 	}
 
 	@Override
-	public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
-			throws InterruptedException {
-		return delegate.invokeAll(tasks, timeout, unit);
+	public long rejectedTasks() {
+		return rejected.sum();
 	}
 
 	@Override
-	public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
-		return delegate.invokeAny(tasks);
+	public long queueNanos() {
+		return queueNanos.sum();
 	}
 
 	@Override
-	public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
-			throws InterruptedException, ExecutionException, TimeoutException {
-		return delegate.invokeAny(tasks, timeout, unit);
+	public long runNanos() {
+		return runNanos.sum();
 	}
 
+	@Override
+	public long maxQueueNanos() {
+		return maxQueueNanos.get();
+	}
 }
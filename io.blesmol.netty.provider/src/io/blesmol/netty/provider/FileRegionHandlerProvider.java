@@ -0,0 +1,58 @@
+package io.blesmol.netty.provider;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Modified;
+
+import io.blesmol.netty.api.NettyApi;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.handler.stream.ChunkedWriteHandler;
+
+/*
+ * Writes files as file regions, or as chunks when the bytes must pass through
+ * the pipeline. A component per handler configuration, so per channel
+ */
+@Component(configurationPid = NettyApi.FileRegionHandler.PID, configurationPolicy = ConfigurationPolicy.REQUIRE, service = ChannelHandler.class)
+public class FileRegionHandlerProvider extends ChunkedWriteHandler {
+
+	private volatile int chunkSize;
+	private volatile boolean zeroCopy;
+
+	@Activate
+	@Modified
+	void activate(NettyApi.FileRegionHandler config) {
+		chunkSize = config.chunkSize();
+		zeroCopy = config.zeroCopy();
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+		final File file;
+		if (msg instanceof File) {
+			file = (File) msg;
+		} else if (msg instanceof Path) {
+			file = ((Path) msg).toFile();
+		} else {
+			// Including regions and chunked inputs
+			super.write(ctx, msg, promise);
+			return;
+		}
+
+		if (zeroCopy && ctx.pipeline().get(SslHandler.class) == null) {
+			// Opened when transferred, and closed when released
+			super.write(ctx, new DefaultFileRegion(file, 0, file.length()), promise);
+		} else {
+			// Closed by the chunked write handler once written
+			super.write(ctx, new ChunkedNioFile(file, chunkSize), promise);
+		}
+	}
+}
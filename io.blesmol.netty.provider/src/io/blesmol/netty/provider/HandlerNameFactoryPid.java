@@ -1,23 +1,60 @@
 package io.blesmol.netty.provider;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class HandlerNameFactoryPid {
 
+	// Keys come from configurations, so there are few distinct ones; the slots
+	// of all channels share them instead of each holding copies. A key is
+	// dropped with the last slot using it
+	private static final Map<HandlerNameFactoryPid, HandlerNameFactoryPid> interned = new ConcurrentHashMap<>();
+
 	final String handlerName;
 	final String factoryPid;
+	private final int hash;
+	// Slots using the interned key, only changed whilst computing its entry
+	private int uses;
 
 	HandlerNameFactoryPid(String handlerName, String factoryPid) {
 		super();
 		this.handlerName = handlerName;
 		this.factoryPid = factoryPid;
-	}
-
-	@Override
-	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((factoryPid == null) ? 0 : factoryPid.hashCode());
 		result = prime * result + ((handlerName == null) ? 0 : handlerName.hashCode());
-		return result;
+		this.hash = result;
+	}
+
+	/*
+	 * Returns the interned key if a slot uses it, else a new one, without
+	 * interning it
+	 */
+	static HandlerNameFactoryPid of(String handlerName, String factoryPid) {
+		final HandlerNameFactoryPid key = new HandlerNameFactoryPid(handlerName, factoryPid);
+		final HandlerNameFactoryPid existing = interned.get(key);
+		return existing != null ? existing : key;
+	}
+
+	/*
+	 * Returns the interned key for a new slot. Release it when the slot is retired
+	 */
+	static HandlerNameFactoryPid intern(String handlerName, String factoryPid) {
+		return interned.compute(new HandlerNameFactoryPid(handlerName, factoryPid), (k, existing) -> {
+			final HandlerNameFactoryPid key = existing != null ? existing : k;
+			key.uses++;
+			return key;
+		});
+	}
+
+	static void release(HandlerNameFactoryPid key) {
+		interned.computeIfPresent(key, (k, existing) -> --existing.uses == 0 ? null : existing);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
 	}
 
 	@Override
@@ -29,6 +66,8 @@ public class HandlerNameFactoryPid {
 		if (getClass() != obj.getClass())
 			return false;
 		HandlerNameFactoryPid other = (HandlerNameFactoryPid) obj;
+		if (hash != other.hash)
+			return false;
 		if (factoryPid == null) {
 			if (other.factoryPid != null)
 				return false;
@@ -0,0 +1,158 @@
+package io.blesmol.netty.provider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import org.osgi.service.cm.Configuration;
+import org.osgi.util.promise.Deferred;
+import org.osgi.util.promise.Promise;
+
+import io.netty.channel.ChannelHandler;
+
+/*
+ * The handlers of a dynamic handler's pipeline, one slot per handler name and
+ * factory PID in pipeline order. Each slot holds its handler's configuration,
+ * deferred service, the service once set, and whether it was added to the
+ * pipeline. Assembly walks the slots by index; service callbacks find theirs
+ * by key. Keys are interned whilst slots use them.
+ *
+ * The slots are replaced when the handler names change, which is rare; reads
+ * take no lock. Slots dropped by a change are retired: they stay findable
+ * until their handler service is unset, so that it can be removed from the
+ * pipeline.
+ */
+final class HandlerTable {
+
+	private static final Slot[] EMPTY = {};
+
+	static final class Slot {
+		final HandlerNameFactoryPid key;
+
+		volatile Promise<Configuration> configuration;
+		volatile Deferred<ChannelHandler> deferred;
+		volatile ChannelHandler handler;
+		volatile Promise<Void> pipeline;
+		volatile boolean retired;
+
+		Slot(HandlerNameFactoryPid key) {
+			this.key = key;
+		}
+
+		@Override
+		public String toString() {
+			return key.toString();
+		}
+	}
+
+	@SuppressWarnings("rawtypes")
+	static final AtomicReferenceFieldUpdater<Slot, Promise> PIPELINE = AtomicReferenceFieldUpdater
+			.newUpdater(Slot.class, Promise.class, "pipeline");
+	@SuppressWarnings("rawtypes")
+	static final AtomicReferenceFieldUpdater<Slot, Promise> CONFIGURATION = AtomicReferenceFieldUpdater
+			.newUpdater(Slot.class, Promise.class, "configuration");
+
+	private volatile Slot[] slots = EMPTY;
+
+	// Current and retired slots
+	private final Map<HandlerNameFactoryPid, Slot> index = new ConcurrentHashMap<>();
+
+	/*
+	 * The current slots, in pipeline order. Do not modify
+	 */
+	Slot[] slots() {
+		return slots;
+	}
+
+	/*
+	 * Returns the current or retired slot, or null
+	 */
+	Slot get(String handlerName, String factoryPid) {
+		return index.get(HandlerNameFactoryPid.of(handlerName, factoryPid));
+	}
+
+	/*
+	 * Sets the handler names in pipeline order, keeping the slots of names still
+	 * present. Returns the retired slots
+	 */
+	synchronized List<Slot> update(String[] handlerNames, String[] factoryPids) {
+		assert handlerNames.length == factoryPids.length;
+
+		final Slot[] prior = slots;
+		final Slot[] next = new Slot[handlerNames.length];
+		for (int i = 0; i < next.length; i++) {
+			final HandlerNameFactoryPid key = HandlerNameFactoryPid.of(handlerNames[i], factoryPids[i]);
+			Slot slot = index.get(key);
+			if (slot == null || slot.retired) {
+				slot = new Slot(HandlerNameFactoryPid.intern(handlerNames[i], factoryPids[i]));
+				index.put(slot.key, slot);
+			}
+			next[i] = slot;
+		}
+		slots = next;
+
+		final List<Slot> retired = new ArrayList<>();
+		for (Slot slot : prior) {
+			if (index.get(slot.key) == slot && !contains(next, slot)) {
+				retire(slot);
+				retired.add(slot);
+			}
+		}
+		return retired;
+	}
+
+	/*
+	 * Replaces a current slot by a new one of the same key, and retires it, so
+	 * that its handler is replaced by one from a new configuration. Returns the
+	 * new slot
+	 */
+	synchronized Slot renew(Slot slot) {
+		final Slot renewed = new Slot(HandlerNameFactoryPid.intern(slot.key.handlerName, slot.key.factoryPid));
+		final Slot[] next = slots.clone();
+		for (int i = 0; i < next.length; i++) {
+			if (next[i] == slot) {
+				next[i] = renewed;
+			}
+		}
+		retire(slot);
+		index.put(slot.key, renewed);
+		slots = next;
+		return renewed;
+	}
+
+	/*
+	 * Forgets a retired slot once its handler service is unset
+	 */
+	void unset(Slot slot) {
+		if (slot.retired) {
+			index.remove(slot.key, slot);
+		}
+	}
+
+	/*
+	 * Retires all slots and forgets them
+	 */
+	synchronized void clear() {
+		for (Slot slot : slots) {
+			retire(slot);
+		}
+		slots = EMPTY;
+		index.clear();
+	}
+
+	private static void retire(Slot slot) {
+		slot.retired = true;
+		HandlerNameFactoryPid.release(slot.key);
+	}
+
+	private static boolean contains(Slot[] slots, Slot slot) {
+		for (Slot it : slots) {
+			if (it == slot) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
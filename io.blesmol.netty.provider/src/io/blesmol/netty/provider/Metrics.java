@@ -0,0 +1,272 @@
+package io.blesmol.netty.provider;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.blesmol.netty.api.ExecutorStatistics;
+import io.blesmol.netty.api.NettyMetrics;
+import io.netty.buffer.PooledByteBufAllocatorMetric;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+
+/*
+ * Metrics recorded by the provider's components, per app name. Held statically
+ * so recording on the hot path does not depend on a service reference, and read
+ * via the NettyMetrics service. Counters are striped adders.
+ */
+final class Metrics {
+
+	// When a channel was initialized, for measuring its pipeline's assembly
+	static final AttributeKey<Long> INITIALIZED_NANOS = AttributeKey.valueOf(Metrics.class, "initializedNanos");
+
+	private static final Map<String, App> apps = new ConcurrentHashMap<>();
+
+	// Set while the executor service is active
+	static volatile ExecutorStatistics executor;
+
+	// Watchdogs of event loop groups, keyed by appName:groupName
+	static final Map<String, EventLoopWatchdog> watchdogs = new ConcurrentHashMap<>();
+
+	// Allocator metrics by app name, while their allocators are active
+	static final Map<String, PooledByteBufAllocatorMetric> allocators = new ConcurrentHashMap<>();
+
+	private Metrics() {
+	}
+
+	static App app(String appName) {
+		final App app = apps.get(appName);
+		return app != null ? app : apps.computeIfAbsent(appName, App::new);
+	}
+
+	static Map<String, App> apps() {
+		return apps;
+	}
+
+	static final class App implements NettyMetrics.Snapshot {
+
+		private final String appName;
+		private final LongAdder activeChannels = new LongAdder();
+		private final LongAdder totalChannels = new LongAdder();
+		private final LongAdder serverChannels = new LongAdder();
+		private final LongAdder bytesRead = new LongAdder();
+		private final LongAdder bytesWritten = new LongAdder();
+		private final LongAdder assemblies = new LongAdder();
+		private final LongAdder assemblyNanos = new LongAdder();
+		private final AtomicLong maxAssemblyNanos = new AtomicLong();
+		private final LongAdder pendingHandlers = new LongAdder();
+		private final Set<EventLoopGroup> eventLoopGroups = new CopyOnWriteArraySet<>();
+
+		App(String appName) {
+			this.appName = appName;
+		}
+
+		void channelInitialized(Channel ch) {
+			ch.attr(INITIALIZED_NANOS).set(System.nanoTime());
+			totalChannels.increment();
+			activeChannels.increment();
+			ch.closeFuture().addListener(f -> activeChannels.decrement());
+		}
+
+		void serverChannelBound(Channel ch) {
+			serverChannels.increment();
+			ch.closeFuture().addListener(f -> serverChannels.decrement());
+		}
+
+		void assembled(Channel ch, long fallbackStartNanos) {
+			final Long initialized = ch.attr(INITIALIZED_NANOS).get();
+			final long nanos = System.nanoTime() - (initialized != null ? initialized : fallbackStartNanos);
+			assemblies.increment();
+			assemblyNanos.add(nanos);
+			if (nanos > maxAssemblyNanos.get()) {
+				maxAssemblyNanos.accumulateAndGet(nanos, Math::max);
+			}
+		}
+
+		void pendingHandlers(int delta) {
+			pendingHandlers.add(delta);
+		}
+
+		void read(long bytes) {
+			bytesRead.add(bytes);
+		}
+
+		void written(long bytes) {
+			bytesWritten.add(bytes);
+		}
+
+		void eventLoopGroupAdded(EventLoopGroup group) {
+			eventLoopGroups.add(group);
+		}
+
+		void eventLoopGroupRemoved(EventLoopGroup group) {
+			eventLoopGroups.remove(group);
+		}
+
+		// A copy, so its values don't change once taken
+		NettyMetrics.Snapshot snapshot() {
+			return new Snapshot(this);
+		}
+
+		@Override
+		public String appName() {
+			return appName;
+		}
+
+		@Override
+		public long activeChannels() {
+			return activeChannels.sum();
+		}
+
+		@Override
+		public long totalChannels() {
+			return totalChannels.sum();
+		}
+
+		@Override
+		public long serverChannels() {
+			return serverChannels.sum();
+		}
+
+		@Override
+		public long bytesRead() {
+			return bytesRead.sum();
+		}
+
+		@Override
+		public long bytesWritten() {
+			return bytesWritten.sum();
+		}
+
+		@Override
+		public long assemblies() {
+			return assemblies.sum();
+		}
+
+		@Override
+		public long assemblyNanos() {
+			return assemblyNanos.sum();
+		}
+
+		@Override
+		public long maxAssemblyNanos() {
+			return maxAssemblyNanos.get();
+		}
+
+		@Override
+		public long pendingHandlers() {
+			return pendingHandlers.sum();
+		}
+
+		@Override
+		public long eventLoopPendingTasks() {
+			long pendingTasks = 0;
+			for (EventLoopGroup group : eventLoopGroups) {
+				for (EventExecutor eventLoop : group) {
+					if (eventLoop instanceof SingleThreadEventExecutor) {
+						pendingTasks += ((SingleThreadEventExecutor) eventLoop).pendingTasks();
+					}
+				}
+			}
+			return pendingTasks;
+		}
+	}
+
+	static final class Snapshot implements NettyMetrics.Snapshot {
+
+		private final String appName;
+		private final long activeChannels;
+		private final long totalChannels;
+		private final long serverChannels;
+		private final long bytesRead;
+		private final long bytesWritten;
+		private final long assemblies;
+		private final long assemblyNanos;
+		private final long maxAssemblyNanos;
+		private final long pendingHandlers;
+		private final long eventLoopPendingTasks;
+
+		Snapshot(NettyMetrics.Snapshot app) {
+			this.appName = app.appName();
+			this.activeChannels = app.activeChannels();
+			this.totalChannels = app.totalChannels();
+			this.serverChannels = app.serverChannels();
+			this.bytesRead = app.bytesRead();
+			this.bytesWritten = app.bytesWritten();
+			this.assemblies = app.assemblies();
+			this.assemblyNanos = app.assemblyNanos();
+			this.maxAssemblyNanos = app.maxAssemblyNanos();
+			this.pendingHandlers = app.pendingHandlers();
+			this.eventLoopPendingTasks = app.eventLoopPendingTasks();
+		}
+
+		@Override
+		public String appName() {
+			return appName;
+		}
+
+		@Override
+		public long activeChannels() {
+			return activeChannels;
+		}
+
+		@Override
+		public long totalChannels() {
+			return totalChannels;
+		}
+
+		@Override
+		public long serverChannels() {
+			return serverChannels;
+		}
+
+		@Override
+		public long bytesRead() {
+			return bytesRead;
+		}
+
+		@Override
+		public long bytesWritten() {
+			return bytesWritten;
+		}
+
+		@Override
+		public long assemblies() {
+			return assemblies;
+		}
+
+		@Override
+		public long assemblyNanos() {
+			return assemblyNanos;
+		}
+
+		@Override
+		public long maxAssemblyNanos() {
+			return maxAssemblyNanos;
+		}
+
+		@Override
+		public long pendingHandlers() {
+			return pendingHandlers;
+		}
+
+		@Override
+		public long eventLoopPendingTasks() {
+			return eventLoopPendingTasks;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"%s: channels %d/%d, server channels %d, bytes %d/%d, assemblies %d in %dns (max %dns), pending handlers %d, pending tasks %d",
+					appName, activeChannels, totalChannels, serverChannels, bytesRead, bytesWritten, assemblies,
+					assemblyNanos, maxAssemblyNanos, pendingHandlers, eventLoopPendingTasks);
+		}
+	}
+}
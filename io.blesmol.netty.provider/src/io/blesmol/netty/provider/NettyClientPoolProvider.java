@@ -0,0 +1,277 @@
+package io.blesmol.netty.provider;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.util.promise.Deferred;
+import org.osgi.util.promise.Promise;
+import org.osgi.util.promise.Promises;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.blesmol.netty.api.NettyApi;
+import io.blesmol.netty.api.NettyClientPool;
+import io.blesmol.netty.util.LatencyHistogram;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.ChannelPoolHandler;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ScheduledFuture;
+
+/*
+ * A fixed channel pool per endpoint, over clones of the app's bootstrap.
+ * Netty's pool queues pending acquires in order and fails them on timeout, and
+ * checks channels are active; this provider adds idle eviction, by scheduling
+ * a close on each released channel's event loop and cancelling it on acquire,
+ * and statistics.
+ */
+@Component(configurationPid = NettyApi.NettyClientPool.PID, configurationPolicy = ConfigurationPolicy.REQUIRE, service = NettyClientPool.class)
+public class NettyClientPoolProvider implements NettyClientPool {
+
+	private static final Logger logger = LoggerFactory.getLogger(NettyClientPool.class);
+
+	// The endpoint of an acquired channel, cleared on release
+	static final AttributeKey<Endpoint> ENDPOINT = AttributeKey.valueOf(NettyClientPoolProvider.class, "endpoint");
+
+	// The close scheduled for a pooled channel
+	static final AttributeKey<ScheduledFuture<?>> EVICTION = AttributeKey.valueOf(NettyClientPoolProvider.class,
+			"eviction");
+
+	@Reference(name = NettyApi.NettyClientPool.Reference.BOOTSTRAP)
+	Bootstrap bootstrap;
+
+	private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+	// Set in activate
+	private volatile NettyApi.NettyClientPool config;
+	private volatile boolean deactivated;
+
+	@Activate
+	void activate(NettyApi.NettyClientPool config) {
+		this.config = config;
+		logger.debug("Activated client pool for appName {}, {} connections per endpoint", config.appName(),
+				config.maxConnections());
+	}
+
+	@Deactivate
+	void deactivate() {
+		deactivated = true;
+		endpoints.values().forEach(e -> e.pool.close());
+		endpoints.clear();
+	}
+
+	@Override
+	public Promise<Channel> acquire(String inetHost, int inetPort) {
+		if (deactivated) {
+			return Promises.failed(new IllegalStateException("Client pool is deactivated"));
+		}
+		final Endpoint endpoint = endpoints.computeIfAbsent(key(inetHost, inetPort),
+				k -> new Endpoint(bootstrap.clone().remoteAddress(inetHost, inetPort), config));
+
+		final Deferred<Channel> deferred = new Deferred<>();
+		final long start = System.nanoTime();
+		endpoint.pool.acquire().addListener((Future<Channel> f) -> {
+			if (f.isSuccess()) {
+				final Channel channel = f.getNow();
+				channel.attr(ENDPOINT).set(endpoint);
+				endpoint.acquired.incrementAndGet();
+				endpoint.acquires.increment();
+				endpoint.acquireNanos.record(System.nanoTime() - start);
+				deferred.resolve(channel);
+			} else {
+				endpoint.acquireFailures.increment();
+				deferred.fail(f.cause());
+			}
+		});
+		return deferred.getPromise();
+	}
+
+	@Override
+	public Promise<Void> release(Channel channel) {
+		final Endpoint endpoint = channel.attr(ENDPOINT).getAndSet(null);
+		if (endpoint == null) {
+			return Promises.failed(new IllegalArgumentException(
+					String.format("Channel %s was not acquired from this pool, or was already released", channel)));
+		}
+		endpoint.acquired.decrementAndGet();
+
+		final Deferred<Void> deferred = new Deferred<>();
+		final long start = System.nanoTime();
+		endpoint.pool.release(channel).addListener((Future<Void> f) -> {
+			endpoint.releaseNanos.record(System.nanoTime() - start);
+			if (f.isSuccess()) {
+				deferred.resolve(null);
+			} else {
+				deferred.fail(f.cause());
+			}
+		});
+		return deferred.getPromise();
+	}
+
+	@Override
+	public Map<String, Statistics> statistics() {
+		return Collections.unmodifiableMap(endpoints.entrySet().stream()
+				.collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().snapshot())));
+	}
+
+	static String key(String inetHost, int inetPort) {
+		return inetHost + ':' + inetPort;
+	}
+
+	/*
+	 * An endpoint's pool and statistics
+	 */
+	static final class Endpoint implements ChannelPoolHandler {
+
+		final FixedChannelPool pool;
+		private final ChannelHandler handler;
+		private final long idleTimeoutMillis;
+
+		final AtomicInteger acquired = new AtomicInteger();
+		final LongAdder acquires = new LongAdder();
+		final LongAdder acquireFailures = new LongAdder();
+		final LongAdder evictions = new LongAdder();
+		final LatencyHistogram acquireNanos = new LatencyHistogram();
+		final LatencyHistogram releaseNanos = new LatencyHistogram();
+
+		Endpoint(Bootstrap bootstrap, NettyApi.NettyClientPool config) {
+			// The pool replaces the bootstrap's handler with its own, which calls
+			// channelCreated
+			this.handler = bootstrap.config().handler();
+			this.idleTimeoutMillis = config.idleTimeoutMillis();
+			final boolean timeout = config.acquireTimeoutMillis() > 0;
+			this.pool = new FixedChannelPool(bootstrap, this, ChannelHealthChecker.ACTIVE,
+					timeout ? FixedChannelPool.AcquireTimeoutAction.FAIL : null,
+					timeout ? config.acquireTimeoutMillis() : -1, config.maxConnections(), config.maxPendingAcquires(),
+					config.releaseHealthCheck());
+		}
+
+		@Override
+		public void channelCreated(Channel ch) throws Exception {
+			if (handler != null) {
+				ch.pipeline().addLast(handler);
+			}
+		}
+
+		@Override
+		public void channelAcquired(Channel ch) throws Exception {
+			final ScheduledFuture<?> eviction = ch.attr(EVICTION).getAndSet(null);
+			if (eviction != null) {
+				eviction.cancel(false);
+			}
+		}
+
+		@Override
+		public void channelReleased(Channel ch) throws Exception {
+			if (idleTimeoutMillis <= 0 || !ch.isActive()) {
+				return;
+			}
+			// Closed channels are dropped by the pool's health check on acquire
+			ch.attr(EVICTION).set(ch.eventLoop().schedule(() -> {
+				if (ch.attr(EVICTION).getAndSet(null) != null) {
+					evictions.increment();
+					ch.close();
+				}
+			}, idleTimeoutMillis, TimeUnit.MILLISECONDS));
+		}
+
+		Statistics snapshot() {
+			return new Snapshot(acquired.get(), acquires.sum(), acquireFailures.sum(), evictions.sum(),
+					acquireNanos.valueAtPercentile(50), acquireNanos.valueAtPercentile(99), acquireNanos.max(),
+					releaseNanos.valueAtPercentile(50), releaseNanos.valueAtPercentile(99), releaseNanos.max());
+		}
+	}
+
+	static final class Snapshot implements Statistics {
+
+		private final int acquiredChannels;
+		private final long acquires;
+		private final long acquireFailures;
+		private final long evictions;
+		private final long acquireP50Nanos;
+		private final long acquireP99Nanos;
+		private final long acquireMaxNanos;
+		private final long releaseP50Nanos;
+		private final long releaseP99Nanos;
+		private final long releaseMaxNanos;
+
+		Snapshot(int acquiredChannels, long acquires, long acquireFailures, long evictions, long acquireP50Nanos,
+				long acquireP99Nanos, long acquireMaxNanos, long releaseP50Nanos, long releaseP99Nanos,
+				long releaseMaxNanos) {
+			this.acquiredChannels = acquiredChannels;
+			this.acquires = acquires;
+			this.acquireFailures = acquireFailures;
+			this.evictions = evictions;
+			this.acquireP50Nanos = acquireP50Nanos;
+			this.acquireP99Nanos = acquireP99Nanos;
+			this.acquireMaxNanos = acquireMaxNanos;
+			this.releaseP50Nanos = releaseP50Nanos;
+			this.releaseP99Nanos = releaseP99Nanos;
+			this.releaseMaxNanos = releaseMaxNanos;
+		}
+
+		@Override
+		public int acquiredChannels() {
+			return acquiredChannels;
+		}
+
+		@Override
+		public long acquires() {
+			return acquires;
+		}
+
+		@Override
+		public long acquireFailures() {
+			return acquireFailures;
+		}
+
+		@Override
+		public long evictions() {
+			return evictions;
+		}
+
+		@Override
+		public long acquireP50Nanos() {
+			return acquireP50Nanos;
+		}
+
+		@Override
+		public long acquireP99Nanos() {
+			return acquireP99Nanos;
+		}
+
+		@Override
+		public long acquireMaxNanos() {
+			return acquireMaxNanos;
+		}
+
+		@Override
+		public long releaseP50Nanos() {
+			return releaseP50Nanos;
+		}
+
+		@Override
+		public long releaseP99Nanos() {
+			return releaseP99Nanos;
+		}
+
+		@Override
+		public long releaseMaxNanos() {
+			return releaseMaxNanos;
+		}
+	}
+}
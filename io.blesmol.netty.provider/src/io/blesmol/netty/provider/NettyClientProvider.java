@@ -50,7 +50,23 @@ public class NettyClientProvider implements NettyClient {
 		//bootstrap.option(ChannelOption.SO_KEEPALIVE, false);
 
 		logger.debug("Connecting to server {}:{}", config.inetHost(), config.inetPort());
-		deferredChannelFuture.resolve(bootstrap.connect(config.inetHost(), config.inetPort()));
+		deferredChannelFuture.resolve(bootstrap(config).connect(config.inetHost(), config.inetPort()));
+	}
+
+	/*
+	 * The bootstrap, or a copy connecting on the inbound channel's event loop
+	 */
+	private Bootstrap bootstrap(NettyApi.NettyClient config) {
+		if (config.channelId().isEmpty()) {
+			return bootstrap;
+		}
+		final Channel inbound = Channels.get(config.channelId());
+		if (inbound == null) {
+			logger.warn("No open channel {} for client {}, connecting on its bootstrap's group", config.channelId(),
+					config.appName());
+			return bootstrap;
+		}
+		return bootstrap.clone(inbound.eventLoop());
 	}
 
 	@Deactivate
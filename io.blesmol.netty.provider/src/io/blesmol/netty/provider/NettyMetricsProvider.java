@@ -0,0 +1,45 @@
+package io.blesmol.netty.provider;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.osgi.service.component.annotations.Component;
+
+import io.blesmol.netty.api.ExecutorStatistics;
+import io.blesmol.netty.api.NettyMetrics;
+import io.netty.buffer.PooledByteBufAllocatorMetric;
+
+@Component(service = NettyMetrics.class)
+public class NettyMetricsProvider implements NettyMetrics {
+
+	@Override
+	public Optional<Snapshot> snapshot(String appName) {
+		return Optional.ofNullable(Metrics.apps().get(appName)).map(Metrics.App::snapshot);
+	}
+
+	@Override
+	public Map<String, Snapshot> snapshots() {
+		return Metrics.apps().values().stream()
+				.collect(Collectors.toMap(Metrics.App::appName, Metrics.App::snapshot));
+	}
+
+	@Override
+	public Map<String, EventLoopDelay> eventLoopDelays() {
+		return Metrics.watchdogs.entrySet().stream()
+				.collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().snapshot()));
+	}
+
+	@Override
+	public Map<String, PooledByteBufAllocatorMetric> allocatorMetrics() {
+		return Collections.unmodifiableMap(new HashMap<>(Metrics.allocators));
+	}
+
+	@Override
+	public int executorQueueDepth() {
+		final ExecutorStatistics executor = Metrics.executor;
+		return executor == null ? 0 : executor.queueDepth();
+	}
+}
@@ -1,5 +1,7 @@
 package io.blesmol.netty.provider;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -9,30 +11,41 @@ import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
 import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
 import org.osgi.util.promise.Deferred;
 import org.osgi.util.promise.Promise;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import io.blesmol.netty.api.Configuration;
 import io.blesmol.netty.api.ConfigurationUtil;
+import io.blesmol.netty.api.NettyApi;
 import io.blesmol.netty.api.NettyServer;
 import io.blesmol.netty.api.ReferenceName;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
 
 @Component(configurationPid = Configuration.NETTY_SERVER_PID, configurationPolicy = ConfigurationPolicy.REQUIRE, immediate = true)
 public class NettyServerProvider implements NettyServer {
 
+	private static final Logger logger = LoggerFactory.getLogger(NettyServer.class);
+
 	// Cross-thread access
 	private volatile String appName;
 
 	// Guards
 	final AtomicBoolean closed = new AtomicBoolean(false);
 
-	private final Deferred<ChannelFuture> channelFutureDeferred = new Deferred<>();
+	private final Deferred<List<ChannelFuture>> channelFuturesDeferred = new Deferred<>();
 
 	@Reference(name = ReferenceName.NettyServer.SERVER_BOOTSTRAP)
 	ServerBootstrap server;
@@ -52,47 +65,117 @@ public class NettyServerProvider implements NettyServer {
 	@Reference(name = ReferenceName.NettyServer.CHANNEL_INITIALIZER)
 	ChannelInitializer<Channel> channelInitializer;
 
+	// Bound when targeted by the configuration, and dynamically, since
+	// reactivating would rebind the server bootstrap and shut down the shared
+	// event loop groups. Accepted channels get the allocator bound at the time
+	@Reference(name = ReferenceName.NettyServer.BYTE_BUF_ALLOCATOR, cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY, target = NettyApi.ByteBufAllocator.NO_TARGET)
+	volatile ByteBufAllocator allocator;
+
 	@Activate
 	void activate(Configuration.NettyServer config, Map<String, Object> properties) throws Exception {
 
 		if (closed.get()) {
-			// TODO: log
-			System.err.println("Reactivating a previously closed netty server is not supported");
+			logger.error("Reactivating a previously closed netty server is not supported");
 			return;
 		}
 
 		// Create channel initializer dynamically
 		appName = config.appName();
-		// TODO: log
-		System.out.println(
-				String.format("Activating netty server for appName %s and creating channel initializer", appName));
+		logger.debug("Activating netty server for appName {}", appName);
+
 
+		// Fail activation on invalid options, before binding
+		final Map<ChannelOption<Object>, Object> options = ChannelOptionParser.parse(config.options());
+		final Map<ChannelOption<Object>, Object> childOptions = ChannelOptionParser.parse(config.childOptions());
+
+		// Accepted channels are registered on the worker group, so both groups need
+		// the same transport
+		final Transport transport = Transport.of(bossGroup);
+		if (transport != Transport.of(workerGroup)) {
+			throw new IllegalStateException(String.format("Boss group transport '%s' differs from worker group '%s'",
+					transport.kind, Transport.of(workerGroup).kind));
+		}
+		@SuppressWarnings("deprecation")
+		final Class<? extends ServerChannel> channel = config.channel() != NioServerSocketChannel.class
+				? config.channel()
+				: transport.serverChannelClass();
 
 		server.group(bossGroup, workerGroup)
 				//
-				.channel(config.channel())
+				.channel(channel)
 				//
-				.childHandler(channelInitializer)
-				// TODO: consider making configurable
-				.option(ChannelOption.SO_BACKLOG, 128)
-				// TODO: consider making configurable
-				.childOption(ChannelOption.SO_KEEPALIVE, false)
-				// disable reading right away until the dynamic handler says it's ok
-				.childOption(ChannelOption.AUTO_READ, false);
-
-		// Resolve the deferred channel future
-		channelFutureDeferred.resolve(server.bind(config.inetHost(), config.inetPort()));
+				.childHandler(new AllocatorInitializer(channelInitializer, () -> allocator));
+
+		// Defaults, unless set by the server bootstrap's configuration
+		if (!server.config().options().containsKey(ChannelOption.SO_BACKLOG)) {
+			server.option(ChannelOption.SO_BACKLOG, config.backlog());
+		}
+		if (!server.config().childOptions().containsKey(ChannelOption.SO_KEEPALIVE)) {
+			server.childOption(ChannelOption.SO_KEEPALIVE, false);
+		}
+		options.forEach(server::option);
+		childOptions.forEach(server::childOption);
+
+		final ByteBufAllocator allocator = this.allocator;
+		if (allocator != null) {
+			if (options.containsKey(ChannelOption.ALLOCATOR) || childOptions.containsKey(ChannelOption.ALLOCATOR)) {
+				logger.warn("Ignoring option {} for appName {}, using its allocator service", ChannelOption.ALLOCATOR,
+						appName);
+			}
+			server.option(ChannelOption.ALLOCATOR, allocator);
+		}
+
+		// disable reading right away until the dynamic handler says it's ok
+		if (Boolean.TRUE.equals(childOptions.get(ChannelOption.AUTO_READ))) {
+			logger.warn("Ignoring child option {}=true for appName {}", ChannelOption.AUTO_READ, appName);
+		}
+		server.childOption(ChannelOption.AUTO_READ, false);
+
+		// Multiple acceptors bind the same address, which the kernel only allows with
+		// SO_REUSEPORT. It then balances incoming connections across the sockets
+		int acceptors = Math.max(1, config.acceptors());
+		final ChannelOption<Boolean> reusePort = transport.reusePort();
+		if (acceptors > 1) {
+			if (reusePort != null) {
+				server.option(reusePort, true);
+			} else {
+				logger.warn("Transport '{}' does not support SO_REUSEPORT, binding 1 acceptor instead of {} for appName {}",
+						transport.kind, acceptors, appName);
+				acceptors = 1;
+			}
+		}
+
+		// Each bind registers its server channel on the next boss event loop
+		final List<ChannelFuture> channelFutures = new ArrayList<>(acceptors);
+		final Metrics.App metrics = Metrics.app(appName);
+		for (int i = 0; i < acceptors; i++) {
+			final ChannelFuture channelFuture = server.bind(config.inetHost(), config.inetPort());
+			channelFuture.addListener(f -> {
+				if (f.isSuccess()) {
+					metrics.serverChannelBound(channelFuture.channel());
+				}
+			});
+			channelFutures.add(channelFuture);
+		}
+
+		// Resolve the deferred channel futures
+		channelFuturesDeferred.resolve(channelFutures);
 	}
 
 	@Deactivate
 	void deactivate(Configuration.NettyServer config) throws Exception {
-		System.out.println("Deactivating netty server for app " + appName);
+		logger.debug("Deactivating netty server for appName {}", appName);
 		close();
 	}
 
 	@Override
 	public Promise<ChannelFuture> promise() {
-		return channelFutureDeferred.getPromise();
+		return channelFuturesDeferred.getPromise().map(it -> it.get(0));
+	}
+
+	@Override
+	public Promise<List<ChannelFuture>> promises() {
+		return channelFuturesDeferred.getPromise();
 	}
 
 	void close() {
@@ -102,8 +185,7 @@ public class NettyServerProvider implements NettyServer {
 			return;
 		}
 
-		// TODO: log
-		System.out.println("Closing netty server for appName " + appName);
+		logger.debug("Closing netty server for appName {}", appName);
 
 		// Gracefully clean-up
 		workerGroup.shutdownGracefully();
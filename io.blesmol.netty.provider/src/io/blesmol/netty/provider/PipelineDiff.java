@@ -0,0 +1,180 @@
+package io.blesmol.netty.provider;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+
+import io.blesmol.netty.api.DynamicChannelHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerAdapter;
+
+/*
+ * The edits turning a dynamic handler's pipeline from one order of slots into
+ * another: removals first, so that names are free, then, in the new order,
+ * replacements and insertions after the preceding handler, and moves of the
+ * handlers out of order. Handlers in the longest run already in order stay
+ * put, so a reorder moves as few handlers as possible.
+ */
+final class PipelineDiff {
+
+	enum Op {
+		REMOVE, REPLACE, MOVE, INSERT
+	}
+
+	static final class Edit {
+		final Op op;
+		final HandlerTable.Slot slot;
+		// The slot replaced by a replacement, of the same handler name
+		final HandlerTable.Slot replaced;
+		// The handler name to add after, unless removing
+		final String after;
+
+		Edit(Op op, HandlerTable.Slot slot, HandlerTable.Slot replaced, String after) {
+			this.op = op;
+			this.slot = slot;
+			this.replaced = replaced;
+			this.after = after;
+		}
+
+		@Override
+		public String toString() {
+			return op + " " + slot.key.handlerName + (after == null ? "" : " after " + after);
+		}
+	}
+
+	private PipelineDiff() {
+	}
+
+	static List<Edit> diff(HandlerTable.Slot[] prior, HandlerTable.Slot[] next) {
+		if (prior.length == 0) {
+			final List<Edit> edits = new ArrayList<>(next.length);
+			for (int i = 0; i < next.length; i++) {
+				edits.add(new Edit(Op.INSERT, next[i], null, after(next, i)));
+			}
+			return edits;
+		}
+
+		final Map<HandlerTable.Slot, Integer> priorIndex = new IdentityHashMap<>(prior.length * 2);
+		for (int i = 0; i < prior.length; i++) {
+			priorIndex.put(prior[i], i);
+		}
+		final Set<HandlerTable.Slot> nextSlots = Collections.newSetFromMap(new IdentityHashMap<>(next.length * 2));
+		nextSlots.addAll(Arrays.asList(next));
+
+		// Dropped slots, by name, and which of them are replaced by a new slot
+		final Map<String, HandlerTable.Slot> dropped = new HashMap<>();
+		for (HandlerTable.Slot slot : prior) {
+			if (!nextSlots.contains(slot)) {
+				dropped.put(slot.key.handlerName, slot);
+			}
+		}
+		final Map<HandlerTable.Slot, HandlerTable.Slot> replacements = new IdentityHashMap<>();
+		for (HandlerTable.Slot slot : next) {
+			if (!priorIndex.containsKey(slot)) {
+				final HandlerTable.Slot replaced = dropped.remove(slot.key.handlerName);
+				if (replaced != null) {
+					replacements.put(slot, replaced);
+				}
+			}
+		}
+
+		final List<Edit> edits = new ArrayList<>();
+		for (HandlerTable.Slot slot : prior) {
+			if (dropped.get(slot.key.handlerName) == slot) {
+				edits.add(new Edit(Op.REMOVE, slot, null, null));
+			}
+		}
+
+		final Set<HandlerTable.Slot> inOrder = longestInOrder(next, priorIndex);
+		for (int i = 0; i < next.length; i++) {
+			final HandlerTable.Slot slot = next[i];
+			if (!priorIndex.containsKey(slot)) {
+				final HandlerTable.Slot replaced = replacements.get(slot);
+				edits.add(new Edit(replaced != null ? Op.REPLACE : Op.INSERT, slot, replaced, after(next, i)));
+			} else if (!inOrder.contains(slot)) {
+				edits.add(new Edit(Op.MOVE, slot, null, after(next, i)));
+			}
+		}
+		return edits;
+	}
+
+	/*
+	 * Netty adds a handler that is not @Sharable to a pipeline only once, so it
+	 * cannot be removed and added back. Turns each move of one into a
+	 * replacement by a renewed slot, whose handler comes from a new
+	 * configuration, and retires the moved slot
+	 */
+	static List<Edit> renewUnsharable(HandlerTable table, List<Edit> edits, List<HandlerTable.Slot> retired) {
+		for (ListIterator<Edit> it = edits.listIterator(); it.hasNext();) {
+			final Edit edit = it.next();
+			if (edit.op == Op.MOVE && !reusable(edit.slot.handler)) {
+				retired.add(edit.slot);
+				it.set(new Edit(Op.REPLACE, table.renew(edit.slot), edit.slot, edit.after));
+			}
+		}
+		return edits;
+	}
+
+	/*
+	 * Whether the handler can be added again once removed
+	 */
+	static boolean reusable(ChannelHandler handler) {
+		return !(handler instanceof ChannelHandlerAdapter) || ((ChannelHandlerAdapter) handler).isSharable();
+	}
+
+	private static String after(HandlerTable.Slot[] slots, int i) {
+		return i == 0 ? DynamicChannelHandler.HANDLER_NAME : slots[i - 1].key.handlerName;
+	}
+
+	/*
+	 * The kept slots forming the longest run in their prior order, by patience
+	 * sorting their prior indexes in the next order
+	 */
+	private static Set<HandlerTable.Slot> longestInOrder(HandlerTable.Slot[] next,
+			Map<HandlerTable.Slot, Integer> priorIndex) {
+		final int[] indexes = new int[next.length];
+		final HandlerTable.Slot[] kept = new HandlerTable.Slot[next.length];
+		int n = 0;
+		for (HandlerTable.Slot slot : next) {
+			final Integer index = priorIndex.get(slot);
+			if (index != null) {
+				indexes[n] = index;
+				kept[n++] = slot;
+			}
+		}
+
+		// tails[k]: the position in kept ending the lowest run of length k + 1
+		final int[] tails = new int[n];
+		final int[] previous = new int[n];
+		int length = 0;
+		for (int i = 0; i < n; i++) {
+			int lo = 0;
+			int hi = length;
+			while (lo < hi) {
+				final int mid = (lo + hi) >>> 1;
+				if (indexes[tails[mid]] < indexes[i]) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			previous[i] = lo > 0 ? tails[lo - 1] : -1;
+			tails[lo] = i;
+			if (lo == length) {
+				length++;
+			}
+		}
+
+		final Set<HandlerTable.Slot> result = Collections.newSetFromMap(new IdentityHashMap<>(length * 2));
+		for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+			result.add(kept[i]);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,125 @@
+package io.blesmol.netty.provider;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.util.promise.Promise;
+import org.osgi.util.tracker.ServiceTracker;
+
+import io.blesmol.netty.api.ConfigurationUtil;
+import io.blesmol.netty.api.NettyApi;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * A dynamic channel handler that is not a component. Instead of being activated
+ * by SCR per channel, it is opened by the channel initializer, tracks its channel
+ * handlers itself, and is reset and returned to its pool once removed from its
+ * pipeline and its configurations are deleted, whichever comes last. A close on
+ * exception deletes the configurations before the pipeline removes the handler,
+ * which must not then act on the handler's next channel.
+ * <p>
+ * Marked sharable since netty otherwise refuses to add a handler instance to a
+ * second pipeline; the pool ensures it is only ever in one pipeline at a time.
+ */
+@ChannelHandler.Sharable
+class PooledDynamicChannelHandler extends DynamicChannelHandlerProvider {
+
+	private final DynamicChannelHandlerPoolProvider pool;
+	private final BundleContext context;
+
+	// Per channel
+	private volatile ServiceTracker<ChannelHandler, ChannelHandler> tracker;
+	private volatile long closedNanos;
+	// Removal from the pipeline and deletion of the configurations still to
+	// happen before release
+	private final AtomicInteger pendingRelease = new AtomicInteger();
+
+	PooledDynamicChannelHandler(DynamicChannelHandlerPoolProvider pool, BundleContext context,
+			ExecutorService executor, ConfigurationAdmin configAdmin, ConfigurationUtil configUtil) {
+		this.pool = pool;
+		this.context = context;
+		this.executor = executor;
+		this.configAdmin = configAdmin;
+		this.configUtil = configUtil;
+	}
+
+	@Override
+	void open(String pid, String channelId, String appName, String inetHost, int inetPort, String[] handlerNames,
+			String[] factoryPids, Optional<Map<String, Object>> extraProperties) {
+
+		// Track handlers the same way the component's reference targets them
+		final String filter = String.format("(&(%s=%s)(%s=%s)(%s=%s))", Constants.OBJECTCLASS,
+				ChannelHandler.class.getName(), NettyApi.ChannelHandler.CHANNEL_ID, channelId,
+				NettyApi.ChannelHandler.APP_NAME, appName);
+		final ServiceTracker<ChannelHandler, ChannelHandler> tracker;
+		try {
+			tracker = new ServiceTracker<ChannelHandler, ChannelHandler>(context, context.createFilter(filter),
+					null) {
+				@Override
+				public ChannelHandler addingService(ServiceReference<ChannelHandler> reference) {
+					final ChannelHandler handler = super.addingService(reference);
+					setChannelHandler(handler, toMap(reference));
+					return handler;
+				}
+
+				@Override
+				public void removedService(ServiceReference<ChannelHandler> reference, ChannelHandler handler) {
+					unsetChannelHandler(handler, toMap(reference));
+					super.removedService(reference, handler);
+				}
+			};
+		} catch (InvalidSyntaxException e) {
+			throw new IllegalArgumentException(e);
+		}
+		this.tracker = tracker;
+		pendingRelease.set(2);
+		tracker.open();
+
+		super.open(pid, channelId, appName, inetHost, inetPort, handlerNames, factoryPids, extraProperties);
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		closedNanos = System.nanoTime();
+		super.handlerRemoved(ctx);
+		maybeRelease();
+	}
+
+	@Override
+	void closed(Promise<List<Void>> deleted) {
+		// Only reuse once our configurations are gone, else their handlers could be
+		// bound to the next channel
+		deleted.onResolve(() -> {
+			final ServiceTracker<ChannelHandler, ChannelHandler> tracker = this.tracker;
+			this.tracker = null;
+			if (tracker != null) {
+				tracker.close();
+			}
+			maybeRelease();
+		});
+	}
+
+	private void maybeRelease() {
+		if (pendingRelease.decrementAndGet() == 0) {
+			pool.release(this, closedNanos);
+		}
+	}
+
+	static Map<String, Object> toMap(ServiceReference<?> reference) {
+		final Map<String, Object> result = new HashMap<>();
+		for (String key : reference.getPropertyKeys()) {
+			result.put(key, reference.getProperty(key));
+		}
+		return result;
+	}
+}
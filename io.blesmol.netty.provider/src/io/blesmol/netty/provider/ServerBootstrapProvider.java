@@ -1,5 +1,6 @@
 package io.blesmol.netty.provider;
 
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
 
@@ -9,4 +10,10 @@ import io.netty.bootstrap.ServerBootstrap;
 @Component(configurationPid = Configuration.SERVER_BOOTSTRAP_PID, configurationPolicy = ConfigurationPolicy.REQUIRE, service = ServerBootstrap.class)
 public class ServerBootstrapProvider extends ServerBootstrap {
 
+	@Activate
+	void activate(Configuration.ServerBootstrap config) {
+		// Fail activation on invalid options
+		ChannelOptionParser.parse(config.options()).forEach(this::option);
+		ChannelOptionParser.parse(config.childOptions()).forEach(this::childOption);
+	}
 }
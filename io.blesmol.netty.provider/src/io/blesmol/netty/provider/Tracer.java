@@ -0,0 +1,61 @@
+package io.blesmol.netty.provider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.blesmol.netty.api.NettyApi;
+import io.netty.channel.Channel;
+
+/**
+ * Per-channel trace logging for hot paths, backed by an SLF4J logger.
+ * <p>
+ * Each call checks the logger's trace level and the channel's sample before
+ * formatting, and takes its arguments without varargs, so a disabled trace
+ * costs a level check and allocates nothing. Only one in
+ * {@link NettyApi#TRACE_SAMPLE_RATE} channels are traced, chosen by their
+ * channel ID.
+ */
+final class Tracer {
+
+	private static final int SAMPLE_RATE = Math.max(1, Integer.getInteger(NettyApi.TRACE_SAMPLE_RATE, 1));
+
+	private final Logger logger;
+
+	Tracer(Class<?> clazz) {
+		this.logger = LoggerFactory.getLogger(clazz);
+	}
+
+	/**
+	 * @return the logger, for non-channel specific logging
+	 */
+	Logger logger() {
+		return logger;
+	}
+
+	boolean isTracing(Channel channel) {
+		return logger.isTraceEnabled() && isSampled(channel);
+	}
+
+	void trace(Channel channel, String format, Object arg) {
+		if (isTracing(channel)) {
+			logger.trace(format, arg);
+		}
+	}
+
+	void trace(Channel channel, String format, Object arg1, Object arg2) {
+		if (isTracing(channel)) {
+			logger.trace(format, arg1, arg2);
+		}
+	}
+
+	void trace(Channel channel, String format, Object arg1, Object arg2, Object arg3) {
+		if (isTracing(channel)) {
+			logger.trace(format, new Object[] { arg1, arg2, arg3 });
+		}
+	}
+
+	static boolean isSampled(Channel channel) {
+		return SAMPLE_RATE == 1 || channel == null
+				|| ((channel.id().hashCode() & Integer.MAX_VALUE) % SAMPLE_RATE) == 0;
+	}
+}
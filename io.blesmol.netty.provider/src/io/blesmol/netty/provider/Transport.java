@@ -0,0 +1,157 @@
+package io.blesmol.netty.provider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.blesmol.netty.api.NettyApi;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+/**
+ * The event loop group, channel and server channel classes of a transport,
+ * selected together so that a bootstrap never pairs a channel with a group it
+ * cannot register on.
+ * <p>
+ * Native transports are loaded reflectively since their bundles are optional.
+ */
+enum Transport {
+
+	NIO(NettyApi.EventLoopGroup.TRANSPORT_NIO, null, NioEventLoopGroup.class.getName(),
+			NioSocketChannel.class.getName(), NioServerSocketChannel.class.getName(), null),
+
+	EPOLL(NettyApi.EventLoopGroup.TRANSPORT_EPOLL, "io.netty.channel.epoll.Epoll",
+			"io.netty.channel.epoll.EpollEventLoopGroup", "io.netty.channel.epoll.EpollSocketChannel",
+			"io.netty.channel.epoll.EpollServerSocketChannel", "io.netty.channel.epoll.EpollChannelOption"),
+
+	IO_URING(NettyApi.EventLoopGroup.TRANSPORT_IO_URING, "io.netty.incubator.channel.uring.IOUring",
+			"io.netty.incubator.channel.uring.IOUringEventLoopGroup",
+			"io.netty.incubator.channel.uring.IOUringSocketChannel",
+			"io.netty.incubator.channel.uring.IOUringServerSocketChannel",
+			"io.netty.incubator.channel.uring.IOUringChannelOption");
+
+	private static final Logger logger = LoggerFactory.getLogger(Transport.class);
+
+	final String kind;
+	private final String availability;
+	private final String groupClassName;
+	private final String channelClassName;
+	private final String serverChannelClassName;
+	private final String optionClassName;
+
+	Transport(String kind, String availability, String groupClassName, String channelClassName,
+			String serverChannelClassName, String optionClassName) {
+		this.kind = kind;
+		this.availability = availability;
+		this.groupClassName = groupClassName;
+		this.channelClassName = channelClassName;
+		this.serverChannelClassName = serverChannelClassName;
+		this.optionClassName = optionClassName;
+	}
+
+	/**
+	 * @return the transport for the kind, or nio when the kind is unknown or its
+	 *         natives cannot be loaded
+	 */
+	static Transport select(String kind) {
+		for (Transport transport : values()) {
+			if (transport.kind.equalsIgnoreCase(kind)) {
+				if (transport.isAvailable()) {
+					return transport;
+				}
+				logger.warn("Transport '{}' is not available, falling back to '{}'", kind, NIO.kind);
+				return NIO;
+			}
+		}
+		logger.warn("Unknown transport '{}', falling back to '{}'", kind, NIO.kind);
+		return NIO;
+	}
+
+	/**
+	 * @return the transport of the group; nio unless the group is, or delegates
+	 *         to, a native group
+	 */
+	static Transport of(EventLoopGroup group) {
+		// An event loop, such as a channel's, is of its parent group's transport
+		if (group instanceof EventLoop && ((EventLoop) group).parent() != null) {
+			group = ((EventLoop) group).parent();
+		}
+		if (group instanceof EventLoopGroupProvider) {
+			return ((EventLoopGroupProvider) group).transport();
+		}
+		for (Transport transport : values()) {
+			if (transport.groupClassName.equals(group.getClass().getName())) {
+				return transport;
+			}
+		}
+		return NIO;
+	}
+
+	boolean isAvailable() {
+		if (availability == null) {
+			return true;
+		}
+		try {
+			// Both Epoll and IOUring expose a static isAvailable method
+			return (Boolean) load(availability).getMethod("isAvailable").invoke(null);
+		} catch (Throwable t) {
+			// Missing bundle, missing natives, or a different kernel
+			return false;
+		}
+	}
+
+	EventLoopGroup newGroup(int nThreads) throws Exception {
+		return load(groupClassName).asSubclass(EventLoopGroup.class).getConstructor(int.class).newInstance(nThreads);
+	}
+
+	Class<? extends Channel> channelClass() {
+		return load(channelClassName).asSubclass(Channel.class);
+	}
+
+	Class<? extends ServerChannel> serverChannelClass() {
+		return load(serverChannelClassName).asSubclass(ServerChannel.class);
+	}
+
+	/**
+	 * @return the transport's SO_REUSEPORT option, or null if not supported
+	 */
+	@SuppressWarnings("unchecked")
+	ChannelOption<Boolean> reusePort() {
+		if (optionClassName == null) {
+			return null;
+		}
+		try {
+			return (ChannelOption<Boolean>) load(optionClassName).getField("SO_REUSEPORT").get(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the transport's option class, declaring its transport specific
+	 *         options, or null if none or not loadable
+	 */
+	Class<?> optionClass() {
+		if (optionClassName == null) {
+			return null;
+		}
+		try {
+			return Class.forName(optionClassName, false, Transport.class.getClassLoader());
+		} catch (ClassNotFoundException | LinkageError e) {
+			return null;
+		}
+	}
+
+	private static Class<?> load(String className) {
+		try {
+			return Class.forName(className, true, Transport.class.getClassLoader());
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package io.blesmol.netty.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * A concurrent histogram of nanosecond values in the style of HdrHistogram.
+ * Values are bucketed by their highest bit, each power of two split into 128
+ * linear sub-buckets, so recorded values are within 1% of their reported value.
+ * Reported values are the highest value of their bucket. Not exported by the
+ * provider bundle; other bundles embed the package
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BITS = 7;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	// Values below twice the sub-bucket count are exact
+	private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	static int index(long value) {
+		if (value < SUB_COUNT << 1) {
+			return (int) value;
+		}
+		final int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		final int subBucket = (int) (value >>> exponent);
+		return (exponent + 1) * SUB_COUNT + subBucket - SUB_COUNT;
+	}
+
+	static long highestValue(int index) {
+		if (index < SUB_COUNT << 1) {
+			return index;
+		}
+		final int exponent = index / SUB_COUNT - 1;
+		final long subBucket = index % SUB_COUNT + SUB_COUNT;
+		return ((subBucket + 1) << exponent) - 1;
+	}
+
+	public void record(long nanos) {
+		final long value = Math.max(0, nanos);
+		counts.incrementAndGet(index(value));
+		count.increment();
+		sum.add(value);
+		max.accumulateAndGet(value, Math::max);
+	}
+
+	public long count() {
+		return count.sum();
+	}
+
+	public long max() {
+		return max.get();
+	}
+
+	public double mean() {
+		final long count = count();
+		return count == 0 ? 0 : (double) sum.sum() / count;
+	}
+
+	public long valueAtPercentile(double percentile) {
+		final long total = count();
+		if (total == 0) {
+			return 0;
+		}
+		final long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long cumulative = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			cumulative += counts.get(i);
+			if (cumulative >= target) {
+				return Math.min(highestValue(i), max());
+			}
+		}
+		return max();
+	}
+}
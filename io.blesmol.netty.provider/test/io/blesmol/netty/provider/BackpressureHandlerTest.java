@@ -0,0 +1,97 @@
+package io.blesmol.netty.provider;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import io.blesmol.netty.api.Backpressure;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class BackpressureHandlerTest {
+
+	// Holds writes in the outbound buffer by never flushing
+	private static class NoFlushHandler extends ChannelOutboundHandlerAdapter {
+		@Override
+		public void flush(ChannelHandlerContext ctx) throws Exception {
+		}
+	}
+
+	private static EmbeddedChannel channel() {
+		final EmbeddedChannel channel = new EmbeddedChannel(BackpressureHandler.INSTANCE);
+		channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(8, 16));
+		return channel;
+	}
+
+	private static void fill(EmbeddedChannel channel) {
+		channel.write(Unpooled.wrappedBuffer(new byte[32]));
+	}
+
+	@Test
+	public void shouldPauseReadingWhileNotWritable() throws Exception {
+		final EmbeddedChannel channel = channel();
+		fill(channel);
+		assertFalse(channel.isWritable());
+		assertFalse(channel.config().isAutoRead());
+
+		channel.flush();
+		assertTrue(channel.isWritable());
+		assertTrue(channel.config().isAutoRead());
+		channel.finishAndReleaseAll();
+	}
+
+	@Test
+	public void shouldPausePeer() throws Exception {
+		final EmbeddedChannel channel = channel();
+		channel.pipeline().addFirst(new NoFlushHandler());
+		final EmbeddedChannel peer = channel();
+		Backpressure.link(channel, peer);
+
+		fill(channel);
+		channel.flush();
+		assertFalse(channel.isWritable());
+		assertTrue(channel.config().isAutoRead());
+		assertFalse(peer.config().isAutoRead());
+
+		// Closing resumes the peer
+		channel.close();
+		assertTrue(peer.config().isAutoRead());
+		channel.finishAndReleaseAll();
+		peer.finishAndReleaseAll();
+	}
+
+	@Test
+	public void shouldNotStartReadingBeforeAssembly() throws Exception {
+		final EmbeddedChannel channel = channel();
+		channel.config().setAutoRead(false);
+
+		// Not writable, then writable, before the pipeline is assembled
+		fill(channel);
+		assertFalse(channel.isWritable());
+		channel.flush();
+		assertTrue(channel.isWritable());
+		assertFalse(channel.config().isAutoRead());
+
+		// Assembled whilst not writable
+		fill(channel);
+		BackpressureHandler.startReading(channel);
+		assertFalse(channel.config().isAutoRead());
+		channel.flush();
+		assertTrue(channel.config().isAutoRead());
+		channel.finishAndReleaseAll();
+	}
+
+	@Test
+	public void shouldNotResumeReadingStoppedElsewhere() throws Exception {
+		final EmbeddedChannel channel = channel();
+		channel.config().setAutoRead(false);
+		channel.pipeline().fireChannelWritabilityChanged();
+		assertFalse(channel.config().isAutoRead());
+		channel.finishAndReleaseAll();
+	}
+}
@@ -0,0 +1,82 @@
+package io.blesmol.netty.provider;
+
+import static io.blesmol.netty.provider.Configs.config;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.blesmol.netty.api.NettyApi;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+public class BootstrapProviderTest {
+
+	@Test
+	public void shouldCloneOnInboundEventLoop() throws Exception {
+		final NioEventLoopGroup group = new NioEventLoopGroup(1);
+		try {
+			final EventLoop loop = group.next();
+			assertEquals(Transport.NIO, Transport.of(loop));
+
+			final BootstrapProvider bootstrap = new BootstrapProvider();
+			bootstrap.setEventLoopGroup(group);
+			final Bootstrap clone = bootstrap.clone(loop);
+			assertSame(loop, clone.config().group());
+			assertSame(group, bootstrap.config().group());
+		} finally {
+			group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+		}
+	}
+
+	@Test
+	public void shouldUseAllocatorBoundAfterActivation() throws Exception {
+		final NioEventLoopGroup group = new NioEventLoopGroup(1);
+		try {
+			final BootstrapProvider bootstrap = new BootstrapProvider();
+			bootstrap.setEventLoopGroup(group);
+			bootstrap.setChannelInitializer(new ChannelInitializer<Channel>() {
+				@Override
+				protected void initChannel(Channel ch) throws Exception {
+				}
+			});
+			bootstrap.activate(config(NettyApi.Bootstrap.class, new HashMap<>()));
+
+			final ByteBufAllocator allocator = new UnpooledByteBufAllocator(false);
+			bootstrap.setByteBufAllocator(allocator);
+			final Channel channel = bootstrap.register().sync().channel();
+			assertSame(allocator, channel.config().getAllocator());
+			channel.close().sync();
+
+			bootstrap.unsetByteBufAllocator(allocator);
+			final Channel next = bootstrap.register().sync().channel();
+			assertNotSame(allocator, next.config().getAllocator());
+			next.close().sync();
+		} finally {
+			group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+		}
+	}
+
+	@Test
+	public void shouldFindOpenChannels() throws Exception {
+		final EmbeddedChannel channel = new EmbeddedChannel();
+		Channels.add(channel);
+		final String channelId = channel.id().asLongText();
+		assertSame(channel, Channels.get(channelId));
+
+		channel.close();
+		assertNull(Channels.get(channelId));
+		channel.finishAndReleaseAll();
+	}
+}
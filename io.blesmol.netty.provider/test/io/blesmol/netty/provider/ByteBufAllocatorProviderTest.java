@@ -0,0 +1,44 @@
+package io.blesmol.netty.provider;
+
+import static io.blesmol.netty.provider.Configs.config;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.blesmol.netty.api.NettyApi;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+
+public class ByteBufAllocatorProviderTest {
+
+	@Test
+	public void shouldConfigureAndExportMetrics() throws Exception {
+		final Map<String, Object> properties = new HashMap<>();
+		properties.put(NettyApi.ByteBufAllocator.APP_NAME, "shouldConfigureAndExportMetrics");
+		properties.put(NettyApi.ByteBufAllocator.HEAP_ARENAS, 2);
+		properties.put(NettyApi.ByteBufAllocator.DIRECT_ARENAS, 1);
+		properties.put(NettyApi.ByteBufAllocator.MAX_ORDER, 9);
+		properties.put(NettyApi.ByteBufAllocator.PREFER_DIRECT, false);
+		final ByteBufAllocatorProvider allocator = new ByteBufAllocatorProvider();
+		allocator.activate(config(NettyApi.ByteBufAllocator.class, properties));
+
+		assertEquals(2, allocator.metric().numHeapArenas());
+		assertEquals(1, allocator.metric().numDirectArenas());
+		assertEquals(PooledByteBufAllocator.defaultPageSize() << 9, allocator.metric().chunkSize());
+		assertSame(allocator.metric(), Metrics.allocators.get("shouldConfigureAndExportMetrics"));
+
+		final ByteBuf buf = allocator.buffer(1024);
+		assertFalse(buf.isDirect());
+		assertTrue(allocator.metric().usedHeapMemory() > 0);
+		buf.release();
+
+		allocator.deactivate();
+		assertFalse(Metrics.allocators.containsKey("shouldConfigureAndExportMetrics"));
+	}
+}
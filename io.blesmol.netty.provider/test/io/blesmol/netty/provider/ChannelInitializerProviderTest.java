@@ -0,0 +1,184 @@
+package io.blesmol.netty.provider;
+
+import static io.blesmol.netty.provider.Configs.config;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.util.promise.Promise;
+
+import io.blesmol.netty.api.ConfigurationUtil;
+import io.blesmol.netty.api.DynamicChannelHandler;
+import io.blesmol.netty.api.DynamicChannelHandlerPool;
+import io.blesmol.netty.api.NettyApi;
+import io.blesmol.netty.api.Property;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutor;
+
+public class ChannelInitializerProviderTest {
+
+	private static class TestHandler extends ChannelHandlerAdapter {
+	}
+
+	// Records the executor reading a message
+	private static class ReadHandler extends ChannelInboundHandlerAdapter implements DynamicChannelHandler {
+		final CountDownLatch read = new CountDownLatch(1);
+		volatile EventExecutor executor;
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+			executor = ctx.executor();
+			read.countDown();
+			ctx.fireChannelRead(msg);
+		}
+
+		@Override
+		@Deprecated
+		public Promise<Future<?>> handlersConfigured() {
+			return null;
+		}
+	}
+
+	private static Map<String, Object> properties() {
+		final Map<String, Object> properties = new HashMap<>();
+		properties.put(NettyApi.ChannelInitializer.APP_NAME, "test");
+		properties.put(NettyApi.ChannelInitializer.INET_HOST, "127.0.0.1");
+		properties.put(NettyApi.ChannelInitializer.INET_PORT, 0);
+		return properties;
+	}
+
+	private static ChannelInitializerProvider initializer(boolean eventLoopDynamicHandlers) {
+		final Map<String, Object> properties = properties();
+		properties.put(NettyApi.ChannelInitializer.EVENT_LOOP_DYNAMIC_HANDLERS, eventLoopDynamicHandlers);
+		return initializer(null, properties);
+	}
+
+	// Initializes channels without creating dynamic handler configurations
+	private static ChannelInitializerProvider initializer(BundleContext context, Map<String, Object> properties) {
+		final ChannelInitializerProvider initializer = new ChannelInitializerProvider();
+		initializer.executorService = (ExecutorService) Proxy.newProxyInstance(
+				ExecutorService.class.getClassLoader(), new Class<?>[] { ExecutorService.class },
+				(proxy, method, args) -> null);
+		initializer.configUtil = (ConfigurationUtil) Proxy.newProxyInstance(
+				ConfigurationUtil.class.getClassLoader(), new Class<?>[] { ConfigurationUtil.class },
+				(proxy, method, args) -> Optional.empty());
+		initializer.activate(context, config(NettyApi.ChannelInitializer.class, properties), properties);
+		return initializer;
+	}
+
+	// The dynamic handler, then a user handler as assembly adds it
+	private static ReadHandler[] read(ChannelInitializerProvider initializer, EmbeddedChannel channel)
+			throws Exception {
+		final ReadHandler dynamicHandler = new ReadHandler();
+		final ReadHandler userHandler = new ReadHandler();
+		initializer.initChannel(channel);
+		initializer.setDynamicChannelHandler(dynamicHandler,
+				Collections.singletonMap(Property.DynamicChannelHandler.CHANNEL_ID, channel.id().asLongText()));
+		channel.pipeline().addAfter(channel.eventLoop(), DynamicChannelHandler.HANDLER_NAME, "user", userHandler);
+
+		channel.pipeline().fireChannelRead("message");
+		assertTrue(dynamicHandler.read.await(5, TimeUnit.SECONDS));
+		assertTrue(userHandler.read.await(5, TimeUnit.SECONDS));
+		return new ReadHandler[] { dynamicHandler, userHandler };
+	}
+
+	@Test
+	public void shouldRegisterPoolOnlyWhenPooled() throws Exception {
+		final List<Dictionary<?, ?>> registered = new ArrayList<>();
+		final BundleContext context = (BundleContext) Proxy.newProxyInstance(BundleContext.class.getClassLoader(),
+				new Class<?>[] { BundleContext.class }, (proxy, method, args) -> {
+					if (method.getName().equals("registerService")) {
+						assertEquals(DynamicChannelHandlerPool.class, args[0]);
+						registered.add((Dictionary<?, ?>) args[2]);
+					}
+					return null;
+				});
+
+		initializer(context, properties()).deactivate();
+		assertTrue(registered.isEmpty());
+
+		final Map<String, Object> properties = properties();
+		properties.put(NettyApi.ChannelInitializer.POOLED_DYNAMIC_HANDLERS, true);
+		initializer(context, properties);
+		assertEquals(1, registered.size());
+		assertEquals("test", registered.get(0).get(NettyApi.ChannelInitializer.APP_NAME));
+	}
+
+	@Test
+	public void shouldRunDynamicHandlersOnEventLoop() throws Exception {
+		final ChannelInitializerProvider initializer = initializer(true);
+		initializer.eventExecutorGroup = new DefaultEventExecutorGroup(1);
+		final EmbeddedChannel channel = new EmbeddedChannel();
+		try {
+			final ReadHandler[] handlers = read(initializer, channel);
+			assertSame(channel.eventLoop(), handlers[0].executor);
+			assertSame(channel.eventLoop(), handlers[1].executor);
+		} finally {
+			channel.finishAndReleaseAll();
+			initializer.eventExecutorGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+		}
+	}
+
+	@Test
+	public void shouldRunDynamicHandlersOnEventExecutorGroup() throws Exception {
+		final ChannelInitializerProvider initializer = initializer(false);
+		initializer.eventExecutorGroup = new DefaultEventExecutorGroup(1);
+		final EmbeddedChannel channel = new EmbeddedChannel();
+		try {
+			final ReadHandler[] handlers = read(initializer, channel);
+			assertSame(initializer.eventExecutorGroup, handlers[0].executor.parent());
+			// User handlers stay on the channel's event loop
+			assertSame(channel.eventLoop(), handlers[1].executor);
+		} finally {
+			channel.finishAndReleaseAll();
+			initializer.eventExecutorGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+		}
+	}
+
+	@Test
+	public void shouldAddDynamicHandlerAfterPrefix() throws Exception {
+		final EmbeddedChannel channel = new EmbeddedChannel();
+		channel.pipeline().addFirst(BackpressureHandler.HANDLER_NAME, BackpressureHandler.INSTANCE);
+		channel.pipeline().addFirst(ChannelInitializerProvider.FLUSH_CONSOLIDATION_HANDLER_NAME,
+				new FlushConsolidationHandler());
+		channel.pipeline().addFirst(ByteMetricsHandler.HANDLER_NAME, new ByteMetricsHandler(Metrics.app("test")));
+
+		ChannelInitializerProvider.addAfterPrefix(channel.pipeline(), null, DynamicChannelHandler.HANDLER_NAME,
+				new TestHandler());
+		assertEquals(
+				Arrays.asList(ByteMetricsHandler.HANDLER_NAME, ChannelInitializerProvider.FLUSH_CONSOLIDATION_HANDLER_NAME,
+						BackpressureHandler.HANDLER_NAME, DynamicChannelHandler.HANDLER_NAME),
+				channel.pipeline().names().subList(0, 4));
+		channel.finishAndReleaseAll();
+	}
+
+	@Test
+	public void shouldAddDynamicHandlerFirstWithoutPrefix() throws Exception {
+		final EmbeddedChannel channel = new EmbeddedChannel(new TestHandler());
+		ChannelInitializerProvider.addAfterPrefix(channel.pipeline(), null, DynamicChannelHandler.HANDLER_NAME,
+				new TestHandler());
+		assertEquals(DynamicChannelHandler.HANDLER_NAME, channel.pipeline().names().get(0));
+		channel.finishAndReleaseAll();
+	}
+}
@@ -0,0 +1,62 @@
+package io.blesmol.netty.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.WriteBufferWaterMark;
+
+public class ChannelOptionParserTest {
+
+	@Test
+	public void shouldParseOptions() throws Exception {
+		Map<ChannelOption<Object>, Object> options = ChannelOptionParser.parse(new String[] { "TCP_NODELAY=true",
+				"SO_RCVBUF=65536", "WRITE_BUFFER_WATER_MARK=8192,32768", "RCVBUF_ALLOCATOR=fixed:2048",
+				"ALLOCATOR=unpooled:heap", "CONNECT_TIMEOUT_MILLIS=500" });
+
+		assertEquals(true, options.get(ChannelOption.TCP_NODELAY));
+		assertEquals(65536, options.get(ChannelOption.SO_RCVBUF));
+		WriteBufferWaterMark waterMark = (WriteBufferWaterMark) options.get(ChannelOption.WRITE_BUFFER_WATER_MARK);
+		assertEquals(8192, waterMark.low());
+		assertEquals(32768, waterMark.high());
+		assertTrue(options.get(ChannelOption.RCVBUF_ALLOCATOR) instanceof FixedRecvByteBufAllocator);
+		UnpooledByteBufAllocator allocator = (UnpooledByteBufAllocator) options.get(ChannelOption.ALLOCATOR);
+		assertTrue(!allocator.isDirectBufferPooled());
+		assertTrue(!allocator.buffer().isDirect());
+		assertEquals(500, options.get(ChannelOption.CONNECT_TIMEOUT_MILLIS));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldFailOnUnknownOption() throws Exception {
+		ChannelOptionParser.parse(new String[] { "TCP_NO_DELAY=true" });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldFailOnInvalidValue() throws Exception {
+		ChannelOptionParser.parse(new String[] { "WRITE_BUFFER_WATER_MARK=32768,8192" });
+	}
+
+	@Test
+	public void shouldParseOtherOptionsAsTheirDeclaredType() throws Exception {
+		Map<ChannelOption<Object>, Object> options = ChannelOptionParser
+				.parse(new String[] { "WRITE_SPIN_COUNT=8", "ALLOW_HALF_CLOSURE=true" });
+		assertEquals(8, options.get(ChannelOption.WRITE_SPIN_COUNT));
+		assertEquals(Boolean.TRUE, options.get(ChannelOption.ALLOW_HALF_CLOSURE));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldFailOnWronglyTypedValue() throws Exception {
+		ChannelOptionParser.parse(new String[] { "WRITE_SPIN_COUNT=true" });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldFailOnUnsupportedType() throws Exception {
+		ChannelOptionParser.parse(new String[] { "MESSAGE_SIZE_ESTIMATOR=1" });
+	}
+}
@@ -0,0 +1,19 @@
+package io.blesmol.netty.provider;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+/*
+ * Component property types for tests
+ */
+final class Configs {
+
+	private Configs() {
+	}
+
+	// Annotation defaults, overridden by the given properties
+	static <A> A config(Class<A> type, Map<String, Object> properties) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				(proxy, method, args) -> properties.getOrDefault(method.getName(), method.getDefaultValue())));
+	}
+}
@@ -0,0 +1,133 @@
+package io.blesmol.netty.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.Test;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
+
+import io.blesmol.netty.api.NettyApi;
+
+public class ConfigurationIndexTest {
+
+	private static final String FACTORY_PID = "factoryPid";
+
+	private final List<String> filters = new ArrayList<>();
+
+	private final List<Configuration> stored = new ArrayList<>();
+
+	// Lists every stored configuration, recording the filter
+	private final ConfigurationAdmin admin = (ConfigurationAdmin) Proxy.newProxyInstance(
+			ConfigurationAdmin.class.getClassLoader(), new Class<?>[] { ConfigurationAdmin.class },
+			(proxy, method, args) -> {
+				if (method.getName().equals("listConfigurations")) {
+					filters.add((String) args[0]);
+					return stored.isEmpty() ? null : stored.toArray(new Configuration[0]);
+				}
+				throw new UnsupportedOperationException(method.getName());
+			});
+
+	private final ConfigurationIndex index = new ConfigurationIndex(admin, Function.identity());
+
+	private static Configuration configuration(String pid, Dictionary<String, Object> properties) {
+		return (Configuration) Proxy.newProxyInstance(Configuration.class.getClassLoader(),
+				new Class<?>[] { Configuration.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+					case "getPid":
+						return pid;
+					case "getFactoryPid":
+						return FACTORY_PID;
+					case "getProperties":
+						return properties;
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ConfigurationEvent event(int type) {
+		final ServiceReference<ConfigurationAdmin> reference = (ServiceReference<ConfigurationAdmin>) Proxy
+				.newProxyInstance(ServiceReference.class.getClassLoader(), new Class<?>[] { ServiceReference.class },
+						(proxy, method, args) -> null);
+		return new ConfigurationEvent(reference, type, FACTORY_PID, "pid1");
+	}
+
+	private static Hashtable<String, Object> properties(String appName, String channelId) {
+		final Hashtable<String, Object> properties = new Hashtable<>();
+		properties.put(ConfigurationAdmin.SERVICE_FACTORYPID, FACTORY_PID);
+		properties.put(NettyApi.APP_NAME, appName);
+		properties.put(NettyApi.INET_PORT, 8080);
+		properties.put(NettyApi.CHANNEL_ID, channelId);
+		properties.put("names", new String[] { "a", "b" });
+		return properties;
+	}
+
+	private static Map<String, Object> lookup(String appName, String channelId) {
+		final Map<String, Object> lookup = new HashMap<>();
+		lookup.put(NettyApi.APP_NAME, appName);
+		if (channelId != null) {
+			lookup.put(NettyApi.CHANNEL_ID, channelId);
+		}
+		return lookup;
+	}
+
+	@Test
+	public void shouldListFactoryPidOnce() throws Exception {
+		stored.add(configuration("pid1", properties("app", "1")));
+		stored.add(configuration("pid2", properties("app", "2")));
+
+		assertEquals(1, index.get(FACTORY_PID, lookup("app", "1")).size());
+		assertEquals(2, index.get(FACTORY_PID, lookup("app", null)).size());
+		assertEquals(0, index.get(FACTORY_PID, lookup("other", null)).size());
+		assertEquals(1, filters.size());
+	}
+
+	@Test
+	public void shouldMatchLikeFilters() throws Exception {
+		index.get(FACTORY_PID, lookup("app", null));
+		index.put(configuration("pid1", properties("app", "1")));
+
+		final Map<String, Object> lookup = lookup("app", "1");
+		lookup.put(NettyApi.INET_PORT, "8080");
+		lookup.put("names", new String[] { "b" });
+		lookup.put("ignored.target", "(x=y)");
+		assertEquals(1, index.get(FACTORY_PID, lookup).size());
+
+		lookup.put("names", new String[] { "b", "c" });
+		assertTrue(index.get(FACTORY_PID, lookup).isEmpty());
+	}
+
+	@Test
+	public void shouldFollowEvents() throws Exception {
+		index.get(FACTORY_PID, lookup("app", null));
+		final Hashtable<String, Object> properties = properties("app", "1");
+		stored.add(configuration("pid1", properties));
+
+		// Created elsewhere
+		index.configurationEvent(event(ConfigurationEvent.CM_UPDATED));
+		assertEquals(1, index.get(FACTORY_PID, lookup("app", "1")).size());
+
+		properties.put(NettyApi.APP_NAME, "renamed");
+		index.configurationEvent(event(ConfigurationEvent.CM_UPDATED));
+		assertTrue(index.get(FACTORY_PID, lookup("app", "1")).isEmpty());
+		assertEquals(1, index.get(FACTORY_PID, lookup("renamed", "1")).size());
+
+		index.configurationEvent(event(ConfigurationEvent.CM_DELETED));
+		assertTrue(index.get(FACTORY_PID, lookup("renamed", "1")).isEmpty());
+		assertNull(index.get("pid1"));
+	}
+}
@@ -1,6 +1,9 @@
 package io.blesmol.netty.provider;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -9,6 +12,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.junit.Test;
+import org.osgi.framework.Filter;
 import org.osgi.framework.FrameworkUtil;
 
 public class ConfigurationUtilTest {
@@ -74,5 +78,43 @@ public class ConfigurationUtilTest {
 		assertEquals(expected, actual);
 
 	}
-	
+
+	@Test
+	public void shouldEscapeUtf8() throws Exception {
+		final TestConfigurationUtilImpl testConfigUtil = new TestConfigurationUtilImpl();
+		final String plain = "io.blesmol.netty";
+		assertSame(plain, testConfigUtil.ldapSearchEscape(plain));
+		assertEquals("a\\c3\\a9\\28\\2a\\5c\\00", testConfigUtil.ldapSearchEscape("a\u00e9(*\\\0"));
+	}
+
+	@Test
+	public void shouldCacheFilters() throws Exception {
+		final TestConfigurationUtilImpl testConfigUtil = new TestConfigurationUtilImpl();
+		final Map<String, Object> map = new HashMap<>();
+		map.put("appName", "app");
+		map.put("names", new String[] { "a", "b" });
+		map.put("foo.target", "(a=b)");
+
+		final Filter filter = testConfigUtil.createFilter("a", "b", map);
+		assertEquals(FrameworkUtil.createFilter(testConfigUtil.createFilterFromMap("a", "b", map)), filter);
+
+		// Equal arrays and ignored targets result in the same filter
+		final Map<String, Object> other = new HashMap<>();
+		other.put("appName", "app");
+		other.put("names", new String[] { "a", "b" });
+		assertSame(filter, testConfigUtil.createFilter("a", "b", other));
+
+		other.put("names", new String[] { "a" });
+		assertNotSame(filter, testConfigUtil.createFilter("a", "b", other));
+	}
+
+	@Test
+	public void shouldTargetChannel() throws Exception {
+		final TestConfigurationUtilImpl testConfigUtil = new TestConfigurationUtilImpl();
+		final Filter target = FrameworkUtil.createFilter(testConfigUtil.channelTarget("app", "localhost", 8080, "id"));
+		assertTrue(target.match(testConfigUtil.channelProperties("app", "localhost", 8080, "id")));
+		assertFalse(target.match(testConfigUtil.channelProperties("app", "localhost", 8080, "other")));
+		assertFalse(target.match(testConfigUtil.channelProperties("other", "localhost", 8080, "id")));
+	}
+
 }
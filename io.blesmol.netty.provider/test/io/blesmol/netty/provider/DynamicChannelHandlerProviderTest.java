@@ -0,0 +1,199 @@
+package io.blesmol.netty.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+import org.osgi.util.promise.Promises;
+
+import io.blesmol.netty.api.DynamicChannelHandler;
+import io.blesmol.netty.api.DynamicHandlerEvents;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class DynamicChannelHandlerProviderTest {
+
+	private static class RecordingHandler extends ChannelInboundHandlerAdapter {
+		final List<Object> events = new CopyOnWriteArrayList<>();
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+			events.add(msg);
+		}
+
+		@Override
+		public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+			events.add("readComplete");
+		}
+
+		@Override
+		public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+			events.add(evt);
+		}
+	}
+
+	@ChannelHandler.Sharable
+	private static class SharableHandler extends ChannelInboundHandlerAdapter {
+	}
+
+	private final HandlerTable table = new HandlerTable();
+
+	// A channel with the dynamic handler's name first, as the anchor of edits
+	private static EmbeddedChannel channel() {
+		final EmbeddedChannel ch = new EmbeddedChannel();
+		ch.pipeline().addLast(DynamicChannelHandler.HANDLER_NAME, new SharableHandler());
+		return ch;
+	}
+
+	// The edits to the given names, with new, not sharable, handlers for new
+	// slots, and the slots retired
+	private List<PipelineDiff.Edit> update(List<HandlerTable.Slot> retired, String... handlerNames) {
+		final String[] pids = new String[handlerNames.length];
+		Arrays.fill(pids, "pid");
+		final HandlerTable.Slot[] prior = table.slots();
+		retired.addAll(table.update(handlerNames, pids));
+		final List<PipelineDiff.Edit> edits = PipelineDiff.renewUnsharable(table,
+				PipelineDiff.diff(prior, table.slots()), retired);
+		for (HandlerTable.Slot slot : table.slots()) {
+			if (slot.handler == null) {
+				slot.handler = new ChannelInboundHandlerAdapter();
+			}
+		}
+		return edits;
+	}
+
+	private static List<String> names(EmbeddedChannel ch) {
+		final List<String> names = new ArrayList<>(ch.pipeline().names());
+		names.remove(DynamicChannelHandler.HANDLER_NAME);
+		names.removeIf(it -> it.startsWith("DefaultChannelPipeline$TailContext"));
+		return names;
+	}
+
+	@Test
+	public void shouldReorderHandlersThatAreNotSharable() throws Exception {
+		final EmbeddedChannel ch = channel();
+		final List<HandlerTable.Slot> retired = new ArrayList<>();
+		DynamicChannelHandlerProvider.edit(ch.pipeline(), ch.eventLoop(), update(retired, "a", "b", "c"));
+		assertEquals(Arrays.asList("a", "b", "c"), names(ch));
+		final HandlerTable.Slot moved = table.get("c", "pid");
+		final ChannelHandler a = ch.pipeline().get("a");
+
+		// Moving c replaces it with a new instance, from a renewed slot
+		final List<PipelineDiff.Edit> edits = update(retired, "c", "a", "b");
+		assertEquals(1, edits.size());
+		assertEquals(PipelineDiff.Op.REPLACE, edits.get(0).op);
+		assertSame(moved, edits.get(0).replaced);
+		assertEquals(Arrays.asList(moved), retired);
+		DynamicChannelHandlerProvider.edit(ch.pipeline(), ch.eventLoop(), edits);
+
+		assertEquals(Arrays.asList("c", "a", "b"), names(ch));
+		assertNotSame(moved.handler, ch.pipeline().get("c"));
+		assertSame(table.get("c", "pid").handler, ch.pipeline().get("c"));
+		assertSame(a, ch.pipeline().get("a"));
+		ch.finishAndReleaseAll();
+	}
+
+	@Test
+	public void shouldApplyNoEditsWhenOneIsInvalid() throws Exception {
+		final EmbeddedChannel ch = channel();
+		final List<HandlerTable.Slot> retired = new ArrayList<>();
+		DynamicChannelHandlerProvider.edit(ch.pipeline(), ch.eventLoop(), update(retired, "a", "b"));
+
+		// Not renewed, so the move is rejected before b is removed
+		final List<PipelineDiff.Edit> edits = PipelineDiff.diff(table.slots(), new HandlerTable.Slot[] {
+				table.get("b", "pid"), table.get("a", "pid") });
+		try {
+			DynamicChannelHandlerProvider.edit(ch.pipeline(), ch.eventLoop(), edits);
+			fail();
+		} catch (IllegalStateException e) {
+		}
+		assertEquals(Arrays.asList("a", "b"), names(ch));
+		ch.finishAndReleaseAll();
+	}
+
+	@Test
+	public void shouldRollBackWhenAnEditFails() throws Exception {
+		final EmbeddedChannel ch = channel();
+		final List<HandlerTable.Slot> retired = new ArrayList<>();
+		DynamicChannelHandlerProvider.edit(ch.pipeline(), ch.eventLoop(), update(retired, "a", "b"));
+		final ChannelHandler b = new SharableHandler();
+		table.get("b", "pid").handler = b;
+		ch.pipeline().replace("b", "b", b);
+
+		// b is removed, then x fails to add, since it's already in another pipeline
+		final List<PipelineDiff.Edit> edits = update(retired, "a", "x");
+		final ChannelHandler x = new ChannelInboundHandlerAdapter();
+		new EmbeddedChannel(x).finishAndReleaseAll();
+		table.get("x", "pid").handler = x;
+		try {
+			DynamicChannelHandlerProvider.edit(ch.pipeline(), ch.eventLoop(), edits);
+			fail();
+		} catch (RuntimeException e) {
+		}
+		assertEquals(Arrays.asList("a", "b"), names(ch));
+		assertSame(b, ch.pipeline().get("b"));
+		assertTrue(ch.isOpen());
+		ch.finishAndReleaseAll();
+	}
+
+	@Test
+	public void shouldQueueEventsUntilAssembled() throws Exception {
+		final DynamicChannelHandlerProvider handler = new DynamicChannelHandlerProvider();
+		final RecordingHandler recorder = new RecordingHandler();
+		final EmbeddedChannel ch = new EmbeddedChannel();
+		ch.pipeline().addLast(DynamicChannelHandler.HANDLER_NAME, handler);
+		ch.pipeline().addLast(recorder);
+
+		ch.pipeline().fireChannelRead("a");
+		ch.pipeline().fireUserEventTriggered("event");
+		ch.pipeline().fireChannelRead("b");
+		ch.pipeline().fireChannelReadComplete();
+		assertEquals(0, recorder.events.size());
+
+		// The outbound dynamic handler signals the pipeline is assembled
+		ch.pipeline().fireUserEventTriggered(Promises.resolved(DynamicHandlerEvents.LAST_HANDLER_ADDED));
+		assertEquals(4, recorder.events.size());
+		assertEquals("a", recorder.events.get(0));
+		assertEquals("event", recorder.events.get(1));
+		assertEquals("b", recorder.events.get(2));
+		assertEquals("readComplete", recorder.events.get(3));
+
+		// Then passes straight through
+		ch.pipeline().fireChannelRead("c");
+		assertEquals("c", recorder.events.get(4));
+
+		// Later assembly signals are not passed on
+		ch.pipeline().fireUserEventTriggered(Promises.resolved(DynamicHandlerEvents.LAST_HANDLER_ADDED));
+		assertEquals(5, recorder.events.size());
+	}
+
+	@Test
+	public void shouldCloseWhenPendingEventsOverflow() throws Exception {
+		final DynamicChannelHandlerProvider handler = new DynamicChannelHandlerProvider() {
+			@Override
+			void close() {
+				// Not opened
+			}
+		};
+		final EmbeddedChannel ch = new EmbeddedChannel();
+		ch.pipeline().addLast(DynamicChannelHandler.HANDLER_NAME, handler);
+
+		for (int i = 0; i <= 1024; i++) {
+			ch.pipeline().fireChannelRead(i);
+		}
+		assertFalse(ch.isOpen());
+		assertNull(ch.readInbound());
+	}
+}
@@ -0,0 +1,55 @@
+package io.blesmol.netty.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.blesmol.netty.api.NettyMetrics;
+import io.netty.channel.DefaultEventLoopGroup;
+
+public class EventLoopWatchdogTest {
+
+	@Test
+	public void shouldRecordDelaysAndStalls() throws Exception {
+		final DefaultEventLoopGroup group = new DefaultEventLoopGroup(1);
+		final EventLoopWatchdog watchdog = new EventLoopWatchdog("app:group", group, 5, 50);
+		try {
+			// Probes run right away on an idle loop
+			watchdog.tick();
+			group.submit(() -> null).sync();
+			assertEquals(1, watchdog.delays.count());
+
+			// Block the loop past the threshold
+			final CountDownLatch blocked = new CountDownLatch(1);
+			final CountDownLatch release = new CountDownLatch(1);
+			group.execute(() -> {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			assertTrue(blocked.await(10, TimeUnit.SECONDS));
+			watchdog.tick();
+			Thread.sleep(100);
+			watchdog.tick();
+			watchdog.tick();
+			release.countDown();
+			group.submit(() -> null).sync();
+
+			final NettyMetrics.EventLoopDelay delay = watchdog.snapshot();
+			assertEquals("app:group", delay.group());
+			assertEquals(2, delay.count());
+			assertEquals(1, delay.stalls());
+			assertTrue(delay.maxNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+		} finally {
+			watchdog.stop();
+			group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+		}
+	}
+}
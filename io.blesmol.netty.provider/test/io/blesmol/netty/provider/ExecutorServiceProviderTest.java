@@ -0,0 +1,146 @@
+package io.blesmol.netty.provider;
+
+import static io.blesmol.netty.provider.Configs.config;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.osgi.util.promise.Deferred;
+
+import io.blesmol.netty.api.NettyApi;
+
+public class ExecutorServiceProviderTest {
+
+	private final ExecutorServiceProvider executor = new ExecutorServiceProvider();
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@After
+	public void after() {
+		release.countDown();
+		executor.deactivate();
+	}
+
+	// Occupies a thread until the test ends
+	private void block() throws InterruptedException {
+		final CountDownLatch running = new CountDownLatch(1);
+		executor.execute(() -> {
+			running.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		assertTrue(running.await(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void shouldRecordStatistics() throws Exception {
+		final Map<String, Object> properties = new HashMap<>();
+		properties.put(NettyApi.Executor.THREAD_NAME_PREFIX, "test");
+		executor.activate(config(NettyApi.Executor.class, properties));
+
+		final Future<String> name = executor.submit(() -> Thread.currentThread().getName());
+		assertEquals("test-1", name.get(10, TimeUnit.SECONDS));
+
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(1, executor.completedTasks());
+		assertEquals(0, executor.activeCount());
+		assertEquals(0, executor.queueDepth());
+		assertTrue(executor.maxQueueNanos() <= executor.queueNanos());
+	}
+
+	@Test
+	public void shouldRejectWhenQueueIsFull() throws Exception {
+		final Map<String, Object> properties = new HashMap<>();
+		properties.put(NettyApi.Executor.CORE_SIZE, 1);
+		properties.put(NettyApi.Executor.MAX_SIZE, 1);
+		properties.put(NettyApi.Executor.QUEUE_SIZE, 1);
+		properties.put(NettyApi.Executor.REJECTION_POLICY, NettyApi.Executor.REJECTION_POLICY_ABORT);
+		executor.activate(config(NettyApi.Executor.class, properties));
+
+		final CountDownLatch running = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		executor.execute(() -> {
+			running.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		assertTrue(running.await(10, TimeUnit.SECONDS));
+		assertEquals(1, executor.activeCount());
+
+		// Queued, then rejected
+		executor.execute(() -> {
+		});
+		assertEquals(1, executor.queueDepth());
+		try {
+			executor.execute(() -> {
+			});
+			fail("Expected the task to be rejected");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+		assertEquals(1, executor.rejectedTasks());
+		release.countDown();
+	}
+
+	@Test
+	public void shouldFailDeferredOfDiscardedTasks() throws Exception {
+		final Map<String, Object> properties = new HashMap<>();
+		properties.put(NettyApi.Executor.CORE_SIZE, 1);
+		properties.put(NettyApi.Executor.MAX_SIZE, 1);
+		properties.put(NettyApi.Executor.QUEUE_SIZE, 1);
+		properties.put(NettyApi.Executor.REJECTION_POLICY, NettyApi.Executor.REJECTION_POLICY_DISCARD_OLDEST);
+		executor.activate(config(NettyApi.Executor.class, properties));
+		block();
+
+		// The queued task is discarded for the next one
+		final Deferred<Void> oldest = new Deferred<>();
+		DeferredTask.execute(executor, oldest, () -> oldest.resolve(null));
+		final Deferred<Void> newest = new Deferred<>();
+		DeferredTask.execute(executor, newest, () -> newest.resolve(null));
+
+		assertTrue(oldest.getPromise().getFailure() instanceof RejectedExecutionException);
+		release.countDown();
+		assertEquals(null, newest.getPromise().getValue());
+		assertEquals(1, executor.rejectedTasks());
+	}
+
+	@Test
+	public void shouldReplaceExecutorWhenQueueSizeChanges() throws Exception {
+		final Map<String, Object> properties = new HashMap<>();
+		properties.put(NettyApi.Executor.CORE_SIZE, 1);
+		properties.put(NettyApi.Executor.MAX_SIZE, 1);
+		properties.put(NettyApi.Executor.QUEUE_SIZE, 1);
+		executor.activate(config(NettyApi.Executor.class, new HashMap<>(properties)));
+
+		properties.put(NettyApi.Executor.QUEUE_SIZE, 2);
+		executor.modified(config(NettyApi.Executor.class, properties));
+		block();
+		executor.execute(() -> {
+		});
+		executor.execute(() -> {
+		});
+		assertEquals(2, executor.queueDepth());
+
+		// Rejected by default, failing the task's deferred
+		final Deferred<Void> deferred = new Deferred<>();
+		DeferredTask.execute(executor, deferred, () -> deferred.resolve(null));
+		assertTrue(deferred.getPromise().getFailure() instanceof RejectedExecutionException);
+		assertEquals(1, executor.rejectedTasks());
+	}
+}
@@ -0,0 +1,76 @@
+package io.blesmol.netty.provider;
+
+import static io.blesmol.netty.provider.Configs.config;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.blesmol.netty.api.NettyApi;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.FileRegion;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class FileRegionHandlerProviderTest {
+
+	private static final int SIZE = 20000;
+
+	private File file;
+
+	@Before
+	public void before() throws Exception {
+		file = File.createTempFile("fileRegionHandler", ".bin");
+		Files.write(file.toPath(), new byte[SIZE]);
+	}
+
+	@After
+	public void after() {
+		file.delete();
+	}
+
+	@Test
+	public void shouldWriteFileRegion() throws Exception {
+		final FileRegionHandlerProvider handler = new FileRegionHandlerProvider();
+		handler.activate(config(NettyApi.FileRegionHandler.class, new HashMap<>()));
+		final EmbeddedChannel channel = new EmbeddedChannel(handler);
+
+		channel.writeAndFlush(file.toPath());
+		final Object msg = channel.readOutbound();
+		assertTrue(msg instanceof FileRegion);
+		assertEquals(SIZE, ((FileRegion) msg).count());
+		((FileRegion) msg).release();
+		assertNull(channel.readOutbound());
+		channel.finishAndReleaseAll();
+	}
+
+	@Test
+	public void shouldWriteChunksWithoutZeroCopy() throws Exception {
+		final Map<String, Object> properties = new HashMap<>();
+		properties.put(NettyApi.FileRegionHandler.ZERO_COPY, false);
+		properties.put(NettyApi.FileRegionHandler.CHUNK_SIZE, 4096);
+		final FileRegionHandlerProvider handler = new FileRegionHandlerProvider();
+		handler.activate(config(NettyApi.FileRegionHandler.class, properties));
+		final EmbeddedChannel channel = new EmbeddedChannel(handler);
+
+		channel.writeAndFlush(file);
+		int chunks = 0;
+		int bytes = 0;
+		ByteBuf chunk;
+		while ((chunk = channel.readOutbound()) != null) {
+			chunks++;
+			bytes += chunk.readableBytes();
+			chunk.release();
+		}
+		assertEquals(5, chunks);
+		assertEquals(SIZE, bytes);
+		channel.finishAndReleaseAll();
+	}
+}
@@ -0,0 +1,70 @@
+package io.blesmol.netty.provider;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class HandlerTableTest {
+
+	private final HandlerTable table = new HandlerTable();
+
+	@Test
+	public void shouldInternKeysWhileSlotsUseThem() {
+		final HandlerTable other = new HandlerTable();
+		table.update(new String[] { "a" }, new String[] { "internedPid" });
+		other.update(new String[] { "a" }, new String[] { "internedPid" });
+		final HandlerNameFactoryPid key = table.slots()[0].key;
+		assertSame(key, other.slots()[0].key);
+		assertSame(key, HandlerNameFactoryPid.of("a", "internedPid"));
+
+		// Looking keys up does not intern them
+		assertNotSame(HandlerNameFactoryPid.of("b", "internedPid"), HandlerNameFactoryPid.of("b", "internedPid"));
+
+		// Dropped with the last slot using it
+		table.update(new String[0], new String[0]);
+		assertSame(key, HandlerNameFactoryPid.of("a", "internedPid"));
+		other.clear();
+		assertNotSame(key, HandlerNameFactoryPid.of("a", "internedPid"));
+	}
+
+	@Test
+	public void shouldKeepSlotsInPipelineOrder() {
+		assertTrue(table.update(new String[] { "a", "b", "c" }, new String[] { "pid", "pid", "pid" }).isEmpty());
+		final HandlerTable.Slot[] slots = table.slots();
+		assertEquals(3, slots.length);
+		assertSame(slots[1], table.get("b", "pid"));
+
+		// Reordered and narrowed: kept slots carry over, dropped ones retire
+		final List<HandlerTable.Slot> retired = table.update(new String[] { "c", "a" }, new String[] { "pid", "pid" });
+		assertArrayEquals(new HandlerTable.Slot[] { slots[2], slots[0] }, table.slots());
+		assertEquals(1, retired.size());
+		assertSame(slots[1], retired.get(0));
+
+		// Findable until its handler is unset
+		assertSame(slots[1], table.get("b", "pid"));
+		table.unset(slots[1]);
+		assertNull(table.get("b", "pid"));
+
+		// Unsetting a current slot keeps it
+		table.unset(slots[0]);
+		assertSame(slots[0], table.get("a", "pid"));
+	}
+
+	@Test
+	public void shouldNotReviveRetiredSlots() {
+		table.update(new String[] { "a" }, new String[] { "pid" });
+		final HandlerTable.Slot slot = table.slots()[0];
+		table.update(new String[0], new String[0]);
+
+		table.update(new String[] { "a" }, new String[] { "pid" });
+		assertNotSame(slot, table.slots()[0]);
+		assertSame(table.slots()[0], table.get("a", "pid"));
+	}
+}
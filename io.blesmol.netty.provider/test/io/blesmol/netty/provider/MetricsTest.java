@@ -0,0 +1,46 @@
+package io.blesmol.netty.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import io.blesmol.netty.api.NettyMetrics;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class MetricsTest {
+
+	@Test
+	public void shouldCountChannelsAndBytes() throws Exception {
+		final String appName = MetricsTest.class.getName();
+		final NettyMetricsProvider provider = new NettyMetricsProvider();
+		assertFalse(provider.snapshot(appName).isPresent());
+
+		final Metrics.App metrics = Metrics.app(appName);
+		final EmbeddedChannel ch = new EmbeddedChannel(new ByteMetricsHandler(metrics));
+		metrics.channelInitialized(ch);
+		metrics.assembled(ch, System.nanoTime());
+
+		assertTrue(ch.writeInbound(Unpooled.wrappedBuffer(new byte[10])));
+		assertTrue(ch.writeOutbound(Unpooled.wrappedBuffer(new byte[3])));
+		ch.releaseInbound();
+		ch.releaseOutbound();
+
+		final NettyMetrics.Snapshot open = provider.snapshot(appName).get();
+		assertEquals(1, open.activeChannels());
+		assertEquals(1, open.totalChannels());
+		assertEquals(10, open.bytesRead());
+		assertEquals(3, open.bytesWritten());
+		assertEquals(1, open.assemblies());
+		assertTrue(open.maxAssemblyNanos() <= open.assemblyNanos());
+
+		ch.close();
+		final NettyMetrics.Snapshot closed = provider.snapshots().get(appName);
+		assertEquals(0, closed.activeChannels());
+		assertEquals(1, closed.totalChannels());
+		// Snapshots are copies
+		assertEquals(1, open.activeChannels());
+	}
+}
@@ -0,0 +1,130 @@
+package io.blesmol.netty.provider;
+
+import static io.blesmol.netty.provider.Configs.config;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.util.promise.Promise;
+
+import io.blesmol.netty.api.NettyApi;
+import io.blesmol.netty.api.NettyClientPool;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+public class NettyClientPoolProviderTest {
+
+	private static final String HOST = "127.0.0.1";
+
+	@ChannelHandler.Sharable
+	private static class NoopHandler extends ChannelInboundHandlerAdapter {
+	}
+
+	private final NioEventLoopGroup group = new NioEventLoopGroup(1);
+
+	private Channel server;
+	private int port;
+
+	private NettyClientPoolProvider pool(Map<String, Object> properties) {
+		properties.put(NettyApi.NettyClientPool.APP_NAME, "test");
+		final NettyClientPoolProvider pool = new NettyClientPoolProvider();
+		pool.bootstrap = new Bootstrap().group(group).channel(NioSocketChannel.class).handler(new NoopHandler());
+		pool.activate(config(NettyApi.NettyClientPool.class, properties));
+		return pool;
+	}
+
+	private static <T> T await(Promise<T> promise) throws Exception {
+		final Throwable failure = promise.getFailure();
+		if (failure != null) {
+			throw new AssertionError(failure);
+		}
+		return promise.getValue();
+	}
+
+	@Before
+	public void before() throws Exception {
+		server = new ServerBootstrap().group(group).channel(NioServerSocketChannel.class)
+				.childHandler(new NoopHandler()).bind(HOST, 0).sync().channel();
+		port = ((InetSocketAddress) server.localAddress()).getPort();
+	}
+
+	@After
+	public void after() throws Exception {
+		server.close().sync();
+		group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+	}
+
+	@Test
+	public void shouldReuseReleasedChannels() throws Exception {
+		final NettyClientPoolProvider pool = pool(new HashMap<>());
+		final Channel channel = await(pool.acquire(HOST, port));
+		assertTrue(channel.isActive());
+		assertEquals(1, pool.statistics().get(NettyClientPoolProvider.key(HOST, port)).acquiredChannels());
+
+		await(pool.release(channel));
+		assertSame(channel, await(pool.acquire(HOST, port)));
+		await(pool.release(channel));
+
+		final NettyClientPool.Statistics statistics = pool.statistics().get(NettyClientPoolProvider.key(HOST, port));
+		assertEquals(0, statistics.acquiredChannels());
+		assertEquals(2, statistics.acquires());
+		assertTrue(statistics.acquireMaxNanos() > 0);
+
+		// Not acquired
+		assertTrue(pool.release(channel).getFailure() instanceof IllegalArgumentException);
+		pool.deactivate();
+	}
+
+	@Test
+	public void shouldTimeOutAcquiresAtMaxConnections() throws Exception {
+		final Map<String, Object> properties = new HashMap<>();
+		properties.put(NettyApi.NettyClientPool.MAX_CONNECTIONS, 1);
+		properties.put(NettyApi.NettyClientPool.ACQUIRE_TIMEOUT_MILLIS, 50L);
+		final NettyClientPoolProvider pool = pool(properties);
+
+		final Channel channel = await(pool.acquire(HOST, port));
+		assertTrue(pool.acquire(HOST, port).getFailure() instanceof TimeoutException);
+
+		// A waiter gets the released channel
+		final Promise<Channel> waiter = pool.acquire(HOST, port);
+		await(pool.release(channel));
+		assertSame(channel, await(waiter));
+		assertEquals(1, pool.statistics().get(NettyClientPoolProvider.key(HOST, port)).acquireFailures());
+		pool.deactivate();
+	}
+
+	@Test
+	public void shouldEvictIdleChannels() throws Exception {
+		final Map<String, Object> properties = new HashMap<>();
+		properties.put(NettyApi.NettyClientPool.IDLE_TIMEOUT_MILLIS, 20L);
+		final NettyClientPoolProvider pool = pool(properties);
+
+		final Channel channel = await(pool.acquire(HOST, port));
+		await(pool.release(channel));
+		channel.closeFuture().await(5, TimeUnit.SECONDS);
+		assertFalse(channel.isActive());
+		assertEquals(1, pool.statistics().get(NettyClientPoolProvider.key(HOST, port)).evictions());
+
+		// Replaced by a new channel
+		final Channel replacement = await(pool.acquire(HOST, port));
+		assertTrue(replacement.isActive());
+		await(pool.release(replacement));
+		pool.deactivate();
+	}
+}
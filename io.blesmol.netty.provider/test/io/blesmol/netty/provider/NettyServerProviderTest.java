@@ -0,0 +1,95 @@
+package io.blesmol.netty.provider;
+
+import static io.blesmol.netty.provider.Configs.config;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.blesmol.netty.api.Configuration;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+
+public class NettyServerProviderTest {
+
+	private static final String HOST = "127.0.0.1";
+
+	private static int freePort() throws Exception {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	// Binds a server with the given acceptors on a transport's groups, which it
+	// shuts down when closed
+	private static NettyServerProvider server(Transport transport, int port, int acceptors) throws Exception {
+		final String appName = "acceptors-" + transport.kind;
+		final Map<String, Object> properties = new HashMap<>();
+		properties.put("appName", appName);
+		properties.put("inetHost", HOST);
+		properties.put("inetPort", port);
+		properties.put("acceptors", acceptors);
+
+		final NettyServerProvider server = new NettyServerProvider();
+		final EventLoopGroup bossGroup = transport.newGroup(acceptors);
+		server.server = new ServerBootstrap();
+		server.bossGroup = bossGroup;
+		server.workerGroup = bossGroup;
+		server.channelInitializer = new ChannelInitializer<Channel>() {
+			@Override
+			protected void initChannel(Channel ch) throws Exception {
+			}
+		};
+		server.activate(config(Configuration.NettyServer.class, properties), properties);
+		return server;
+	}
+
+	private static List<ChannelFuture> bound(NettyServerProvider server) throws Exception {
+		final List<ChannelFuture> futures = server.promises().getValue();
+		for (ChannelFuture future : futures) {
+			assertTrue(future.await().isSuccess());
+		}
+		return futures;
+	}
+
+	@Test
+	public void shouldBindOneAcceptorWithoutReusePort() throws Exception {
+		final int port = freePort();
+		final NettyServerProvider server = server(Transport.NIO, port, 4);
+		try {
+			final List<ChannelFuture> futures = bound(server);
+			assertEquals(1, futures.size());
+			assertEquals(port, ((InetSocketAddress) futures.get(0).channel().localAddress()).getPort());
+		} finally {
+			server.close();
+		}
+	}
+
+	@Test
+	public void shouldBindAcceptorsWithReusePort() throws Exception {
+		assumeTrue(Transport.EPOLL.isAvailable());
+		final int port = freePort();
+		final NettyServerProvider server = server(Transport.EPOLL, port, 4);
+		try {
+			final List<ChannelFuture> futures = bound(server);
+			assertEquals(4, futures.size());
+			for (ChannelFuture future : futures) {
+				final Channel channel = future.channel();
+				assertEquals(port, ((InetSocketAddress) channel.localAddress()).getPort());
+				assertEquals(Boolean.TRUE, channel.config().getOption(Transport.EPOLL.reusePort()));
+			}
+		} finally {
+			server.close();
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package io.blesmol.netty.provider;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class PipelineDiffTest {
+
+	private final HandlerTable table = new HandlerTable();
+
+	private static String[] pids(int length) {
+		final String[] pids = new String[length];
+		Arrays.fill(pids, "pid");
+		return pids;
+	}
+
+	// The edits from the table's current names to the given ones
+	private List<String> diff(String[] handlerNames, String[] factoryPids) {
+		final HandlerTable.Slot[] prior = table.slots();
+		table.update(handlerNames, factoryPids);
+		return PipelineDiff.diff(prior, table.slots()).stream().map(Object::toString).collect(Collectors.toList());
+	}
+
+	private List<String> diff(String... handlerNames) {
+		return diff(handlerNames, pids(handlerNames.length));
+	}
+
+	@Test
+	public void shouldInsertInitially() {
+		assertEquals(Arrays.asList("INSERT a after dynamicChannelHandler", "INSERT b after a"), diff("a", "b"));
+	}
+
+	@Test
+	public void shouldMoveFewestHandlers() {
+		diff("a", "b", "c", "d");
+		assertEquals(Arrays.asList("MOVE a after d"), diff("b", "c", "d", "a"));
+		assertEquals(Arrays.asList("MOVE d after dynamicChannelHandler"), diff("d", "b", "c", "a"));
+		assertEquals(Arrays.asList(), diff("d", "b", "c", "a"));
+	}
+
+	@Test
+	public void shouldRemoveFirstThenInsertAndReplaceInOrder() {
+		diff("a", "b", "c");
+		assertEquals(Arrays.asList("REMOVE c", "REPLACE b after a", "INSERT x after b"),
+				diff(new String[] { "a", "b", "x" }, new String[] { "pid", "otherPid", "pid" }));
+	}
+
+	@Test
+	public void shouldMoveAroundInsertions() {
+		diff("a", "b");
+		assertEquals(Arrays.asList("INSERT x after dynamicChannelHandler", "MOVE b after x"), diff("x", "b", "a"));
+	}
+}
@@ -0,0 +1,84 @@
+package io.blesmol.netty.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.blesmol.netty.api.NettyApi;
+import io.netty.channel.DefaultEventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+public class TransportTest {
+
+	// Delegates to a group of the given transport, without creating it
+	private static EventLoopGroupProvider provider(Transport transport) {
+		return new EventLoopGroupProvider() {
+			@Override
+			Transport transport() {
+				return transport;
+			}
+		};
+	}
+
+	@Test
+	public void shouldSelectConfiguredTransport() throws Exception {
+		assertEquals(Transport.NIO, Transport.select(NettyApi.EventLoopGroup.TRANSPORT_NIO));
+		assertEquals(Transport.NIO, Transport.select("NIO"));
+		assertTrue(Transport.NIO.isAvailable());
+	}
+
+	@Test
+	public void shouldFallBackToNio() throws Exception {
+		assertEquals(Transport.NIO, Transport.select("rdma"));
+		assertEquals(Transport.NIO, Transport.select(null));
+
+		// The io_uring bundle is not on the test path
+		assertFalse(Transport.IO_URING.isAvailable());
+		assertEquals(Transport.NIO, Transport.select(NettyApi.EventLoopGroup.TRANSPORT_IO_URING));
+		assertEquals(Transport.EPOLL.isAvailable() ? Transport.EPOLL : Transport.NIO,
+				Transport.select(NettyApi.EventLoopGroup.TRANSPORT_EPOLL));
+	}
+
+	@Test
+	public void shouldResolveGroupTransport() throws Exception {
+		final NioEventLoopGroup group = new NioEventLoopGroup(1);
+		try {
+			assertEquals(Transport.NIO, Transport.of(group));
+			assertEquals(Transport.NIO, Transport.of(group.next()));
+		} finally {
+			group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+		}
+
+		if (Transport.EPOLL.isAvailable()) {
+			final EventLoopGroup epoll = Transport.EPOLL.newGroup(1);
+			try {
+				assertEquals(Transport.EPOLL, Transport.of(epoll));
+				assertEquals(Transport.EPOLL, Transport.of(epoll.next()));
+			} finally {
+				epoll.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+			}
+		}
+	}
+
+	@Test
+	public void shouldResolveProviderToItsDelegate() throws Exception {
+		final EventLoopGroupProvider provider = provider(Transport.EPOLL);
+		assertEquals(Transport.EPOLL, Transport.of(provider));
+
+		// An event loop resolves to its parent group
+		final DefaultEventLoop loop = new DefaultEventLoop(provider);
+		final DefaultEventLoop orphan = new DefaultEventLoop();
+		try {
+			assertEquals(Transport.EPOLL, Transport.of(loop));
+			assertEquals(Transport.NIO, Transport.of(orphan));
+		} finally {
+			loop.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+			orphan.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+		}
+	}
+}
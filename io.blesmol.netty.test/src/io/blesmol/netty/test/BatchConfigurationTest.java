@@ -0,0 +1,93 @@
+package io.blesmol.netty.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import io.blesmol.netty.api.ConfigurationUtil;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BatchConfigurationTest {
+
+	private static final String FACTORY_PID = "io.blesmol.netty.test.BatchConfigurationTest";
+
+	private static final int SIZE = 50;
+
+	private final BundleContext context = FrameworkUtil.getBundle(BatchConfigurationTest.class).getBundleContext();
+
+	ConfigurationUtil configUtil;
+
+	ConfigurationAdmin configAdmin;
+
+	@Before
+	public void before() throws Exception {
+		configUtil = TestUtils.getService(context, ConfigurationUtil.class, 700);
+		configAdmin = TestUtils.getService(context, ConfigurationAdmin.class, 700);
+	}
+
+	@After
+	public void after() {
+		configUtil = null;
+		configAdmin = null;
+	}
+
+	@Test
+	public void shouldCreateUpdateAndDeleteInBatches() throws Exception {
+		final List<Dictionary<String, Object>> properties = new ArrayList<>();
+		for (int i = 0; i < SIZE; i++) {
+			final Dictionary<String, Object> props = new Hashtable<>();
+			props.put("index", i);
+			properties.add(props);
+		}
+
+		// Pids are returned in the order of the properties
+		final List<String> pids = configUtil
+				.createConfigurations(Collections.nCopies(SIZE, FACTORY_PID), properties).getValue();
+		assertEquals(SIZE, pids.size());
+		for (int i = 0; i < SIZE; i++) {
+			final Configuration config = configAdmin.getConfiguration(pids.get(i), "?");
+			assertEquals(i, config.getProperties().get("index"));
+		}
+
+		final Map<String, Dictionary<String, Object>> updates = new LinkedHashMap<>();
+		for (int i = 0; i < SIZE; i++) {
+			final Dictionary<String, Object> props = new Hashtable<>();
+			props.put("index", i * 2);
+			updates.put(pids.get(i), props);
+		}
+		assertEquals(pids, configUtil.updateConfigurations(updates).getValue());
+		for (int i = 0; i < SIZE; i++) {
+			final Configuration config = configAdmin.getConfiguration(pids.get(i), "?");
+			assertEquals(i * 2, config.getProperties().get("index"));
+		}
+
+		assertEquals(pids, configUtil.deleteConfigurations(pids).getValue());
+		final Configuration[] remaining = configAdmin
+				.listConfigurations(String.format("(service.factoryPid=%s)", FACTORY_PID));
+		assertNull(remaining);
+	}
+
+	@Test
+	public void shouldResolveEmptyBatches() throws Exception {
+		assertNotNull(configUtil.deleteConfigurations(Collections.emptyList()).getValue());
+		assertEquals(0, configUtil.updateConfigurations(Collections.emptyMap()).getValue().size());
+	}
+}
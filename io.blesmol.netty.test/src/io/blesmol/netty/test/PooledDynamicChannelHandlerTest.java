@@ -0,0 +1,135 @@
+package io.blesmol.netty.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.cm.ManagedServiceFactory;
+import org.osgi.util.tracker.ServiceTracker;
+
+import io.blesmol.netty.api.ConfigurationUtil;
+import io.blesmol.netty.api.DynamicChannelHandler;
+import io.blesmol.netty.api.DynamicChannelHandlerPool;
+import io.blesmol.netty.api.NettyApi;
+import io.blesmol.netty.test.ChannelInitializerMultiChannelsTest.LatchedChannelInboundHandlerAdapter;
+import io.blesmol.netty.test.TestUtils.LatchTestChannelHandlerFactory;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+@SuppressWarnings("rawtypes")
+@RunWith(MockitoJUnitRunner.class)
+public class PooledDynamicChannelHandlerTest {
+
+	private final String appName = PooledDynamicChannelHandlerTest.class.getName();
+	private final String hostname = "localhost";
+	private final String factoryPid = PooledDynamicChannelHandlerTest.class.getName();
+	private final int port = 54328;
+	private final int count = 3;
+
+	private final List<String> factoryPids = Stream.of(factoryPid, factoryPid).collect(Collectors.toList());
+	private final List<String> handlerNames = Stream.of("pooledA", "pooledB").collect(Collectors.toList());
+
+	private final BundleContext context = FrameworkUtil.getBundle(PooledDynamicChannelHandlerTest.class)
+			.getBundleContext();
+
+	private ConfigurationUtil configUtil;
+	private List<String> configPids = new ArrayList<>();
+	private ServiceRegistration<ManagedServiceFactory> factoryRegistration;
+	private ServiceTracker<ChannelInitializer, ChannelInitializer> initializerTracker;
+	private ServiceTracker<DynamicChannelHandlerPool, DynamicChannelHandlerPool> poolTracker;
+
+	private final CountDownLatch latch = new CountDownLatch(count * 2);
+
+	@Before
+	public void before() throws Exception {
+		configUtil = TestUtils.getService(context, ConfigurationUtil.class, 250);
+
+		final Hashtable<String, Object> factoryProps = new Hashtable<>();
+		factoryProps.put(Constants.SERVICE_PID, factoryPid);
+		factoryRegistration = context.registerService(ManagedServiceFactory.class,
+				new LatchTestChannelHandlerFactory(context, LatchedChannelInboundHandlerAdapter.class, latch),
+				factoryProps);
+
+		configPids.addAll(configUtil.createChannelInitializer(appName, hostname, port, factoryPids, handlerNames,
+				Optional.empty(),
+				Optional.of(Collections.singletonMap(NettyApi.ChannelInitializer.POOLED_DYNAMIC_HANDLERS, true))));
+
+		String filter = String.format("(&(%s=%s)(%s=%s))", Constants.OBJECTCLASS, ChannelInitializer.class.getName(),
+				NettyApi.ChannelInitializer.APP_NAME, appName);
+		initializerTracker = TestUtils.getTracker(context, ChannelInitializer.class, filter);
+		filter = String.format("(&(%s=%s)(%s=%s))", Constants.OBJECTCLASS, DynamicChannelHandlerPool.class.getName(),
+				NettyApi.ChannelInitializer.APP_NAME, appName);
+		poolTracker = TestUtils.getTracker(context, DynamicChannelHandlerPool.class, filter);
+	}
+
+	@After
+	public void after() throws Exception {
+		poolTracker.close();
+		initializerTracker.close();
+		configUtil.deleteConfigurationPids(configPids);
+		factoryRegistration.unregister();
+	}
+
+	@Test
+	public void shouldReuseDynamicHandlers() throws Exception {
+
+		final ChannelInitializer initializer = initializerTracker.waitForService(1000);
+		assertNotNull(initializer);
+		final DynamicChannelHandlerPool pool = poolTracker.waitForService(1000);
+		assertNotNull(pool);
+
+		// One channel at a time, so each closed channel's handler is reused by the next
+		for (int i = 0; i < count; i++) {
+			final EmbeddedChannel ch = new EmbeddedChannel(DefaultChannelId.newInstance());
+			ch.pipeline().addFirst(initializer);
+			ch.runPendingTasks();
+
+			// Embedded channels need their tasks ran by hand
+			final long deadline = System.currentTimeMillis() + 10_000;
+			while (ch.pipeline().get(handlerNames.get(1)) == null && System.currentTimeMillis() < deadline) {
+				Thread.sleep(50);
+				ch.runPendingTasks();
+			}
+			assertNotNull(ch.pipeline().get(DynamicChannelHandler.HANDLER_NAME));
+			handlerNames.forEach(name -> assertNotNull(ch.pipeline().get(name)));
+
+			ch.close();
+			while (pool.size() == 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(50);
+			}
+			assertEquals(1, pool.size());
+		}
+
+		assertEquals(0, latch.getCount());
+		assertEquals(1, pool.misses());
+		assertEquals(count - 1, pool.hits());
+		assertEquals(count, pool.resets());
+
+		// No dynamic handler components were activated
+		final ServiceReference<?>[] dynamicHandlers = context.getServiceReferences(
+				DynamicChannelHandler.class.getName(),
+				String.format("(%s=%s)", NettyApi.ChannelHandler.APP_NAME, appName));
+		assertTrue(dynamicHandlers == null);
+	}
+
+}
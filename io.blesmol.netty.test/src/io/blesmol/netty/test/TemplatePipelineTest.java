@@ -0,0 +1,195 @@
+package io.blesmol.netty.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.PrototypeServiceFactory;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.cm.ConfigurationEvent;
+import org.osgi.service.cm.ConfigurationListener;
+import org.osgi.service.cm.ManagedServiceFactory;
+import org.osgi.util.promise.Promise;
+import org.osgi.util.promise.Promises;
+import org.osgi.util.tracker.ServiceTracker;
+
+import io.blesmol.netty.api.ConfigurationUtil;
+import io.blesmol.netty.api.DynamicChannelHandler;
+import io.blesmol.netty.api.NettyApi;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+@SuppressWarnings("rawtypes")
+@RunWith(MockitoJUnitRunner.class)
+public class TemplatePipelineTest {
+
+	private final String appName = TemplatePipelineTest.class.getName();
+	private final String hostname = "localhost";
+	private final String factoryPid = TemplatePipelineTest.class.getName();
+	private final int port = 54327;
+	private final int count = 5;
+
+	private final List<String> factoryPids = Stream.of(factoryPid, factoryPid).collect(Collectors.toList());
+	private final List<String> handlerNames = Stream.of("templateA", "templateB").collect(Collectors.toList());
+
+	private final BundleContext context = FrameworkUtil.getBundle(TemplatePipelineTest.class).getBundleContext();
+
+	private ConfigurationUtil configUtil;
+	private List<String> configPids = new ArrayList<>();
+	private ServiceRegistration<ManagedServiceFactory> factoryRegistration;
+	private ServiceRegistration<ConfigurationListener> listenerRegistration;
+	private ServiceTracker<ChannelInitializer, ChannelInitializer> initializerTracker;
+
+	private final CountDownLatch configuredLatch = new CountDownLatch(2);
+	private final CountDownLatch releasedLatch = new CountDownLatch(count * 2);
+
+	public static class TemplateHandler extends ChannelInboundHandlerAdapter {
+	}
+
+	/*
+	 * Registers a prototype scoped handler service per configuration, so that each
+	 * channel receives its own handler instance
+	 */
+	private class PrototypeHandlerFactory implements ManagedServiceFactory {
+
+		private final Map<String, ServiceRegistration<ChannelHandler>> registrations = new ConcurrentHashMap<>();
+
+		@Override
+		public String getName() {
+			return PrototypeHandlerFactory.class.getName();
+		}
+
+		@Override
+		public void updated(String pid, Dictionary<String, ?> properties) {
+			registrations.put(pid,
+					context.registerService(ChannelHandler.class, new PrototypeServiceFactory<ChannelHandler>() {
+
+						@Override
+						public ChannelHandler getService(Bundle bundle,
+								ServiceRegistration<ChannelHandler> registration) {
+							return new TemplateHandler();
+						}
+
+						@Override
+						public void ungetService(Bundle bundle, ServiceRegistration<ChannelHandler> registration,
+								ChannelHandler service) {
+							releasedLatch.countDown();
+						}
+					}, properties));
+		}
+
+		@Override
+		public void deleted(String pid) {
+			final ServiceRegistration<ChannelHandler> registration = registrations.remove(pid);
+			if (registration != null) {
+				registration.unregister();
+			}
+		}
+	}
+
+	private class TestConfigurationListener extends AbstractTestConfigurationListener {
+
+		public TestConfigurationListener(CountDownLatch latch) {
+			super(latch);
+		}
+
+		@Override
+		protected Promise<Boolean> isValidEvent(ConfigurationEvent event) {
+			return Promises.resolved(factoryPid.equals(event.getFactoryPid())
+					&& event.getType() == ConfigurationEvent.CM_UPDATED);
+		}
+	}
+
+	@Before
+	public void before() throws Exception {
+		configUtil = TestUtils.getService(context, ConfigurationUtil.class, 250);
+
+		listenerRegistration = context.registerService(ConfigurationListener.class,
+				new TestConfigurationListener(configuredLatch), null);
+
+		final Hashtable<String, Object> factoryProps = new Hashtable<>();
+		factoryProps.put(Constants.SERVICE_PID, factoryPid);
+		factoryRegistration = context.registerService(ManagedServiceFactory.class, new PrototypeHandlerFactory(),
+				factoryProps);
+
+		configPids.addAll(configUtil.createChannelInitializer(appName, hostname, port, factoryPids, handlerNames,
+				Optional.empty(),
+				Optional.of(Collections.singletonMap(NettyApi.ChannelInitializer.TEMPLATE_PIPELINE, true))));
+
+		String filter = String.format("(&(%s=%s)(%s=%s))", Constants.OBJECTCLASS, ChannelInitializer.class.getName(),
+				NettyApi.ChannelInitializer.APP_NAME, appName);
+		initializerTracker = TestUtils.getTracker(context, ChannelInitializer.class, filter);
+	}
+
+	@After
+	public void after() throws Exception {
+		initializerTracker.close();
+		configUtil.deleteConfigurationPids(configPids);
+		factoryRegistration.unregister();
+		listenerRegistration.unregister();
+	}
+
+	@Test
+	public void shouldBuildPipelinesFromTemplate() throws Exception {
+
+		final ChannelInitializer initializer = initializerTracker.waitForService(1000);
+		assertNotNull(initializer);
+
+		// Template handlers are configured once, then bound by the initializer
+		assertTrue(configuredLatch.await(10, TimeUnit.SECONDS));
+		Thread.sleep(500);
+
+		final List<EmbeddedChannel> channels = IntStream.range(0, count).mapToObj(i -> {
+			EmbeddedChannel ch = new EmbeddedChannel(DefaultChannelId.newInstance());
+			ch.pipeline().addFirst(initializer);
+			ch.runPendingTasks();
+			return ch;
+		}).collect(Collectors.toList());
+
+		// Each pipeline holds its own handler instances, added without a dynamic handler
+		channels.forEach(ch -> {
+			assertEquals(handlerNames.size() + 1, ch.pipeline().names().size()); // handlers & tail
+			handlerNames.forEach(name -> assertNotNull(ch.pipeline().get(name)));
+			assertTrue(ch.config().isAutoRead());
+		});
+		assertTrue(channels.get(0).pipeline().get(handlerNames.get(0)) != channels.get(1).pipeline()
+				.get(handlerNames.get(0)));
+
+		final ServiceReference<?>[] dynamicHandlers = context.getServiceReferences(
+				DynamicChannelHandler.class.getName(),
+				String.format("(%s=%s)", NettyApi.ChannelHandler.APP_NAME, appName));
+		assertTrue(dynamicHandlers == null);
+
+		// Closing returns each channel's handler instances
+		channels.forEach(ch -> ch.close());
+		assertTrue(releasedLatch.await(5, TimeUnit.SECONDS));
+	}
+
+}